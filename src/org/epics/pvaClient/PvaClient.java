@@ -68,6 +68,8 @@ public class PvaClient implements Requester {
     private static final String defaultProvider =
             org.epics.pvaccess.ClientFactory.PROVIDER_NAME;
     private Requester requester = null;
+    private volatile PvaClientDispatcher dispatcher = null;
+    private volatile PvaClientReconnectCoordinator reconnectCoordinator = null;
     private boolean isDestroyed = false;
 
     static private class PvaClientChannelCache
@@ -254,6 +256,50 @@ public class PvaClient implements Requester {
         this.requester = requester;
     }
 
+    /**
+     * Set a dispatcher for client callbacks.
+     * When set, PvaClientMonitorRequester, PvaClientGetRequester, PvaClientPutRequester,
+     * PvaClientPutGetRequester, PvaClientProcessRequester, PvaClientRPCRequester
+     * and PvaClientChannelStateChangeRequester callbacks
+     * are not called on pvAccess network threads but by the dispatcher.
+     * The caller owns the dispatcher and must destroy it.
+     * @param dispatcher The dispatcher or null to call callbacks directly.
+     */
+    public void setDispatcher(PvaClientDispatcher dispatcher)
+    {
+        this.dispatcher = dispatcher;
+    }
+    /**
+     * Get the dispatcher.
+     * @return The dispatcher or null if callbacks are called directly.
+     */
+    public PvaClientDispatcher getDispatcher()
+    {
+        return dispatcher;
+    }
+    /**
+     * Set a coordinator that re-creates monitors and cached gets and puts in batches after channels reconnect.
+     * The caller owns the coordinator and must destroy it.
+     * The operations of this client that a previous coordinator still holds are handed back to their channels.
+     * @param reconnectCoordinator The coordinator or null to let pvAccess resubscribe immediately.
+     */
+    public void setReconnectCoordinator(PvaClientReconnectCoordinator reconnectCoordinator)
+    {
+        PvaClientReconnectCoordinator previous;
+        synchronized(this) {
+            previous = this.reconnectCoordinator;
+            this.reconnectCoordinator = reconnectCoordinator;
+        }
+        if(previous!=null && previous!=reconnectCoordinator) previous.release(this);
+    }
+    /**
+     * Get the reconnect coordinator.
+     * @return The coordinator or null if none is set.
+     */
+    public PvaClientReconnectCoordinator getReconnectCoordinator()
+    {
+        return reconnectCoordinator;
+    }
     /**
      * Clear the requester. PvaClientPVA will handle messages.
      */
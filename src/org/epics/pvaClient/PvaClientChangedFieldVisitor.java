@@ -0,0 +1,71 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalarArray;
+
+/**
+ * Callback for the changed fields of PvaClientMonitorData or PvaClientGetData.
+ * Only leaf fields are visited. If a structure field is marked as changed all leaf fields of the structure are visited.
+ * The offset is the field offset in the top level PVStructure
+ * and fieldName is the full name, e.g. alarm.severity.
+ */
+public interface PvaClientChangedFieldVisitor
+{
+    /**
+     * A boolean field changed.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The new value.
+     */
+    void visitBoolean(int offset,String fieldName,boolean value);
+    /**
+     * A byte, short, int, ubyte, or ushort field changed.
+     * Unsigned values are converted without sign extension.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The new value.
+     */
+    void visitInt(int offset,String fieldName,int value);
+    /**
+     * A long, uint, or ulong field changed.
+     * A uint is converted without sign extension. A ulong has the raw bits.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The new value.
+     */
+    void visitLong(int offset,String fieldName,long value);
+    /**
+     * A float or double field changed.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The new value.
+     */
+    void visitDouble(int offset,String fieldName,double value);
+    /**
+     * A string field changed.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The new value.
+     */
+    void visitString(int offset,String fieldName,String value);
+    /**
+     * A scalar array field changed.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The field.
+     */
+    void visitScalarArray(int offset,String fieldName,PVScalarArray value);
+    /**
+     * A union, structure array, or union array field changed.
+     * @param offset The field offset.
+     * @param fieldName The full field name.
+     * @param value The field.
+     */
+    void visitOther(int offset,String fieldName,PVField value);
+}
@@ -7,10 +7,13 @@
  */
 package org.epics.pvaClient;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -67,23 +70,28 @@ public class PvaClientChannel implements ChannelRequester,Requester{
         public PvaClientGetCache(){}
 
 
-        void destroy() {
+        synchronized void destroy() {
             pvaClientGetMap.clear();
         }
 
-        PvaClientGet getGet(
+        synchronized List<PvaClientGet> getGets()
+        {
+            return new ArrayList<PvaClientGet>(pvaClientGetMap.values());
+        }
+
+        synchronized PvaClientGet getGet(
                 String request)
         {
             return pvaClientGetMap.get(request);
         }
-        void addGet(String request,PvaClientGet pvaClientGet)
+        synchronized void addGet(String request,PvaClientGet pvaClientGet)
         {
             if(pvaClientGetMap.get(request)!=null) {
                 throw new RuntimeException("pvaClientGetCache::addGet pvaClientGet already cached");
             }
             pvaClientGetMap.put(request, pvaClientGet);
         }
-        public String toString()
+        public synchronized String toString()
         {
             String result = "";
             Set<String> names = pvaClientGetMap.keySet();
@@ -94,7 +102,7 @@ public class PvaClientChannel implements ChannelRequester,Requester{
             }
             return result;
         }
-        int cacheSize()
+        synchronized int cacheSize()
         {
             return pvaClientGetMap.size();
         }
@@ -108,23 +116,28 @@ public class PvaClientChannel implements ChannelRequester,Requester{
         public PvaClientPutCache(){}
 
 
-        void destroy() {
+        synchronized void destroy() {
             pvaClientPutMap.clear();
         }
 
-        PvaClientPut getPut(
+        synchronized List<PvaClientPut> getPuts()
+        {
+            return new ArrayList<PvaClientPut>(pvaClientPutMap.values());
+        }
+
+        synchronized PvaClientPut getPut(
                 String request)
         {
             return pvaClientPutMap.get(request);
         }
-        void addPut(String request,PvaClientPut pvaClientPut)
+        synchronized void addPut(String request,PvaClientPut pvaClientPut)
         {
             if(pvaClientPutMap.get(request)!=null) {
                 throw new RuntimeException("pvaClientPutCache::addPut pvaClientPut already cached");
             }
             pvaClientPutMap.put(request, pvaClientPut);
         }
-        public String toString()
+        public synchronized String toString()
         {
             String result = "";
             Set<String> names = pvaClientPutMap.keySet();
@@ -135,7 +148,7 @@ public class PvaClientChannel implements ChannelRequester,Requester{
             }
             return result;
         }
-        int cacheSize()
+        synchronized int cacheSize()
         {
             return pvaClientPutMap.size();
         }
@@ -153,12 +166,108 @@ public class PvaClientChannel implements ChannelRequester,Requester{
     private CreateRequest createRequest = new CreateRequest();
     private final PvaClientGetCache pvaClientGetCache = new PvaClientGetCache();
     private final PvaClientPutCache pvaClientPutCache = new PvaClientPutCache();
+    private final PvaClientRPCPool pvaClientRPCPool = new PvaClientRPCPool(this,4);
+    private volatile PvaClientRPCCache rpcCache = null;
+    private final CopyOnWriteArrayList<PvaClientMonitor> pvaClientMonitors
+        = new CopyOnWriteArrayList<PvaClientMonitor>();
 
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition waitForConnect = lock.newCondition();
 
     private volatile Channel channel = null;
     private volatile PvaClientChannelStateChangeRequester stateChangeRequester = null;
+    // called without dispatch; used by PvaClientMultiChannel.
+    private final CopyOnWriteArrayList<PvaClientChannelStateChangeRequester> stateListeners
+        = new CopyOnWriteArrayList<PvaClientChannelStateChangeRequester>();
+    private volatile PvaClientDispatcher.Priority dispatchPriority = PvaClientDispatcher.Priority.normal;
+
+    /**
+     * Add a listener that is called by the pvAccess thread for each connection state change.
+     * Unlike a PvaClientChannelStateChangeRequester the call is not dispatched,
+     * so the listener must not block.
+     * @param listener The listener.
+     */
+    void addStateListener(PvaClientChannelStateChangeRequester listener)
+    {
+        stateListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added by addStateListener.
+     * @param listener The listener.
+     */
+    void removeStateListener(PvaClientChannelStateChangeRequester listener)
+    {
+        stateListeners.remove(listener);
+    }
+
+    private void notifyStateListeners(boolean isConnected)
+    {
+        for(PvaClientChannelStateChangeRequester listener : stateListeners) {
+            listener.channelStateChange(this,isConnected);
+        }
+    }
+
+    /**
+     * Get the monitors created by this channel that are not destroyed.
+     * @return The monitors.
+     */
+    List<PvaClientMonitor> getMonitors()
+    {
+        return pvaClientMonitors;
+    }
+
+    /**
+     * Called by PvaClientMonitor.destroy.
+     * @param pvaClientMonitor The monitor.
+     */
+    void removeMonitor(PvaClientMonitor pvaClientMonitor)
+    {
+        pvaClientMonitors.remove(pvaClientMonitor);
+    }
+
+    /**
+     * Get the cached gets.
+     * @return The gets.
+     */
+    List<PvaClientGet> getCachedGets()
+    {
+        return pvaClientGetCache.getGets();
+    }
+
+    /**
+     * Get the cached puts.
+     * @return The puts.
+     */
+    List<PvaClientPut> getCachedPuts()
+    {
+        return pvaClientPutCache.getPuts();
+    }
+
+    /**
+     * Is a dispatcher set, i.e. does dispatch run callbacks on another thread.
+     * @return (false,true) if callbacks (are not, are) dispatched.
+     */
+    boolean hasDispatcher()
+    {
+        return pvaClient.getDispatcher()!=null;
+    }
+
+    /**
+     * Call a client callback.
+     * If PvaClient has a dispatcher the callback is run by the stripe for this channel,
+     * else it is run by the caller.
+     * @param task The callback.
+     */
+    void dispatch(Runnable task)
+    {
+        PvaClientDispatcher dispatcher = pvaClient.getDispatcher();
+        if(dispatcher==null) {
+            task.run();
+            return;
+        }
+        dispatcher.dispatch(this,dispatchPriority,task);
+    }
 
     /* (non-Javadoc)
      * @see org.epics.pvaccess.client.ChannelRequester#channelCreated(org.epics.pvdata.pv.Status, org.epics.pvaccess.client.Channel)
@@ -195,6 +304,7 @@ public class PvaClientChannel implements ChannelRequester,Requester{
             } finally {
                 lock.unlock();
             }
+            notifyStateListeners(true);
         }
     }
     /* (non-Javadoc)
@@ -226,10 +336,21 @@ public class PvaClientChannel implements ChannelRequester,Requester{
             }  finally {
                 lock.unlock();
             }
+        } else {
+            PvaClientReconnectCoordinator coordinator = pvaClient.getReconnectCoordinator();
+            if(coordinator!=null) {
+                if(connectionState==ConnectionState.CONNECTED) {
+                    coordinator.channelConnected(this);
+                } else {
+                    coordinator.channelDisconnected(this);
+                }
+            }
         }
-        if(stateChangeRequester!=null) {
-            boolean value = (connectionState==ConnectionState.CONNECTED ? true : false);
-            stateChangeRequester.channelStateChange(this, value);
+        notifyStateListeners(connectionState==ConnectionState.CONNECTED);
+        final PvaClientChannelStateChangeRequester requester = stateChangeRequester;
+        if(requester!=null) {
+            final boolean value = (connectionState==ConnectionState.CONNECTED ? true : false);
+            dispatch(() -> requester.channelStateChange(this, value));
         }
     }
 
@@ -268,6 +389,9 @@ public class PvaClientChannel implements ChannelRequester,Requester{
         if(PvaClient.getDebug()) showCache();
         pvaClientGetCache.destroy();
         pvaClientPutCache.destroy();
+        pvaClientRPCPool.destroy();
+        pvaClientMonitors.clear();
+        stateListeners.clear();
     }
 
     /**
@@ -279,6 +403,15 @@ public class PvaClientChannel implements ChannelRequester,Requester{
         return channelName;
     }
 
+    /**
+     * Get the PvaClient that created this channel.
+     * @return The client.
+     */
+    PvaClient getPvaClient()
+    {
+        return pvaClient;
+    }
+
     /**
      * Get the Channel to which pvaClientChannel is connected.
      * @return The channel.
@@ -299,6 +432,23 @@ public class PvaClientChannel implements ChannelRequester,Requester{
         if(channel!=null) isConnected = channel.isConnected();
         stateChangeRequester.channelStateChange(this,isConnected);
     }
+    /**
+     * Select the dispatcher lane for callbacks of this channel.
+     * This has no effect unless PvaClient has a dispatcher.
+     * @param priority The lane. The default is normal.
+     */
+    public void setDispatchPriority(PvaClientDispatcher.Priority priority)
+    {
+        dispatchPriority = priority;
+    }
+    /**
+     * Get the dispatcher lane for callbacks of this channel.
+     * @return The lane.
+     */
+    public PvaClientDispatcher.Priority getDispatchPriority()
+    {
+        return dispatchPriority;
+    }
     /**
      * Clear user callback for change of state.
      */
@@ -743,6 +893,52 @@ public class PvaClientChannel implements ChannelRequester,Requester{
         return clientMonitor;
     }
 
+    /**
+     * Create and connect to a new PvaClientMonitor that has a client side queue.
+     * Then call it's start method.
+     * If connection can not be made an exception is thrown.
+     * @param request The request as described in package org.epics.pvdata.copy
+     * @param pvaClientMonitorRequester The client callback.
+     * @param queueOptions The queue size and overflow policy.
+     * @return The interface.
+     * @throws RuntimeException if create fails.
+     */
+    public PvaClientMonitor monitor(
+            String request,
+            PvaClientMonitorRequester pvaClientMonitorRequester,
+            PvaClientMonitorQueueOptions queueOptions)
+    {
+        PvaClientMonitor clientMonitor = createMonitor(request,queueOptions);
+        clientMonitor.connect();
+        clientMonitor.setRequester(pvaClientMonitorRequester);
+        clientMonitor.start();
+        return clientMonitor;
+    }
+
+    /**
+     * Create and connect to a new PvaClientMonitor that calls the requester at most maxRate times per second.
+     * Intermediate updates are merged into the latest value.
+     * Then call it's start method.
+     * If connection can not be made an exception is thrown.
+     * @param request The request as described in package org.epics.pvdata.copy
+     * @param pvaClientMonitorRequester The client callback.
+     * @param maxRate The maximum number of events per second.
+     * @return The interface.
+     * @throws RuntimeException if create fails.
+     */
+    public PvaClientMonitor monitor(
+            String request,
+            PvaClientMonitorRequester pvaClientMonitorRequester,
+            double maxRate)
+    {
+        PvaClientMonitor clientMonitor = createMonitor(request);
+        clientMonitor.setRateLimit(maxRate);
+        clientMonitor.connect();
+        clientMonitor.setRequester(pvaClientMonitorRequester);
+        clientMonitor.start();
+        return clientMonitor;
+    }
+
     /**
      * Call the next method with request = "field(value.alarm,timeStamp)" 
      * @return The interface.
@@ -779,9 +975,38 @@ public class PvaClientChannel implements ChannelRequester,Requester{
     public PvaClientMonitor createMonitor(PVStructure pvRequest)
     {
         if(connectState!=ConnectState.connected) connect(5.0);
-        return PvaClientMonitor.create(pvaClient, this, pvRequest);
+        PvaClientMonitor pvaClientMonitor = PvaClientMonitor.create(pvaClient, this, pvRequest);
+        pvaClientMonitors.add(pvaClientMonitor);
+        return pvaClientMonitor;
+    }
+    /**
+     * Create an PvaClientMonitor that has a client side queue.
+     * The request is given the pvAccess queueSize option that matches queueOptions.
+     * @param request The request as described in package org.epics.pvdata.copy
+     * @param queueOptions The queue size and overflow policy.
+     * @return The interface.
+     * @throws RuntimeException if create fails.
+     */
+    public PvaClientMonitor createMonitor(
+            String request,
+            PvaClientMonitorQueueOptions queueOptions)
+    {
+        PVStructure pvRequest = createRequest.createRequest(queueOptions.applyTo(request));
+        if(pvRequest==null) {
+            String mess = "channel " + getChannelName() 
+            + " PvaClientChannel::createMonitor invalid pvRequest: "
+            + createRequest.getMessage();
+            throw new RuntimeException(mess);
+        }
+        if(connectState!=ConnectState.connected) connect(5.0);
+        PvaClientMonitor pvaClientMonitor = PvaClientMonitor.create(pvaClient, this, pvRequest, queueOptions);
+        pvaClientMonitors.add(pvaClientMonitor);
+        return pvaClientMonitor;
     }
-    /** Issue a channelRPC request
+    /** Issue a channelRPC request.
+     * The request uses a connected PvaClientRPC from a pool of this channel,
+     * so concurrent calls are allowed, up to the limit set by setMaxConcurrentRPC.
+     * If a cache was set by setRPCCache a valid cached response is returned without a request.
      * @param pvRequest  The pvRequest that is passed to createRPC.
      * @param pvArgument  The argument for a request.
      * @return The result.
@@ -790,18 +1015,57 @@ public class PvaClientChannel implements ChannelRequester,Requester{
             PVStructure pvRequest,
             PVStructure pvArgument)
     {
-        PvaClientRPC rpc = createRPC(pvRequest);
-        return rpc.request(pvArgument);
+        if(isDestroyed) throw new RuntimeException("pvaClientChannel was destroyed");
+        PvaClientRPCCache.Key requestKey = PvaClientRPCCache.Key.create(pvRequest);
+        PvaClientRPCCache rpcCache = this.rpcCache;
+        if(rpcCache==null) return pvaClientRPCPool.request(requestKey,pvRequest,pvArgument);
+        PvaClientRPCCache.EntryKey key = PvaClientRPCCache.key(channelName,requestKey,pvArgument);
+        PVStructure pvResponse = rpcCache.get(key);
+        if(pvResponse!=null) return pvResponse;
+        pvResponse = pvaClientRPCPool.request(requestKey,pvRequest,pvArgument);
+        if(pvResponse!=null) rpcCache.put(key,pvResponse);
+        return pvResponse;
     }
-    /** Issue a channelRPC request
+    /** Issue a channelRPC request.
+     * The request uses a connected PvaClientRPC from a pool of this channel,
+     * so concurrent calls are allowed, up to the limit set by setMaxConcurrentRPC.
      * @param pvArgument  The argument for the request.
      * @return The result.
      */
     public PVStructure rpc(
             PVStructure pvArgument)
     {
-        PvaClientRPC rpc = createRPC();
-        return rpc.request(pvArgument);
+        return rpc(null,pvArgument);
+    }
+    /** Set the maximum number of rpc requests of this channel that are in flight at the same time.
+     * A call to rpc waits while the limit is reached. The default is 4.
+     * @param maxConcurrent The maximum.
+     */
+    public void setMaxConcurrentRPC(int maxConcurrent)
+    {
+        pvaClientRPCPool.setMaxConcurrent(maxConcurrent);
+    }
+    /** Get the maximum number of rpc requests of this channel that are in flight at the same time.
+     * @return The maximum.
+     */
+    public int getMaxConcurrentRPC()
+    {
+        return pvaClientRPCPool.getMaxConcurrent();
+    }
+    /** Set a cache for the responses of rpc.
+     * The cache can be shared with other channels.
+     * @param rpcCache The cache or null for no cache, which is the default.
+     */
+    public void setRPCCache(PvaClientRPCCache rpcCache)
+    {
+        this.rpcCache = rpcCache;
+    }
+    /** Get the cache for the responses of rpc.
+     * @return The cache or null.
+     */
+    public PvaClientRPCCache getRPCCache()
+    {
+        return rpcCache;
     }
     /** Create a PvaClientRPC.
      * @return The interface.
@@ -809,7 +1073,7 @@ public class PvaClientChannel implements ChannelRequester,Requester{
     public PvaClientRPC createRPC()
     {
         if(connectState!=ConnectState.connected) connect(5.0);
-        return PvaClientRPC.create(pvaClient,channel);   
+        return PvaClientRPC.create(pvaClient,this);   
     }
     /** Create a PvaClientRPC.
      * @param pvRequest  The pvRequest that must have the same interface
@@ -820,7 +1084,7 @@ public class PvaClientChannel implements ChannelRequester,Requester{
     {
         if(connectState!=ConnectState.connected) connect(5.0);
        
-        return PvaClientRPC.create(pvaClient,channel,pvRequest);   
+        return PvaClientRPC.create(pvaClient,this,pvRequest);   
     }
 
     /** Show the list of cached gets and puts.
@@ -0,0 +1,589 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Groups the monitor updates of the channels of a PvaClientMultiChannel into records,
+ * where each record has at most one update from each channel for the same machine pulse.
+ * <p>
+ * Updates are correlated either by timeStamp.userTag, which must be equal,
+ * or by timeStamp, which must be within a tolerance of the first update of the record.
+ * A record is delivered as soon as every connected channel has an update for it.
+ * If that does not happen within a timeout the record is delivered as a partial record.
+ * Since partial records are delivered when they expire,
+ * a partial record can be delivered after newer complete records.
+ * <p>
+ * The usage is the same as for PvaClientMonitor:
+ * poll or waitRecord, then the get methods, then releaseRecord.
+ * The methods must be called by a single thread.
+ * When channels are added to or removed from the multi channel,
+ * the records that are not yet delivered are discarded by the next poll.
+ */
+public class PvaClientCorrelator
+{
+    /**
+     * How updates are correlated.
+     */
+    public enum CorrelateBy {
+        /**
+         * Updates with the same timeStamp.userTag belong to the same record.
+         */
+        userTag,
+        /**
+         * Updates with a timeStamp within the tolerance belong to the same record.
+         */
+        timeStamp
+    }
+
+    /**
+     * Create a correlator.
+     * @param pvaClientMultiChannel The channels, which are connected if necessary.
+     * @param request The request for each channel monitor. It must select the timeStamp, e.g. "value,timeStamp".
+     * @param correlateBy How updates are correlated.
+     * @param tolerance For CorrelateBy.timeStamp the maximum time difference in seconds.
+     * @param timeout The time in seconds after which an incomplete record is delivered.
+     * @param maxPending The maximum number of incomplete records.
+     * If it is exceeded the oldest incomplete record is delivered.
+     * @return The new instance.
+     */
+    public static PvaClientCorrelator create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            String request,
+            CorrelateBy correlateBy,
+            double tolerance,
+            double timeout,
+            int maxPending)
+    {
+        return new PvaClientCorrelator(pvaClientMultiChannel,request,correlateBy,tolerance,timeout,maxPending);
+    }
+
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private static final Convert convert = ConvertFactory.getConvert();
+
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final String request;
+    private final CorrelateBy correlateBy;
+    private final PvaClientMultiMembership membership;
+    private int nchannel;
+    private final PvaClientMonitorNotifier notifier;
+    private PvaClientMonitor[] pvaClientMonitor;
+    private Consumer<PvaClientMonitorData>[] consumer;
+    // the timeStamp fields of the last PVStructure of each channel.
+    private PVStructure[] timeStampSource;
+    private PVLong[] pvSecondsPastEpoch;
+    private PVInt[] pvNanoseconds;
+    private PVInt[] pvUserTag;
+
+    private final Matcher matcher;
+    private Record current = null;
+    private boolean isConnected = false;
+    private boolean isDestroyed = false;
+
+    static final class Record
+    {
+        private final PVStructure[] data;
+        private final BitSet present;
+        private long key;
+        private long arrivalTime;
+        private int numberPresent;
+        private boolean isComplete;
+
+        Record(int nchannel)
+        {
+            data = new PVStructure[nchannel];
+            present = new BitSet(nchannel);
+        }
+
+        long getKey()
+        {
+            return key;
+        }
+
+        boolean isComplete()
+        {
+            return isComplete;
+        }
+
+        int getNumberPresent()
+        {
+            return numberPresent;
+        }
+    }
+
+    /*
+     * Matches keys to records and decides when a record is delivered.
+     * It does not know about channels or data, so the caller passes the time
+     * and the number of channels that are expected in a complete record.
+     */
+    static final class Matcher
+    {
+        private final CorrelateBy correlateBy;
+        private final long toleranceNanos;
+        private final long timeoutNanos;
+        private final int maxPending;
+        private int nchannel;
+        private final ArrayDeque<Record> pending = new ArrayDeque<Record>();
+        private final ArrayDeque<Record> ready = new ArrayDeque<Record>();
+        private final ArrayDeque<Record> free = new ArrayDeque<Record>();
+        private long numberComplete = 0;
+        private long numberPartial = 0;
+
+        Matcher(int nchannel,CorrelateBy correlateBy,long toleranceNanos,long timeoutNanos,int maxPending)
+        {
+            this.nchannel = nchannel;
+            this.correlateBy = correlateBy;
+            this.toleranceNanos = toleranceNanos;
+            this.timeoutNanos = timeoutNanos;
+            this.maxPending = maxPending;
+        }
+
+        /*
+         * Discard all records that are not delivered.
+         */
+        void reset(int nchannel)
+        {
+            this.nchannel = nchannel;
+            pending.clear();
+            ready.clear();
+            free.clear();
+        }
+
+        private boolean matches(Record record,int index,long key)
+        {
+            if(correlateBy==CorrelateBy.userTag) return record.key==key;
+            if(record.present.get(index)) return false;
+            return Math.abs(key - record.key)<=toleranceNanos;
+        }
+
+        /*
+         * Find the pending record that an update of a channel belongs to.
+         * @return The record or null if a new record must be started.
+         */
+        Record find(int index,long key)
+        {
+            for(Record next : pending) {
+                if(matches(next,index,key)) return next;
+            }
+            return null;
+        }
+
+        boolean isFull()
+        {
+            return pending.size()>=maxPending;
+        }
+
+        /*
+         * Start a new record. If there are still maxPending records
+         * the oldest is delivered as a partial record,
+         * so the caller must first call update to deliver the complete records.
+         */
+        Record start(long key,long now)
+        {
+            if(isFull()) {
+                Record oldest = pending.pollFirst();
+                oldest.isComplete = false;
+                ready.addLast(oldest);
+                ++numberPartial;
+            }
+            Record record = free.pollFirst();
+            if(record==null) record = new Record(nchannel);
+            record.key = key;
+            record.arrivalTime = now;
+            record.numberPresent = 0;
+            record.present.clear();
+            pending.addLast(record);
+            return record;
+        }
+
+        void setPresent(Record record,int index)
+        {
+            if(record.present.get(index)) return;
+            record.present.set(index);
+            ++record.numberPresent;
+        }
+
+        /*
+         * Move complete and expired records to ready.
+         * @return The time in nanoseconds until the oldest pending record expires.
+         */
+        long update(int expected,long now)
+        {
+            long untilExpire = Long.MAX_VALUE;
+            Iterator<Record> iter = pending.iterator();
+            while(iter.hasNext()) {
+                Record record = iter.next();
+                if(record.numberPresent>=expected) {
+                    record.isComplete = true;
+                    iter.remove();
+                    ready.addLast(record);
+                    ++numberComplete;
+                    continue;
+                }
+                long remaining = record.arrivalTime + timeoutNanos - now;
+                if(remaining<=0) {
+                    record.isComplete = false;
+                    iter.remove();
+                    ready.addLast(record);
+                    ++numberPartial;
+                    continue;
+                }
+                untilExpire = Math.min(untilExpire,remaining);
+            }
+            return untilExpire;
+        }
+
+        boolean hasReady()
+        {
+            return !ready.isEmpty();
+        }
+
+        Record next()
+        {
+            return ready.pollFirst();
+        }
+
+        void release(Record record)
+        {
+            free.addLast(record);
+        }
+
+        long getNumberComplete()
+        {
+            return numberComplete;
+        }
+
+        long getNumberPartial()
+        {
+            return numberPartial;
+        }
+    }
+
+    private PvaClientCorrelator(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            String request,
+            CorrelateBy correlateBy,
+            double tolerance,
+            double timeout,
+            int maxPending)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientCorrelator::PvaClientCorrelator()");
+        if(maxPending<1) {
+            throw new IllegalArgumentException("PvaClientCorrelator maxPending must be at least 1");
+        }
+        if(tolerance<0.0 || timeout<0.0) {
+            throw new IllegalArgumentException("PvaClientCorrelator times can not be negative");
+        }
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.request = request;
+        this.correlateBy = correlateBy;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        nchannel = pvaClientMultiChannel.getChannelNames().length;
+        matcher = new Matcher(nchannel,correlateBy,(long)(tolerance*1e9),(long)(timeout*1e9),maxPending);
+        notifier = new PvaClientMonitorNotifier(nchannel);
+        pvaClientMonitor = new PvaClientMonitor[nchannel];
+        allocate();
+    }
+
+    /*
+     * Allocate the per channel arrays, except the monitors, for nchannel channels.
+     */
+    @SuppressWarnings("unchecked")
+    private void allocate()
+    {
+        consumer = new Consumer[nchannel];
+        timeStampSource = new PVStructure[nchannel];
+        pvSecondsPastEpoch = new PVLong[nchannel];
+        pvNanoseconds = new PVInt[nchannel];
+        pvUserTag = new PVInt[nchannel];
+        for(int i=0; i<nchannel; ++i) {
+            final int index = i;
+            consumer[i] = data -> add(index,data.getPVStructure());
+        }
+    }
+
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     * Records are allocated for a number of channels, so the undelivered records are discarded.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        nchannel = map.length;
+        pvaClientMonitor = PvaClientMultiMembership.remap(pvaClientMonitor,map,monitor -> {
+            monitor.setNotifier(null,0);
+            monitor.destroy();
+        });
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].setNotifier(notifier,i);
+        }
+        allocate();
+        matcher.reset(nchannel);
+        // forget the old indices and drain each channel once.
+        notifier.take();
+        notifier.ready(0,nchannel);
+        isConnected = false;
+    }
+
+    /**
+     * Create and start a monitor for each connected channel.
+     * This is called by poll and waitRecord if necessary.
+     */
+    public void connect()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientCorrelator was destroyed");
+        if(current==null) sync();
+        if(isConnected) return;
+        if(!pvaClientMultiChannel.allConnected()) pvaClientMultiChannel.connect();
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        PvaClientChannel[] pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]==null) {
+                pvaClientMonitor[i] = pvaClientChannelArray[i].createMonitor(request);
+                pvaClientMonitor[i].setNotifier(notifier,i);
+                pvaClientMonitor[i].issueConnect();
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(pvaClientMonitor[i]==null) continue;
+            Status status = pvaClientMonitor[i].waitConnect();
+            if(status.isOK()) continue;
+            String message = "channel "
+                    + pvaClientChannelArray[i].getChannelName()
+                    + " PvaClientCorrelator::connect "
+                    + status.getMessage();
+            throw new RuntimeException(message);
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].start();
+        }
+        notifier.ready(0,nchannel);
+        this.isConnected = true;
+    }
+
+    /**
+     * Destroy the monitors.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientCorrelator::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].destroy();
+            pvaClientMonitor[i] = null;
+        }
+        matcher.reset(nchannel);
+        current = null;
+    }
+
+    private void checkTimeStamp(int index,PVStructure pvStructure)
+    {
+        if(timeStampSource[index]==pvStructure) return;
+        PVStructure pvTimeStamp = pvStructure.getSubField(PVStructure.class,"timeStamp");
+        if(pvTimeStamp==null) {
+            throw new RuntimeException("channel "
+                + pvaClientMultiChannel.getChannelNames()[index]
+                + " PvaClientCorrelator request did not select timeStamp");
+        }
+        pvSecondsPastEpoch[index] = pvTimeStamp.getSubField(PVLong.class,"secondsPastEpoch");
+        pvNanoseconds[index] = pvTimeStamp.getSubField(PVInt.class,"nanoseconds");
+        pvUserTag[index] = pvTimeStamp.getSubField(PVInt.class,"userTag");
+        timeStampSource[index] = pvStructure;
+    }
+
+    /*
+     * Add an update to the record it belongs to.
+     */
+    private void add(int index,PVStructure pvStructure)
+    {
+        checkTimeStamp(index,pvStructure);
+        long key;
+        if(correlateBy==CorrelateBy.userTag) {
+            key = pvUserTag[index].get();
+        } else {
+            key = pvSecondsPastEpoch[index].get()*1000000000L + pvNanoseconds[index].get();
+        }
+        Record record = matcher.find(index,key);
+        if(record==null) {
+            // complete records are delivered before the oldest is given up as partial.
+            if(matcher.isFull()) update();
+            record = matcher.start(key,System.nanoTime());
+        }
+        PVStructure data = record.data[index];
+        if(data==null || data.getStructure()!=pvStructure.getStructure()) {
+            data = pvDataCreate.createPVStructure(pvStructure.getStructure());
+            record.data[index] = data;
+        }
+        convert.copyStructure(pvStructure,data);
+        matcher.setPresent(record,index);
+    }
+
+    /*
+     * Move complete and expired records to ready.
+     * @return The time in nanoseconds until the oldest pending record expires.
+     */
+    private long update()
+    {
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        int expected = 0;
+        for(int i=0; i<nchannel; ++i) {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) ++expected;
+        }
+        return matcher.update(expected,System.nanoTime());
+    }
+
+    /*
+     * Drain the channels that have events.
+     */
+    private long drainReady()
+    {
+        BitSet channels = notifier.take();
+        for(int i=channels.nextSetBit(0); i>=0 && i<nchannel; i=channels.nextSetBit(i+1)) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].drain(consumer[i],0);
+        }
+        return update();
+    }
+
+    /**
+     * Is a record available?
+     * If true then the get methods can be called.
+     * After done with the record releaseRecord must be called before another call to poll or waitRecord.
+     * @return (false,true) if (no,a) record is available.
+     */
+    public boolean poll()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientCorrelator was destroyed");
+        if(current!=null) throw new RuntimeException("PvaClientCorrelator::poll did not release last");
+        sync();
+        if(!isConnected) connect();
+        if(!matcher.hasReady()) drainReady();
+        current = matcher.next();
+        return current!=null;
+    }
+
+    /**
+     * Wait for a record.
+     * @param timeout The maximum time to wait in seconds.
+     * @return (false,true) if (timeout,a record is available).
+     */
+    public boolean waitRecord(double timeout)
+    {
+        if(poll()) return true;
+        long deadline = System.nanoTime() + (long)(timeout*1e9);
+        while(true) {
+            long untilExpire = update();
+            // update delivers the records that expired.
+            if(matcher.hasReady()) return poll();
+            long remaining = deadline - System.nanoTime();
+            if(remaining<=0) return false;
+            notifier.waitReady(Math.min(remaining,untilExpire)/1e9);
+            if(poll()) return true;
+        }
+    }
+
+    /**
+     * Release the record returned by poll or waitRecord.
+     */
+    public void releaseRecord()
+    {
+        if(current==null) return;
+        matcher.release(current);
+        current = null;
+    }
+
+    private Record checkCurrent()
+    {
+        if(current==null) throw new RuntimeException("PvaClientCorrelator no record is available");
+        return current;
+    }
+
+    /**
+     * Get the correlation key of the record.
+     * @return The userTag or, for CorrelateBy.timeStamp,
+     * the time in nanoseconds since the epoch of the first update of the record.
+     */
+    public long getKey()
+    {
+        return checkCurrent().key;
+    }
+
+    /**
+     * Does the record have an update from every connected channel?
+     * @return (false,true) if the record is (partial,complete).
+     */
+    public boolean isComplete()
+    {
+        return checkCurrent().isComplete;
+    }
+
+    /**
+     * Get the number of channels with an update in the record.
+     * @return The number.
+     */
+    public int getNumberPresent()
+    {
+        return checkCurrent().numberPresent;
+    }
+
+    /**
+     * Does the record have an update from a channel?
+     * @param index The channel index.
+     * @return (false,true) if the channel (is not,is) present.
+     */
+    public boolean isPresent(int index)
+    {
+        return checkCurrent().present.get(index);
+    }
+
+    /**
+     * Get the data of a channel in the record.
+     * @param index The channel index.
+     * @return The data or null if the channel is not present.
+     * The data is only valid until releaseRecord is called.
+     */
+    public PVStructure getPVStructure(int index)
+    {
+        Record record = checkCurrent();
+        return record.present.get(index) ? record.data[index] : null;
+    }
+
+    /**
+     * Get the number of complete records delivered.
+     * @return The number.
+     */
+    public long getNumberComplete()
+    {
+        return matcher.getNumberComplete();
+    }
+
+    /**
+     * Get the number of partial records delivered.
+     * @return The number.
+     */
+    public long getNumberPartial()
+    {
+        return matcher.getNumberPartial();
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs client callbacks on dispatcher threads instead of pvAccess network threads.
+ * <p>
+ * The dispatcher has a fixed number of stripes. Each stripe is a serial executor.
+ * All callbacks for a channel go to the same stripe, so they are called in order.
+ * Different channels are spread over the stripes and run in parallel.
+ * A slow callback only delays the channels that share its stripe.
+ * Monitor events that arrive while the event callback of a monitor is queued
+ * result in a single call of PvaClientMonitorRequester.event.
+ * <p>
+ * There is a normal and an optional high priority lane, each with its own stripes.
+ * A channel selects its lane with PvaClientChannel.setDispatchPriority.
+ * <p>
+ * A ThreadFactory can be given, e.g. Thread.ofVirtual().factory() to use virtual threads
+ * on Java versions that support them.
+ */
+public class PvaClientDispatcher
+{
+    /**
+     * The dispatch lane.
+     */
+    public enum Priority {normal,high};
+
+    /**
+     * Create a dispatcher with daemon threads and no high priority lane.
+     * @param numberStripes The number of stripes.
+     * @return The new instance.
+     */
+    public static PvaClientDispatcher create(int numberStripes)
+    {
+        return create(numberStripes,0,null);
+    }
+
+    /**
+     * Create a dispatcher.
+     * @param numberStripes The number of stripes for the normal lane.
+     * @param numberHighStripes The number of stripes for the high priority lane.
+     * If 0 then high priority channels use the normal lane.
+     * @param threadFactory The factory for stripe threads. If null daemon threads are created.
+     * @return The new instance.
+     */
+    public static PvaClientDispatcher create(
+            int numberStripes,
+            int numberHighStripes,
+            ThreadFactory threadFactory)
+    {
+        return new PvaClientDispatcher(numberStripes,numberHighStripes,threadFactory);
+    }
+
+    private PvaClientDispatcher(
+            int numberStripes,
+            int numberHighStripes,
+            ThreadFactory threadFactory)
+    {
+        if(numberStripes<1) {
+            throw new IllegalArgumentException("PvaClientDispatcher numberStripes must be at least 1");
+        }
+        if(numberHighStripes<0) {
+            throw new IllegalArgumentException("PvaClientDispatcher numberHighStripes is negative");
+        }
+        normalStripes = createStripes(numberStripes,threadFactory,Priority.normal);
+        highStripes = (numberHighStripes==0)
+            ? normalStripes : createStripes(numberHighStripes,threadFactory,Priority.high);
+    }
+
+    private static ExecutorService[] createStripes(
+            int number,
+            final ThreadFactory threadFactory,
+            final Priority priority)
+    {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread;
+                if(threadFactory!=null) {
+                    thread = threadFactory.newThread(runnable);
+                } else {
+                    thread = new Thread(runnable,
+                        "pvaClientDispatcher-" + priority + "-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                }
+                if(priority==Priority.high) thread.setPriority(Thread.MAX_PRIORITY);
+                return thread;
+            }
+        };
+        ExecutorService[] stripes = new ExecutorService[number];
+        for(int i=0; i<number; ++i) stripes[i] = Executors.newSingleThreadExecutor(factory);
+        return stripes;
+    }
+
+    private final ExecutorService[] normalStripes;
+    private final ExecutorService[] highStripes;
+    private volatile boolean isDestroyed = false;
+
+    /**
+     * Run a task on the stripe for key.
+     * Tasks with the same key and priority are run in the order they are dispatched.
+     * If the dispatcher is destroyed the task is run by the caller.
+     * @param key The key, normally the PvaClientChannel.
+     * @param priority The lane.
+     * @param task The task.
+     */
+    public void dispatch(Object key,Priority priority,Runnable task)
+    {
+        if(isDestroyed) {
+            task.run();
+            return;
+        }
+        ExecutorService[] stripes = (priority==Priority.high) ? highStripes : normalStripes;
+        int hash = System.identityHashCode(key);
+        hash ^= (hash >>> 16);
+        try {
+            stripes[(hash & 0x7fffffff) % stripes.length].execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    /**
+     * Stop all stripe threads. Tasks already dispatched are run first.
+     */
+    public void destroy()
+    {
+        synchronized (this) {
+            if(isDestroyed) return;
+            isDestroyed = true;
+        }
+        for(ExecutorService stripe : normalStripes) stripe.shutdown();
+        if(highStripes!=normalStripes) {
+            for(ExecutorService stripe : highStripes) stripe.shutdown();
+        }
+    }
+}
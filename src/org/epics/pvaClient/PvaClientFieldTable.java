@@ -0,0 +1,228 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.IdentityHashMap;
+import java.util.WeakHashMap;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVByte;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVFloat;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVShort;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Type;
+
+/**
+ * An offset indexed table of the fields of a Structure, used to visit changed fields.
+ * Tables are shared by all data with the same Structure.
+ * The PVFields of a PVStructure are found once and kept by a Cache,
+ * so a visit does not look up any field.
+ */
+class PvaClientFieldTable
+{
+    private static final WeakHashMap<Structure,PvaClientFieldTable> tables
+        = new WeakHashMap<Structure,PvaClientFieldTable>();
+
+    /**
+     * Get the table for the structure of a PVStructure.
+     * @param pvStructure The top level PVStructure.
+     * @return The shared table.
+     */
+    static PvaClientFieldTable get(PVStructure pvStructure)
+    {
+        Structure structure = pvStructure.getStructure();
+        synchronized(tables) {
+            PvaClientFieldTable table = tables.get(structure);
+            if(table==null) {
+                table = new PvaClientFieldTable(pvStructure);
+                tables.put(structure,table);
+            }
+            return table;
+        }
+    }
+
+    private static final byte STRUCTURE = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte UBYTE = 6;
+    private static final byte USHORT = 7;
+    private static final byte UINT = 8;
+    private static final byte ULONG = 9;
+    private static final byte FLOAT = 10;
+    private static final byte DOUBLE = 11;
+    private static final byte STRING = 12;
+    private static final byte SCALAR_ARRAY = 13;
+    private static final byte OTHER = 14;
+
+    private final byte[] kind;
+    private final int[] nextOffset;
+    private final String[] fieldName;
+
+    private PvaClientFieldTable(PVStructure pvStructure)
+    {
+        int numberFields = pvStructure.getNumberFields();
+        kind = new byte[numberFields];
+        nextOffset = new int[numberFields];
+        fieldName = new String[numberFields];
+        for(int offset=0; offset<numberFields; ++offset) {
+            PVField pvField = (offset==0) ? pvStructure : pvStructure.getSubField(offset);
+            kind[offset] = kindOf(pvField);
+            nextOffset[offset] = pvField.getNextFieldOffset();
+            fieldName[offset] = (offset==0) ? "" : pvField.getFullName();
+        }
+    }
+
+    private static byte kindOf(PVField pvField)
+    {
+        Type type = pvField.getField().getType();
+        if(type==Type.structure) return STRUCTURE;
+        if(type==Type.scalarArray) return SCALAR_ARRAY;
+        if(type!=Type.scalar) return OTHER;
+        switch(((PVScalar)pvField).getScalar().getScalarType()) {
+        case pvBoolean: return BOOLEAN;
+        case pvByte: return BYTE;
+        case pvShort: return SHORT;
+        case pvInt: return INT;
+        case pvLong: return LONG;
+        case pvUByte: return UBYTE;
+        case pvUShort: return USHORT;
+        case pvUInt: return UINT;
+        case pvULong: return ULONG;
+        case pvFloat: return FLOAT;
+        case pvDouble: return DOUBLE;
+        case pvString: return STRING;
+        }
+        return OTHER;
+    }
+
+    /**
+     * The PVFields of the PVStructures visited by one data object.
+     * A monitor delivers the PVStructures of its queue over and over, so each is bound once.
+     * The PVFields are dropped when a PVStructure with a new Structure arrives, e.g. after a reconnect,
+     * or when MAX_SIZE PVStructures have been bound.
+     * It is not thread safe.
+     */
+    static final class Cache
+    {
+        private static final int MAX_SIZE = 4096;
+        private final IdentityHashMap<PVStructure,PVField[]> pvFields = new IdentityHashMap<PVStructure,PVField[]>();
+        private Structure structure = null;
+        private PvaClientFieldTable table = null;
+
+        /**
+         * Call the visitor for each changed leaf field.
+         * @param pvStructure The data.
+         * @param changed The changed BitSet.
+         * @param visitor The visitor.
+         * @return The number of fields visited.
+         */
+        int visitChanged(PVStructure pvStructure,BitSet changed,PvaClientChangedFieldVisitor visitor)
+        {
+            if(pvStructure.getStructure()!=structure) {
+                structure = pvStructure.getStructure();
+                table = get(pvStructure);
+                this.pvFields.clear();
+            }
+            PVField[] pvFields = this.pvFields.get(pvStructure);
+            if(pvFields==null) {
+                if(this.pvFields.size()>=MAX_SIZE) this.pvFields.clear();
+                pvFields = table.bind(pvStructure);
+                this.pvFields.put(pvStructure,pvFields);
+            }
+            return table.visitChanged(pvFields,changed,visitor);
+        }
+
+        /**
+         * Get the number of PVStructures whose PVFields are kept.
+         * @return The number.
+         */
+        int size()
+        {
+            return pvFields.size();
+        }
+    }
+
+    private PVField[] bind(PVStructure pvStructure)
+    {
+        PVField[] pvFields = new PVField[kind.length];
+        pvFields[0] = pvStructure;
+        bind(pvStructure,pvFields);
+        return pvFields;
+    }
+
+    private static void bind(PVStructure pvStructure,PVField[] pvFields)
+    {
+        for(PVField pvField : pvStructure.getPVFields()) {
+            pvFields[pvField.getFieldOffset()] = pvField;
+            if(pvField instanceof PVStructure) bind((PVStructure)pvField,pvFields);
+        }
+    }
+
+    private void visit(PVField[] pvFields,int offset,PvaClientChangedFieldVisitor visitor)
+    {
+        PVField pvField = pvFields[offset];
+        String name = fieldName[offset];
+        switch(kind[offset]) {
+        case BOOLEAN: visitor.visitBoolean(offset,name,((PVBoolean)pvField).get()); return;
+        case BYTE: visitor.visitInt(offset,name,((PVByte)pvField).get()); return;
+        case SHORT: visitor.visitInt(offset,name,((PVShort)pvField).get()); return;
+        case INT: visitor.visitInt(offset,name,((PVInt)pvField).get()); return;
+        case LONG: visitor.visitLong(offset,name,((PVLong)pvField).get()); return;
+        case UBYTE: visitor.visitInt(offset,name,((PVByte)pvField).get()&0xff); return;
+        case USHORT: visitor.visitInt(offset,name,((PVShort)pvField).get()&0xffff); return;
+        case UINT: visitor.visitLong(offset,name,((PVInt)pvField).get()&0xffffffffL); return;
+        case ULONG: visitor.visitLong(offset,name,((PVLong)pvField).get()); return;
+        case FLOAT: visitor.visitDouble(offset,name,((PVFloat)pvField).get()); return;
+        case DOUBLE: visitor.visitDouble(offset,name,((PVDouble)pvField).get()); return;
+        case STRING: visitor.visitString(offset,name,((PVString)pvField).get()); return;
+        case SCALAR_ARRAY: visitor.visitScalarArray(offset,name,(PVScalarArray)pvField); return;
+        default: visitor.visitOther(offset,name,pvField); return;
+        }
+    }
+
+    /**
+     * Call the visitor for each changed leaf field.
+     * @param pvFields The fields of data with the structure of this table.
+     * @param changed The changed BitSet.
+     * @param visitor The visitor.
+     * @return The number of fields visited.
+     */
+    private int visitChanged(PVField[] pvFields,BitSet changed,PvaClientChangedFieldVisitor visitor)
+    {
+        int count = 0;
+        int offset = changed.nextSetBit(0);
+        while(offset>=0 && offset<kind.length) {
+            if(kind[offset]!=STRUCTURE) {
+                visit(pvFields,offset,visitor);
+                ++count;
+                offset = changed.nextSetBit(offset + 1);
+                continue;
+            }
+            int end = nextOffset[offset];
+            for(int leaf=offset+1; leaf<end; ++leaf) {
+                if(kind[leaf]==STRUCTURE) continue;
+                visit(pvFields,leaf,visitor);
+                ++count;
+            }
+            // bits of fields inside the structure are already visited.
+            offset = (end<kind.length) ? changed.nextSetBit(end) : -1;
+        }
+        return count;
+    }
+}
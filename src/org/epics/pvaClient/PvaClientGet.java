@@ -60,6 +60,8 @@ public class PvaClientGet implements ChannelGetRequester
     }
 
     private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
+    // the connect status until channelGetConnect is called.
+    private static final Status connectActiveStatus = statusCreate.createStatus(Status.StatusType.ERROR,"connect active",null);
 
     private enum GetConnectState {connectIdle,connectActive,connected};
     private enum GetState {getIdle,getActive,getComplete};
@@ -79,6 +81,14 @@ public class PvaClientGet implements ChannelGetRequester
     private volatile ChannelGet channelGet = null;
     private volatile PvaClientGetRequester pvaClientGetRequester = null;
     private volatile GetState getState = GetState.getIdle;
+    // set by suspend until the channelGet is connected again.
+    private volatile boolean isSuspended = false;
+    private volatile Runnable resumeDone = null;
+    // incremented by suspend; guarded by lock.
+    private long suspendCount = 0;
+    // System.nanoTime of the last issueGet and getDone.
+    private volatile long issueTime = 0;
+    private volatile long doneTime = 0;
     
 
     private void checkGetState() {
@@ -87,6 +97,9 @@ public class PvaClientGet implements ChannelGetRequester
             System.out.println("PvaClientGet::checkGetState()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
+        if(isSuspended) {
+            throw new RuntimeException("channel " + pvaClientChannel.getChannelName() + " is disconnected");
+        }
         if(connectState==GetConnectState.connectIdle) connect();
         if(connectState==GetConnectState.connectActive)
         {
@@ -97,6 +110,97 @@ public class PvaClientGet implements ChannelGetRequester
         }
     }
 
+    /**
+     * Destroy the channelGet because the channel disconnected.
+     * Called by PvaClientReconnectCoordinator.
+     * A get that is active completes with an error status.
+     * A get that was resumed but is not connected yet is suspended again.
+     * @return true if the get must be resumed when the channel reconnects.
+     */
+    boolean suspend()
+    {
+        ChannelGet channelGet;
+        lock.lock();
+        try {
+            if(isDestroyed) return false;
+            if(isSuspended) {
+                // still queued by the coordinator.
+                if(resumeDone==null) return false;
+                // the new channelGet is abandoned; the coordinator knows the resume did not complete.
+                resumeDone = null;
+            } else if(connectState!=GetConnectState.connected) {
+                return false;
+            }
+            isSuspended = true;
+            ++suspendCount;
+            channelGet = this.channelGet;
+            this.channelGet = null;
+            connectState = GetConnectState.connectIdle;
+            if(getState==GetState.getActive) {
+                channelGetStatus = statusCreate.createStatus(Status.StatusType.ERROR,"channel disconnected",null);
+                getState = GetState.getComplete;
+                waitForGet.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if(channelGet!=null) channelGet.destroy();
+        return true;
+    }
+
+    /**
+     * Create a new channelGet after the channel reconnected.
+     * Called by PvaClientReconnectCoordinator.
+     * @param done Called when the channelGet is connected.
+     */
+    void resume(Runnable done)
+    {
+        if(isDestroyed) {
+            done.run();
+            return;
+        }
+        long count;
+        lock.lock();
+        try {
+            resumeDone = done;
+            connectState = GetConnectState.connectActive;
+            channelGetConnectStatus = connectActiveStatus;
+            count = suspendCount;
+        } finally {
+            lock.unlock();
+        }
+        ChannelGet channelGet = pvaClientChannel.getChannel().createChannelGet(this, pvRequest);
+        boolean isAbandoned;
+        lock.lock();
+        try {
+            // suspend was called again while the channelGet was created.
+            isAbandoned = (count!=suspendCount);
+            if(!isAbandoned && this.channelGet==null) this.channelGet = channelGet;
+        } finally {
+            lock.unlock();
+        }
+        if(isAbandoned && channelGet!=null) channelGet.destroy();
+    }
+
+    /**
+     * Clear the suspended state because the coordinator no longer handles the get.
+     * Called by PvaClientReconnectCoordinator.
+     * The next get connects again.
+     */
+    void release()
+    {
+        lock.lock();
+        try {
+            if(isDestroyed || !isSuspended) return;
+            isSuspended = false;
+            resumeDone = null;
+            ++suspendCount;
+            connectState = GetConnectState.connectIdle;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.epics.pvdata.pv.Requester#getRequesterName()
      */
@@ -126,6 +230,8 @@ public class PvaClientGet implements ChannelGetRequester
         }
         lock.lock();
         try {
+            // a channelGet abandoned by suspend.
+            if(isSuspended && resumeDone==null) return;
             if(status.isOK()) {
                 channelGetConnectStatus = status;
                 connectState = GetConnectState.connected;
@@ -141,7 +247,12 @@ public class PvaClientGet implements ChannelGetRequester
         } finally {
             lock.unlock();
         }
-        if(pvaClientGetRequester!=null) pvaClientGetRequester.channelGetConnect(status,this);
+        isSuspended = false;
+        Runnable done = resumeDone;
+        resumeDone = null;
+        if(done!=null) done.run();
+        final PvaClientGetRequester requester = pvaClientGetRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.channelGetConnect(status,this));
     }
 
     /* (non-Javadoc)
@@ -157,6 +268,7 @@ public class PvaClientGet implements ChannelGetRequester
         }
         lock.lock();
         try {   
+            doneTime = System.nanoTime();
             channelGetStatus = status;
             getState = GetState.getComplete;
             if(status.isOK()) {
@@ -166,7 +278,8 @@ public class PvaClientGet implements ChannelGetRequester
         } finally {
             lock.unlock();
         }
-        if(pvaClientGetRequester!=null) pvaClientGetRequester.getDone(status,this);
+        final PvaClientGetRequester requester = pvaClientGetRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.getDone(status,this));
     }
 
     /**
@@ -182,6 +295,10 @@ public class PvaClientGet implements ChannelGetRequester
             if(isDestroyed) return;
             isDestroyed = true;
         }
+        // a resume that will not complete.
+        Runnable done = resumeDone;
+        resumeDone = null;
+        if(done!=null) done.run();
         if(channelGet!=null) channelGet.destroy();
         if(pvaClientData!=null) pvaClientData = null;
     }
@@ -225,7 +342,7 @@ public class PvaClientGet implements ChannelGetRequester
             throw new RuntimeException(message);
         }
         connectState = GetConnectState.connectActive;
-        channelGetConnectStatus = StatusFactory.getStatusCreate().createStatus(Status.StatusType.ERROR,"connect active",null);
+        channelGetConnectStatus = connectActiveStatus;
         channelGet = pvaClientChannel.getChannel().createChannelGet(this, pvRequest);
     }
 
@@ -267,6 +384,59 @@ public class PvaClientGet implements ChannelGetRequester
         }
 
     }
+    /**
+     * Wait until the channelGet connection to the channel is complete or for timeout.
+     * If the timeout expires the connect stays active and an error status is returned,
+     * so waitConnect can be called again, see isConnectActive.
+     * @param timeout The time in seconds to wait. A value of 0 means forever.
+     * @return status of connection request.
+     */
+    public Status waitConnect(double timeout)
+    {
+        if(timeout<=0.0) return waitConnect();
+        if(isDestroyed) throw new RuntimeException("pvaClientGet was destroyed");
+        if(PvaClient.getDebug()) {
+            System.out.println("PvaClientGet::waitConnect(timeout)"
+                 + " channelName " +  pvaClientChannel.getChannel().getChannelName());
+        }
+        long nanos = (long)(timeout*1e9);
+        lock.lock();
+        try {
+            if(connectState==GetConnectState.connectIdle) {
+                String message = "channel "
+                        + pvaClientChannel.getChannel().getChannelName() 
+                        + " pvaClientGet::waitConnect illegal connect state ";
+                throw new RuntimeException(message);
+            }
+            while(channelGetConnectStatus==connectActiveStatus) {
+                if(nanos<=0) {
+                    return statusCreate.createStatus(Status.StatusType.ERROR,"connect timeout",null);
+                }
+                try {
+                    nanos = waitForConnect.awaitNanos(nanos);
+                } catch(InterruptedException e) {
+                    String message = "channel "
+                            + pvaClientChannel.getChannel().getChannelName() 
+                            + " InterruptedException " + e.getMessage();
+                    throw new RuntimeException(message);
+                }
+            }
+            if(!channelGetConnectStatus.isOK()) connectState = GetConnectState.connectIdle;
+            return channelGetConnectStatus;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Is a connect active, i.e. issued and channelGetConnect not yet called?
+     * @return (false,true) if a connect (is not,is) active.
+     */
+    public boolean isConnectActive()
+    {
+        return connectState==GetConnectState.connectActive && channelGetConnectStatus==connectActiveStatus;
+    }
+
     /**
      * Call issueGet and then waitGet.
      * @throws RuntimeException if create fails.
@@ -306,6 +476,7 @@ public class PvaClientGet implements ChannelGetRequester
             throw new RuntimeException(message);
         }
         getState = GetState.getActive;
+        issueTime = System.nanoTime();
         channelGet.get();
     }
 
@@ -347,6 +518,70 @@ public class PvaClientGet implements ChannelGetRequester
         }
     }
 
+    /**
+     * Wait until get completes or for timeout.
+     * If the timeout expires the get stays active and an error status is returned.
+     * issueGet can not be called again until the get completes, see isGetActive.
+     * @param timeout The time in seconds to wait. A value of 0 means forever.
+     * @return status of get request.
+     */
+    public Status waitGet(double timeout)
+    {
+        if(timeout<=0.0) return waitGet();
+        if(isDestroyed) throw new RuntimeException("pvaClientGet was destroyed");
+        if(PvaClient.getDebug()) {
+            System.out.println("PvaClientGet::waitGet(timeout)"
+                 + " channelName " +  pvaClientChannel.getChannel().getChannelName());
+        }
+        long nanos = (long)(timeout*1e9);
+        lock.lock();
+        try {
+            while(getState==GetState.getActive) {
+                if(nanos<=0) {
+                    return statusCreate.createStatus(Status.StatusType.ERROR,"get timeout",null);
+                }
+                try {
+                    nanos = waitForGet.awaitNanos(nanos);
+                } catch(InterruptedException e) {
+                    String message = "channel "
+                            + pvaClientChannel.getChannel().getChannelName() 
+                            + " InterruptedException " + e.getMessage();
+                    throw new RuntimeException(message);
+                }
+            }
+            if(getState!=GetState.getComplete){
+                String message = "channel "
+                        + pvaClientChannel.getChannel().getChannelName() 
+                        +  " PvaClientGet::waitGet illegal get state ";
+                throw new RuntimeException(message);
+            }
+            return channelGetStatus;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Is a get active, i.e. issued and not yet complete?
+     * @return (false,true) if a get (is not,is) active.
+     */
+    public boolean isGetActive()
+    {
+        return getState==GetState.getActive;
+    }
+
+    /**
+     * Get the time between the last issueGet and its completion.
+     * @return The time in seconds or NaN if the last get has not completed.
+     */
+    public double getLatency()
+    {
+        long issueTime = this.issueTime;
+        long doneTime = this.doneTime;
+        if(issueTime==0 || doneTime-issueTime<0) return Double.NaN;
+        return (doneTime - issueTime)/1e9;
+    }
+
     /**
      * Get the data for the channelGet.
      * @return The interface.
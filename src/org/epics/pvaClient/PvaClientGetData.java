@@ -67,6 +67,7 @@ public class PvaClientGetData {
     private BitSet bitSet = null;
 
     private String messagePrefix = "";
+    private final PvaClientFieldTable.Cache fieldTableCache = new PvaClientFieldTable.Cache();
     private PVField pvValue = null;
     private final PVAlarm pvAlarm = PVAlarmFactory.create();
     private final Alarm alarm = new Alarm();
@@ -118,6 +119,19 @@ public class PvaClientGetData {
         throw new RuntimeException(messagePrefix + noStructure);
     }
 
+    /**
+     * Call the visitor for each changed leaf field, i. e. all fields as shown by bitSet.
+     * The fields are found with an offset table that is shared by all data with the same structure,
+     * and a new table is used if the structure changes, e.g. after a reconnect.
+     * @param visitor The visitor.
+     * @return The number of fields visited.
+     */
+    public int visitChanged(PvaClientChangedFieldVisitor visitor)
+    {
+        if(bitSet==null) throw new RuntimeException(messagePrefix + noStructure);
+        return fieldTableCache.visitChanged(pvStructure,bitSet,visitor);
+    }
+
     /**
      * Show fields that have changed value, i. e. all fields as shown by bitSet.
      * @return The changed fields.
@@ -6,15 +6,29 @@
 
 package org.epics.pvaClient;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import org.epics.pvdata.copy.CreateRequest;
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.PVDataFactory;
 import org.epics.pvdata.factory.StatusFactory;
+import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.monitor.Monitor;
 import org.epics.pvdata.monitor.MonitorElement;
 import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.Convert;
 import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Status;
 import org.epics.pvdata.pv.StatusCreate;
@@ -40,17 +54,37 @@ public class PvaClientMonitor implements MonitorRequester{
             PvaClientChannel pvaClientChannel,
             PVStructure pvRequest)
     {
-        return new PvaClientMonitor(pvaClient,pvaClientChannel,pvRequest);
+        return new PvaClientMonitor(pvaClient,pvaClientChannel,pvRequest,null);
+    }
+    /**
+     * Create a new PvaClientMonitor with a client side queue.
+     * @param pvaClient The single instance of pvaClient.
+     * @param channel The pvaClientChannel.getChannel().
+     * @param pvRequest The pvRequest. This must already have queueSize set by queueOptions.
+     * @param queueOptions The queue options.
+     * @return The new instance.
+     */
+    static PvaClientMonitor create(
+            PvaClient pvaClient,
+            PvaClientChannel pvaClientChannel,
+            PVStructure pvRequest,
+            PvaClientMonitorQueueOptions queueOptions)
+    {
+        return new PvaClientMonitor(pvaClient,pvaClientChannel,pvRequest,queueOptions);
     }
 
     private PvaClientMonitor(
             PvaClient pvaClient,
             PvaClientChannel pvaClientChannel,
-            PVStructure pvRequest)
+            PVStructure pvRequest,
+            PvaClientMonitorQueueOptions queueOptions)
     {
         this.pvaClient = pvaClient;
         this.pvaClientChannel = pvaClientChannel;
         this.pvRequest = pvRequest;
+        this.queueOptions = queueOptions;
+        elementQueue = (queueOptions==null) ? null
+             : new ArrayDeque<MonitorElement>(queueOptions.getQueueSize());
         if(PvaClient.getDebug()) {
             System.out.println("PvaClientMonitor::PvaClientMonitor"
                 + " channelName " + pvaClientChannel.getChannelName());
@@ -59,6 +93,23 @@ public class PvaClientMonitor implements MonitorRequester{
 
     private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
     private static final CreateRequest createRequest = new CreateRequest();
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private static final Convert convert = ConvertFactory.getConvert();
+    // the client queue of a deadband without queue options; the pvAccess default queueSize.
+    private static final int DEADBAND_QUEUE_SIZE = 2;
+    private static ScheduledExecutorService rateLimitTimer = null;
+
+    private static synchronized ScheduledExecutorService getRateLimitTimer()
+    {
+        if(rateLimitTimer==null) {
+            rateLimitTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable,"pvaClientMonitorRateLimit");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return rateLimitTimer;
+    }
 
     private enum MonitorConnectState {connectIdle,connectWait,connectActive,connected};
     private final PvaClient pvaClient;
@@ -66,20 +117,58 @@ public class PvaClientMonitor implements MonitorRequester{
     private PVStructure pvRequest;
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition waitForConnect = lock.newCondition();
-    private final Condition waitForEvent = lock.newCondition();
+    // incremented for each monitorEvent; waitEvent parks until it changes.
+    private final AtomicLong eventCount = new AtomicLong();
 
     private PvaClientMonitorData pvaClientData = null;
+    private final PvaClientMonitorQueueOptions queueOptions;
+    // created for queue options or a deadband; guarded by lock.
+    private volatile ArrayDeque<MonitorElement> elementQueue;
+    private volatile long overrunCount = 0;
+    private volatile long droppedCount = 0;
+    private volatile PvaClientMonitorDeadband deadband = null;
+    private volatile PvaClientMonitorDeadband.Filter deadbandFilter = null;
+    private volatile long filteredCount = 0;
     
     private volatile boolean isStarted = false;
     private volatile boolean isDestroyed = false;
+    // set by suspend until the monitor is connected again.
+    private volatile boolean isSuspended = false;
+    private volatile Runnable resumeDone = null;
+    // incremented by suspend; guarded by lock.
+    private long suspendCount = 0;
     private volatile Status monitorConnectStatus = statusCreate.getStatusOK();
     private volatile Monitor monitor = null;
     private volatile MonitorElement monitorElement = null;
     
     private volatile PvaClientMonitorRequester pvaClientMonitorRequester = null;
+    // dispatched for events; events that arrive while it is queued are coalesced.
+    private final AtomicBoolean isEventDispatched = new AtomicBoolean();
+    private final Runnable eventTask = () -> {
+        isEventDispatched.set(false);
+        PvaClientMonitorRequester requester = this.pvaClientMonitorRequester;
+        if(requester!=null) requester.event(this);
+    };
     private volatile MonitorConnectState connectState = MonitorConnectState.connectIdle;
     private volatile boolean userPoll = false;
-    private volatile boolean userWait = false;
+    // the thread in waitEvent; only one thread can wait at a time.
+    private final AtomicReference<Thread> waitingThread = new AtomicReference<Thread>();
+    private volatile long spinNanos = 0;
+    // set by a multi channel monitor; marked ready for each event.
+    private volatile PvaClientMonitorNotifier notifier = null;
+    private volatile int notifierIndex = 0;
+
+    // rate limited delivery; all guarded by lock except minDeliveryNanos.
+    private volatile long minDeliveryNanos = 0;
+    private PVStructure pendingStructure = null;
+    private BitSet pendingChanged = null;
+    private BitSet pendingOverrun = null;
+    private PVStructure deliveredStructure = null;
+    private BitSet deliveredChanged = null;
+    private BitSet deliveredOverrun = null;
+    private boolean conflatedReady = false;
+    private boolean deliveryScheduled = false;
+    private long lastDeliveryTime = 0;
 
     private void checkMonitorState()
     {
@@ -102,6 +191,309 @@ public class PvaClientMonitor implements MonitorRequester{
         }
     }
 
+    /*
+     * Move elements from the pvAccess queue to the client queue.
+     * Elements rejected by the deadband are released.
+     * Caller must hold lock.
+     * @return true if any element was added to the client queue.
+     */
+    private boolean fillQueue()
+    {
+        Monitor monitor = this.monitor;
+        if(monitor==null) return false;
+        // without queue options new data stays in pvAccess, as it does without a deadband.
+        int queueSize = (queueOptions==null) ? DEADBAND_QUEUE_SIZE : queueOptions.getQueueSize();
+        PvaClientMonitorQueueOptions.OverflowPolicy policy = (queueOptions==null)
+            ? PvaClientMonitorQueueOptions.OverflowPolicy.conflate : queueOptions.getOverflowPolicy();
+        PvaClientMonitorDeadband.Filter filter = deadbandFilter;
+        boolean added = false;
+        while(true) {
+            boolean isFull = elementQueue.size()>=queueSize;
+            // leave new data in pvAccess, which merges it and sets the overrun bits.
+            if(isFull && policy==PvaClientMonitorQueueOptions.OverflowPolicy.conflate) return added;
+            MonitorElement element = monitor.poll();
+            if(element==null) return added;
+            if(filter!=null && !filter.accept(element)) {
+                ++filteredCount;
+                monitor.release(element);
+                continue;
+            }
+            added = true;
+            if(!isFull) {
+                elementQueue.addLast(element);
+                continue;
+            }
+            ++droppedCount;
+            if(policy==PvaClientMonitorQueueOptions.OverflowPolicy.dropNewest) {
+                monitor.release(element);
+                continue;
+            }
+            monitor.release(elementQueue.removeFirst());
+            elementQueue.addLast(element);
+        }
+    }
+
+    /*
+     * Get the next element from the client queue or from pvAccess.
+     */
+    private MonitorElement nextElement()
+    {
+        MonitorElement element;
+        ArrayDeque<MonitorElement> elementQueue = this.elementQueue;
+        if(elementQueue==null) {
+            Monitor monitor = this.monitor;
+            if(monitor==null) return null;
+            element = monitor.poll();
+        } else {
+            lock.lock();
+            try {
+                fillQueue();
+                element = elementQueue.pollFirst();
+            } finally {
+                lock.unlock();
+            }
+        }
+        if(element==null) return null;
+        if(element.getOverrunBitSet().nextSetBit(0)>=0) ++overrunCount;
+        return element;
+    }
+
+    /*
+     * Merge all elements available from pvAccess into pendingStructure and release them.
+     * Caller must hold lock.
+     * @return true if any element was merged.
+     */
+    private boolean mergeElements()
+    {
+        Monitor monitor = this.monitor;
+        if(monitor==null) return false;
+        boolean merged = false;
+        while(true) {
+            MonitorElement element = monitor.poll();
+            if(element==null) return merged;
+            PvaClientMonitorDeadband.Filter filter = deadbandFilter;
+            if(filter!=null && !filter.accept(element)) {
+                ++filteredCount;
+                monitor.release(element);
+                continue;
+            }
+            try {
+                PVStructure pvStructure = element.getPVStructure();
+                if(pendingStructure==null || pendingStructure.getStructure()!=pvStructure.getStructure()) {
+                    pendingStructure = pvDataCreate.createPVStructure(pvStructure.getStructure());
+                    deliveredStructure = pvDataCreate.createPVStructure(pvStructure.getStructure());
+                    int numberFields = pvStructure.getNumberFields();
+                    pendingChanged = new BitSet(numberFields);
+                    pendingOverrun = new BitSet(numberFields);
+                    deliveredChanged = new BitSet(numberFields);
+                    deliveredOverrun = new BitSet(numberFields);
+                    conflatedReady = false;
+                }
+                BitSet changed = element.getChangedBitSet();
+                for(int offset = changed.nextSetBit(0); offset>=0; offset = changed.nextSetBit(offset+1)) {
+                    if(pendingChanged.get(offset)) pendingOverrun.set(offset);
+                    convert.copy(pvStructure.getSubField(offset),pendingStructure.getSubField(offset));
+                }
+                pendingChanged.or(changed);
+                pendingOverrun.or(element.getOverrunBitSet());
+                merged = true;
+            } finally {
+                monitor.release(element);
+            }
+        }
+    }
+
+    /*
+     * Called by monitorEvent when the delivery rate is limited.
+     */
+    private void conflate()
+    {
+        long minDeliveryNanos = this.minDeliveryNanos;
+        lock.lock();
+        try {
+            if(!mergeElements()) return;
+            if(deliveryScheduled) return;
+            long now = System.nanoTime();
+            long delay = lastDeliveryTime + minDeliveryNanos - now;
+            if(delay>0) {
+                deliveryScheduled = true;
+                getRateLimitTimer().schedule(() -> deliverConflated(),delay,TimeUnit.NANOSECONDS);
+                return;
+            }
+            lastDeliveryTime = now;
+            conflatedReady = true;
+        } finally {
+            lock.unlock();
+        }
+        notifyEvent();
+    }
+
+    private void deliverConflated()
+    {
+        lock.lock();
+        try {
+            deliveryScheduled = false;
+            if(isDestroyed || pendingChanged==null || pendingChanged.nextSetBit(0)<0) return;
+            lastDeliveryTime = System.nanoTime();
+            conflatedReady = true;
+        } finally {
+            lock.unlock();
+        }
+        notifyEvent();
+    }
+
+    /*
+     * Move the delivered conflated data into pvaClientData.
+     * @return false if no data has been delivered since the last call.
+     */
+    private boolean pollConflated()
+    {
+        lock.lock();
+        try {
+            if(!conflatedReady) return false;
+            conflatedReady = false;
+            for(int offset = pendingChanged.nextSetBit(0); offset>=0; offset = pendingChanged.nextSetBit(offset+1)) {
+                convert.copy(pendingStructure.getSubField(offset),deliveredStructure.getSubField(offset));
+            }
+            deliveredChanged.clear();
+            deliveredChanged.or(pendingChanged);
+            deliveredOverrun.clear();
+            deliveredOverrun.or(pendingOverrun);
+            pendingChanged.clear();
+            pendingOverrun.clear();
+        } finally {
+            lock.unlock();
+        }
+        if(deliveredOverrun.nextSetBit(0)>=0) ++overrunCount;
+        pvaClientData.setData(deliveredStructure,deliveredChanged,deliveredOverrun);
+        return true;
+    }
+
+    private void notifyEvent()
+    {
+        eventCount.incrementAndGet();
+        Thread thread = waitingThread.get();
+        if(thread!=null) LockSupport.unpark(thread);
+        PvaClientMonitorNotifier notifier = this.notifier;
+        if(notifier!=null) notifier.ready(notifierIndex);
+        PvaClientMonitorRequester requester = pvaClientMonitorRequester;
+        if(requester==null) return;
+        if(!pvaClientChannel.hasDispatcher()) {
+            requester.event(this);
+        } else if(isEventDispatched.compareAndSet(false,true)) {
+            pvaClientChannel.dispatch(eventTask);
+        }
+    }
+
+    /**
+     * Set the notifier that is marked ready for each event.
+     * Called by PvaClientMultiMonitorDouble and PvaClientNTMultiMonitor.
+     * @param notifier The notifier or null.
+     * @param index The index of this monitor in the notifier.
+     */
+    void setNotifier(PvaClientMonitorNotifier notifier,int index)
+    {
+        notifierIndex = index;
+        this.notifier = notifier;
+    }
+
+    /**
+     * Destroy the pvAccess monitor because the channel disconnected.
+     * Called by PvaClientReconnectCoordinator.
+     * While suspended poll returns false.
+     * A monitor that was resumed but is not connected yet is suspended again.
+     * @return true if the monitor must be resumed when the channel reconnects.
+     */
+    boolean suspend()
+    {
+        Monitor monitor;
+        lock.lock();
+        try {
+            if(isDestroyed) return false;
+            if(isSuspended) {
+                // still queued by the coordinator.
+                if(resumeDone==null) return false;
+                // the new monitor is abandoned; the coordinator knows the resume did not complete.
+                resumeDone = null;
+            } else if(this.monitor==null) {
+                return false;
+            }
+            isSuspended = true;
+            ++suspendCount;
+            monitor = this.monitor;
+            this.monitor = null;
+            // an element returned by poll belonged to the destroyed monitor.
+            monitorElement = null;
+            isStarted = false;
+            connectState = MonitorConnectState.connectIdle;
+            if(elementQueue!=null) elementQueue.clear();
+        } finally {
+            lock.unlock();
+        }
+        if(monitor!=null) monitor.destroy();
+        return true;
+    }
+
+    /**
+     * Create a new pvAccess monitor after the channel reconnected.
+     * Called by PvaClientReconnectCoordinator.
+     * @param done Called when the monitor is connected.
+     */
+    void resume(Runnable done)
+    {
+        if(isDestroyed) {
+            done.run();
+            return;
+        }
+        long count;
+        lock.lock();
+        try {
+            resumeDone = done;
+            connectState = MonitorConnectState.connectWait;
+            count = suspendCount;
+        } finally {
+            lock.unlock();
+        }
+        Monitor monitor = pvaClientChannel.getChannel().createMonitor(this, pvRequest);
+        boolean isAbandoned;
+        lock.lock();
+        try {
+            // suspend was called again while the monitor was created.
+            isAbandoned = (count!=suspendCount);
+            if(!isAbandoned && this.monitor==null) this.monitor = monitor;
+        } finally {
+            lock.unlock();
+        }
+        if(isAbandoned && monitor!=null) monitor.destroy();
+    }
+
+    /**
+     * Clear the suspended state because the coordinator no longer handles the monitor.
+     * Called by PvaClientReconnectCoordinator.
+     * The next poll connects and starts the monitor again.
+     */
+    void release()
+    {
+        lock.lock();
+        try {
+            if(isDestroyed || !isSuspended) return;
+            isSuspended = false;
+            resumeDone = null;
+            ++suspendCount;
+            connectState = MonitorConnectState.connectIdle;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void resumed()
+    {
+        isSuspended = false;
+        Runnable done = resumeDone;
+        resumeDone = null;
+        if(done!=null) done.run();
+    }
+
     /* (non-Javadoc)
      * @see org.epics.pvdata.pv.Requester#getRequesterName()
      */
@@ -132,19 +524,26 @@ public class PvaClientMonitor implements MonitorRequester{
             System.out.println("PvaClientMonitor::monitorConnect()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
+        boolean isOK;
         lock.lock();
         try {
+            // a monitor abandoned by suspend.
+            if(isSuspended && resumeDone==null) return;
             this.monitor = monitor;
-            if(!status.isOK()) {
+            isOK = status.isOK();
+            if(!isOK) {
                  String message = "PvaClientMonitor::monitorConnect"
                    + "\npvRequest\n" + pvRequest
                    + "\nerror\n" + status.getMessage();
                  monitorConnectStatus = StatusFactory.getStatusCreate().createStatus(Status.StatusType.ERROR,message,null);
-                 return;
             }
         } finally {
             lock.unlock();
         }
+        if(!isOK) {
+            resumed();
+            return;
+        }
         boolean signal = (connectState==MonitorConnectState.connectWait) ? true : false;
         monitorConnectStatus = status;
         connectState = MonitorConnectState.connected;
@@ -176,7 +575,9 @@ public class PvaClientMonitor implements MonitorRequester{
             }
             start();
         }
-        if(pvaClientMonitorRequester!=null) pvaClientMonitorRequester.monitorConnect(status,this,structure);
+        resumed();
+        final PvaClientMonitorRequester requester = pvaClientMonitorRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.monitorConnect(status,this,structure));
     }
     /* (non-Javadoc)
      * @see org.epics.pvdata.monitor.MonitorRequester#monitorEvent(org.epics.pvdata.monitor.Monitor)
@@ -188,13 +589,22 @@ public class PvaClientMonitor implements MonitorRequester{
             System.out.println("PvaClientMonitor::monitorEvent()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
-        if(pvaClientMonitorRequester!=null) pvaClientMonitorRequester.event(this);
-        lock.lock();
-        try {
-            if(userWait) waitForEvent.signal();
-        } finally {
-            lock.unlock();
+        if(minDeliveryNanos>0) {
+            conflate();
+            return;
         }
+        if(elementQueue!=null) {
+            boolean added;
+            lock.lock();
+            try {
+                added = fillQueue();
+            } finally {
+                lock.unlock();
+            }
+            // do not call the requester for updates that were all inside the deadband.
+            if(!added && deadbandFilter!=null) return;
+        }
+        notifyEvent();
     }
     /* (non-Javadoc)
      * @see org.epics.pvdata.monitor.MonitorRequester#unlisten(org.epics.pvdata.monitor.Monitor)
@@ -206,8 +616,9 @@ public class PvaClientMonitor implements MonitorRequester{
             System.out.println("PvaClientMonitor::unlisten()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
-        if(pvaClientMonitorRequester!=null){
-            pvaClientMonitorRequester.unlisten(this);
+        final PvaClientMonitorRequester requester = pvaClientMonitorRequester;
+        if(requester!=null){
+            pvaClientChannel.dispatch(() -> requester.unlisten(this));
             return;
         }
         String message = "PvaClientMonitor::unlisten called but no requester to receive message";
@@ -227,9 +638,22 @@ public class PvaClientMonitor implements MonitorRequester{
             if(isDestroyed) return;
             isDestroyed = true;
         }
+        // a resume that will not complete.
+        Runnable done = resumeDone;
+        resumeDone = null;
+        if(done!=null) done.run();
+        pvaClientChannel.removeMonitor(this);
         if(monitor!=null) monitor.destroy();
         monitor = null;
         monitorElement = null;
+        Thread thread = waitingThread.get();
+        if(thread!=null) LockSupport.unpark(thread);
+        lock.lock();
+        try {
+            if(elementQueue!=null) elementQueue.clear();
+        } finally {
+            lock.unlock();
+        }
     }
     /**
      * call issueConnect and then waitConnect.
@@ -341,6 +765,7 @@ public class PvaClientMonitor implements MonitorRequester{
             System.out.println("PvaClientMonitor::start(request)"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
+        if(queueOptions!=null) request = queueOptions.applyTo(request);
         PVStructure pvRequest = createRequest.createRequest(request);
         if(pvRequest==null) {
             throw new RuntimeException(createRequest.getMessage());
@@ -351,10 +776,17 @@ public class PvaClientMonitor implements MonitorRequester{
             monitor.destroy();
             monitor = null;
         }
+        lock.lock();
+        try {
+            if(elementQueue!=null) elementQueue.clear();
+        } finally {
+            lock.unlock();
+        }
+        PvaClientMonitorDeadband deadband = this.deadband;
+        if(deadband!=null) deadbandFilter = deadband.createFilter();
         isStarted = false;
         connectState = MonitorConnectState.connectIdle;
         userPoll = false;
-        userWait = false;
         this.pvRequest = pvRequest;
         connect();
     }
@@ -385,6 +817,7 @@ public class PvaClientMonitor implements MonitorRequester{
             System.out.println("PvaClientMonitor::poll()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
+        if(isSuspended) return false;
         checkMonitorState();
         if(!isStarted) {
             throw new RuntimeException("PvaClientMonitor::poll illegal state");
@@ -392,18 +825,74 @@ public class PvaClientMonitor implements MonitorRequester{
         if(userPoll) {
             throw new RuntimeException("PvaClientMonitor::poll did not release last ");
         }
-        monitorElement = monitor.poll();
+        if(minDeliveryNanos>0) {
+            monitorElement = null;
+            if(!pollConflated()) return false;
+            userPoll = true;
+            return true;
+        }
+        monitorElement = nextElement();
         if(monitorElement==null) return false;
         userPoll = true;
         pvaClientData.setData(monitorElement);
         return true;
     }
+    /**
+     * Process the queued monitor elements in one call.
+     * For each element the data is set, consumer.accept is called, and the element is released.
+     * This replaces a sequence of poll, getData and releaseEvent for each element.
+     * It can not be called while an element returned by poll has not been released.
+     * @param consumer Called for each element.
+     * The PvaClientMonitorData is only valid until consumer.accept returns.
+     * @param maxElements The maximum number of elements to process. A value of 0 means no limit.
+     * @return The number of elements processed.
+     */
+    public int drain(Consumer<PvaClientMonitorData> consumer,int maxElements)
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMonitor was destroyed");
+        if(PvaClient.getDebug()) {
+            System.out.println("PvaClientMonitor::drain()"
+                 + " channelName " +  pvaClientChannel.getChannel().getChannelName());
+        }
+        if(isSuspended) return 0;
+        checkMonitorState();
+        if(!isStarted) {
+            throw new RuntimeException("PvaClientMonitor::drain illegal state");
+        }
+        if(userPoll) {
+            throw new RuntimeException("PvaClientMonitor::drain did not release last ");
+        }
+        if(minDeliveryNanos>0) {
+            if(!pollConflated()) return 0;
+            consumer.accept(pvaClientData);
+            return 1;
+        }
+        Monitor monitor = this.monitor;
+        if(monitor==null) return 0;
+        int count = 0;
+        while(maxElements<=0 || count<maxElements) {
+            MonitorElement element = nextElement();
+            if(element==null) break;
+            try {
+                pvaClientData.setData(element);
+                consumer.accept(pvaClientData);
+            } finally {
+                monitor.release(element);
+            }
+            ++count;
+        }
+        return count;
+    }
     /**
      * Wait for a monitor event.
      * If true then getData can be called to get the data.
      * Also after done with data releaseEvent must be called before another call to poll or waitEvent.
-     * @param secondsToWait Time to wait for event.
+     * The caller is woken directly by monitorEvent without taking a lock.
+     * If setWaitEventSpin has been called the caller first spins for that time before parking.
+     * Only one thread can wait at a time.
+     * @param secondsToWait Time to wait for event. 0.0 means forever.
      * @return (false,true) means event (did not, did) occur.
+     * @throws RuntimeException if another thread is waiting.
      */
     public boolean waitEvent(double secondsToWait)
     {
@@ -412,34 +901,126 @@ public class PvaClientMonitor implements MonitorRequester{
             System.out.println("PvaClientMonitor::waitEvent()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
-        if(!isStarted) {
+        // a monitor released by the coordinator is started again by poll.
+        if(!isStarted && !isSuspended && connectState!=MonitorConnectState.connectIdle) {
             throw new RuntimeException("PvaClientMonitor::waitEvent illegal state");
         }
-        lock.lock();
+        if(!waitingThread.compareAndSet(null,Thread.currentThread())) {
+            throw new RuntimeException("PvaClientMonitor::waitEvent another thread is waiting");
+        }
         try {
+            // read the count before poll so that an event after poll is not lost.
+            long count = eventCount.get();
             if(poll()) return true;
-            userWait = true;
-            try {
-                if(secondsToWait==0.0) {
-                    waitForEvent.await();
+            long start = System.nanoTime();
+            long timeout = (secondsToWait==0.0) ? 0 : (long)(secondsToWait*1e9);
+            long spin = spinNanos;
+            while(eventCount.get()==count && !isDestroyed) {
+                long elapsed = System.nanoTime() - start;
+                if(timeout>0 && elapsed>=timeout) break;
+                if(elapsed<spin) {
+                    Thread.yield();
+                    continue;
+                }
+                if(timeout>0) {
+                    LockSupport.parkNanos(this,timeout - elapsed);
                 } else {
-                    long nano = (long)(secondsToWait*1e9);
-                    // No special action if timeout occurs.
-                    waitForEvent.awaitNanos(nano);
+                    LockSupport.park(this);
+                }
+                if(Thread.interrupted()) {
+                    String message = "pvaClientMonitor::waitEvent channel "
+                            + pvaClientChannel.getChannel().getChannelName() 
+                            + " InterruptedException";
+                    throw new RuntimeException(message);
                 }
             }
-            catch(InterruptedException e) {
-                String message = "pvaClientMonitor::waitEvent channel "
-                        + pvaClientChannel.getChannel().getChannelName() 
-                        + " InterruptedException " + e.getMessage();
-                throw new RuntimeException(message);
-            }
-            userWait = false;
             return poll();
+        } finally {
+            waitingThread.set(null);
+        }
+    }
+    /**
+     * Set the time that waitEvent spins before parking the calling thread.
+     * Spinning gives the lowest wakeup latency but uses a CPU while waiting.
+     * The default is 0.0, i.e. waitEvent parks immediately.
+     * @param secondsToSpin The time in seconds to spin.
+     */
+    public void setWaitEventSpin(double secondsToSpin)
+    {
+        spinNanos = (secondsToSpin<=0.0) ? 0 : (long)(secondsToSpin*1e9);
+    }
+    /**
+     * Limit the rate at which monitor events are delivered.
+     * While limited, all updates from pvAccess are merged into a single client owned structure
+     * and released immediately. The requester is called at most maxRate times per second,
+     * and poll returns the latest value with the changed bits of all merged updates.
+     * A field that changed more than once has its overrun bit set.
+     * This can not be combined with queue options.
+     * @param maxRate The maximum number of events per second. 0.0 means no limit.
+     */
+    public void setRateLimit(double maxRate)
+    {
+        if(maxRate>0.0 && queueOptions!=null) {
+            throw new RuntimeException("channel " + pvaClientChannel.getChannelName()
+                + " PvaClientMonitor::setRateLimit can not be used with queue options");
+        }
+        lock.lock();
+        try {
+            minDeliveryNanos = (maxRate<=0.0) ? 0 : (long)(1e9/maxRate);
+            if(pendingChanged!=null) {
+                pendingChanged.clear();
+                pendingOverrun.clear();
+            }
+            conflatedReady = false;
         } finally {
             lock.unlock();
         }
     }
+    /**
+     * Set a client side deadband.
+     * Updates that do not pass are released before the requester is called
+     * and are counted by getFilteredCount.
+     * The update following this call always passes.
+     * Without queue options at most two updates that passed are queued for the client,
+     * and further updates are merged by pvAccess and shown by the overrun BitSet.
+     * @param deadband The deadband or null to remove it.
+     */
+    public void setDeadband(PvaClientMonitorDeadband deadband)
+    {
+        lock.lock();
+        try {
+            if(deadband!=null && elementQueue==null) elementQueue = new ArrayDeque<MonitorElement>(DEADBAND_QUEUE_SIZE);
+            this.deadband = deadband;
+            deadbandFilter = (deadband==null) ? null : deadband.createFilter();
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Get the client side deadband.
+     * @return The deadband or null if none is set.
+     */
+    public PvaClientMonitorDeadband getDeadband()
+    {
+        return deadband;
+    }
+    /**
+     * Get the number of updates released because they were inside the deadband.
+     * @return The count.
+     */
+    public long getFilteredCount()
+    {
+        return filteredCount;
+    }
+    /**
+     * Get the maximum delivery rate.
+     * @return The maximum number of events per second or 0.0 if there is no limit.
+     */
+    public double getRateLimit()
+    {
+        long minDeliveryNanos = this.minDeliveryNanos;
+        return (minDeliveryNanos==0) ? 0.0 : 1e9/minDeliveryNanos;
+    }
     /**
      * Release the monitorElement returned by poll.
      */
@@ -451,14 +1032,17 @@ public class PvaClientMonitor implements MonitorRequester{
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
 
-        if(!isStarted) {
+        // a monitor released by the coordinator is started again by poll.
+        if(!isStarted && !isSuspended && connectState!=MonitorConnectState.connectIdle) {
             throw new RuntimeException("PvaClientMonitor::releaseEvent illegal state");
         }
         if(!userPoll) {
             throw new RuntimeException("PvaClientMonitor::releaseEvent did not call poll");
         }
         userPoll = false;
-        monitor.release(monitorElement);
+        Monitor monitor = this.monitor;
+        if(monitorElement!=null && monitor!=null) monitor.release(monitorElement);
+        monitorElement = null;
     }
     /**
      * Get the data in which monitor events are placed.
@@ -487,6 +1071,45 @@ public class PvaClientMonitor implements MonitorRequester{
         }
         pvaClientMonitorRequester = requester;
     }
+    /**
+     * Get the queue options.
+     * @return The options or null if the monitor uses the pvAccess queue directly.
+     */
+    public PvaClientMonitorQueueOptions getQueueOptions()
+    {
+        return queueOptions;
+    }
+    /**
+     * Get the number of elements that are queued and not yet returned by poll.
+     * This is always 0 if the monitor has neither queue options nor a deadband.
+     * @return The consumer lag.
+     */
+    public int getQueueLag()
+    {
+        lock.lock();
+        try {
+            return (elementQueue==null) ? 0 : elementQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    /**
+     * Get the number of elements returned by poll that had a non empty overrun BitSet.
+     * @return The count.
+     */
+    public long getOverrunCount()
+    {
+        return overrunCount;
+    }
+    /**
+     * Get the number of elements discarded because the client queue was full.
+     * This is always 0 for OverflowPolicy.conflate, which reports via getOverrunCount.
+     * @return The count.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount;
+    }
     /**
      * Get the PvaClientChannel
      * @return The interface
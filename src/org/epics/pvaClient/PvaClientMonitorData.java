@@ -6,6 +6,7 @@
 package org.epics.pvaClient;
 
 import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.PVDataFactory;
 import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.monitor.MonitorElement;
 import org.epics.pvdata.property.Alarm;
@@ -16,6 +17,7 @@ import org.epics.pvdata.property.PVTimeStampFactory;
 import org.epics.pvdata.property.TimeStamp;
 import org.epics.pvdata.property.TimeStampFactory;
 import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.DoubleArrayData;
 import org.epics.pvdata.pv.PVArray;
 import org.epics.pvdata.pv.PVDouble;
@@ -51,6 +53,7 @@ public class PvaClientMonitorData {
     }
 
     private static final Convert convert = ConvertFactory.getConvert();
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
     private static final String noStructure ="no pvStructure ";
     private static final String noValue = "no value field";
     private static final String noScalar = "value is not a scalar" ;
@@ -68,6 +71,7 @@ public class PvaClientMonitorData {
     private BitSet overrunBitSet = null;
 
     private String messagePrefix = "";
+    private final PvaClientFieldTable.Cache fieldTableCache = new PvaClientFieldTable.Cache();
     private PVField pvValue = null;
     private final PVAlarm pvAlarm = PVAlarmFactory.create();
     private final Alarm alarm = new Alarm();
@@ -89,6 +93,38 @@ public class PvaClientMonitorData {
         pvValue = pvStructure.getSubField("value");
     }
 
+    /**
+     * This is called by pvaClientMonitor when the data is held by the client rather than pvAccess.
+     * @param pvStructure The data.
+     * @param changedBitSet The changed fields.
+     * @param overrunBitSet The fields that changed more than once.
+     */
+    void setData(PVStructure pvStructure,BitSet changedBitSet,BitSet overrunBitSet)
+    {
+        this.pvStructure = pvStructure;
+        this.changedBitSet = changedBitSet;
+        this.overrunBitSet = overrunBitSet;
+        pvValue = pvStructure.getSubField("value");
+    }
+
+    /**
+     * Create a copy of the current data.
+     * The copy is not changed when the monitor element is released.
+     * @return The new instance.
+     */
+    public PvaClientMonitorData createSnapshot()
+    {
+        if(pvStructure==null) throw new RuntimeException(messagePrefix + noStructure);
+        PvaClientMonitorData snapshot = new PvaClientMonitorData(structure);
+        snapshot.messagePrefix = messagePrefix;
+        BitSet changed = new BitSet(pvStructure.getNumberFields());
+        changed.or(changedBitSet);
+        BitSet overrun = new BitSet(pvStructure.getNumberFields());
+        overrun.or(overrunBitSet);
+        snapshot.setData(pvDataCreate.createPVStructure(pvStructure),changed,overrun);
+        return snapshot;
+    }
+
     private void checkValue()
     {
         if(pvValue!=null) return;
@@ -141,6 +177,19 @@ public class PvaClientMonitorData {
         throw new RuntimeException(messagePrefix + noStructure);
     }
 
+    /**
+     * Call the visitor for each changed leaf field, i. e. all fields as shown by changedBitSet.
+     * The fields are found with an offset table that is shared by all data with the same structure,
+     * and a new table is used if the structure changes, e.g. after a reconnect.
+     * @param visitor The visitor.
+     * @return The number of fields visited.
+     */
+    public int visitChanged(PvaClientChangedFieldVisitor visitor)
+    {
+        if(changedBitSet==null) throw new RuntimeException(messagePrefix + noStructure);
+        return fieldTableCache.visitChanged(pvStructure,changedBitSet,visitor);
+    }
+
     /**
      * Show fields that have changed value, i. e. all fields as shown by changedBitSet.
      * @return The changed fields.
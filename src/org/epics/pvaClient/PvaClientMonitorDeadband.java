@@ -0,0 +1,250 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Client side deadband for a PvaClientMonitor.
+ * This provides the equivalent of record MDEL and alarm filtering for IOCs that can not be reconfigured.
+ * <p>
+ * An update passes if the value moved outside the absolute or the percent deadband
+ * relative to the last value that passed, if the alarm changed as selected by the AlarmFilter,
+ * or if any field other than value, alarm, and timeStamp changed.
+ * If neither deadband is set any change of the value passes.
+ * The first update always passes.
+ * Updates that do not pass are released before the requester is called.
+ * The deadband only applies to numeric scalar value fields.
+ */
+public class PvaClientMonitorDeadband
+{
+    /**
+     * Which alarm changes pass the filter.
+     * A change of only the status or only the message can not be selected by itself;
+     * always passes both and severity passes neither.
+     */
+    public enum AlarmFilter {
+        /** A change of severity, status, or message passes. */
+        always,
+        /** Only a change of severity passes. */
+        severity,
+        /** Alarm changes never pass by themselves. */
+        never
+    };
+
+    /**
+     * Create a deadband.
+     * @param absoluteDeadband The absolute deadband for the value field. 0.0 means not used.
+     * @param percentDeadband The deadband for the value field in percent of the last value. 0.0 means not used.
+     * @param alarmFilter Which alarm changes pass.
+     * @return The new instance.
+     */
+    public static PvaClientMonitorDeadband create(
+            double absoluteDeadband,
+            double percentDeadband,
+            AlarmFilter alarmFilter)
+    {
+        return new PvaClientMonitorDeadband(absoluteDeadband,percentDeadband,alarmFilter);
+    }
+
+    private PvaClientMonitorDeadband(
+            double absoluteDeadband,
+            double percentDeadband,
+            AlarmFilter alarmFilter)
+    {
+        if(absoluteDeadband<0.0 || percentDeadband<0.0) {
+            throw new IllegalArgumentException("PvaClientMonitorDeadband deadband can not be negative");
+        }
+        if(alarmFilter==null) {
+            throw new IllegalArgumentException("PvaClientMonitorDeadband alarmFilter is null");
+        }
+        this.absoluteDeadband = absoluteDeadband;
+        this.percentDeadband = percentDeadband;
+        this.alarmFilter = alarmFilter;
+    }
+
+    private static final Convert convert = ConvertFactory.getConvert();
+    private final double absoluteDeadband;
+    private final double percentDeadband;
+    private final AlarmFilter alarmFilter;
+
+    /**
+     * Get the absolute deadband.
+     * @return The deadband.
+     */
+    public double getAbsoluteDeadband()
+    {
+        return absoluteDeadband;
+    }
+
+    /**
+     * Get the percent deadband.
+     * @return The deadband.
+     */
+    public double getPercentDeadband()
+    {
+        return percentDeadband;
+    }
+
+    /**
+     * Get the alarm filter.
+     * @return The filter.
+     */
+    public AlarmFilter getAlarmFilter()
+    {
+        return alarmFilter;
+    }
+
+    /**
+     * Create the filter state for one monitor.
+     * @return The new filter.
+     */
+    Filter createFilter()
+    {
+        return new Filter();
+    }
+
+    public String toString()
+    {
+        return "absoluteDeadband " + absoluteDeadband
+             + " percentDeadband " + percentDeadband
+             + " alarmFilter " + alarmFilter;
+    }
+
+    /**
+     * The state of the filter for one monitor.
+     * This is only called by the thread that takes elements from pvAccess.
+     */
+    class Filter
+    {
+        private Structure structure = null;
+        private int valueOffset;
+        private int valueNextOffset;
+        private boolean isNumeric;
+        private int alarmOffset;
+        private int alarmNextOffset;
+        private int severityOffset;
+        private int statusOffset;
+        private int messageOffset;
+        private int timeStampOffset;
+        private int timeStampNextOffset;
+
+        private boolean hasLast = false;
+        private double lastValue;
+        private int lastSeverity;
+        private int lastStatus;
+        private String lastMessage;
+
+        private void init(PVStructure pvStructure)
+        {
+            structure = pvStructure.getStructure();
+            hasLast = false;
+            PVField pvValue = pvStructure.getSubField("value");
+            valueOffset = (pvValue==null) ? -1 : pvValue.getFieldOffset();
+            valueNextOffset = (pvValue==null) ? -1 : pvValue.getNextFieldOffset();
+            isNumeric = (pvValue instanceof PVScalar)
+                && ((PVScalar)pvValue).getScalar().getScalarType().isNumeric();
+            PVField pvAlarm = pvStructure.getSubField("alarm");
+            alarmOffset = (pvAlarm==null) ? -1 : pvAlarm.getFieldOffset();
+            alarmNextOffset = (pvAlarm==null) ? -1 : pvAlarm.getNextFieldOffset();
+            severityOffset = offset(pvStructure,"alarm.severity");
+            statusOffset = offset(pvStructure,"alarm.status");
+            messageOffset = offset(pvStructure,"alarm.message");
+            PVField pvTimeStamp = pvStructure.getSubField("timeStamp");
+            timeStampOffset = (pvTimeStamp==null) ? -1 : pvTimeStamp.getFieldOffset();
+            timeStampNextOffset = (pvTimeStamp==null) ? -1 : pvTimeStamp.getNextFieldOffset();
+        }
+
+        private int offset(PVStructure pvStructure,String name)
+        {
+            PVField pvField = pvStructure.getSubField(name);
+            return (pvField==null) ? -1 : pvField.getFieldOffset();
+        }
+
+        private boolean isChanged(BitSet changed,int offset,int parentOffset)
+        {
+            if(offset<0) return false;
+            return changed.get(offset) || changed.get(0) || (parentOffset>0 && changed.get(parentOffset));
+        }
+
+        private void remember(PVStructure pvStructure)
+        {
+            if(isNumeric) lastValue = convert.toDouble((PVScalar)pvStructure.getSubField(valueOffset));
+            if(severityOffset>=0) lastSeverity = ((PVInt)pvStructure.getSubField(severityOffset)).get();
+            if(statusOffset>=0) lastStatus = ((PVInt)pvStructure.getSubField(statusOffset)).get();
+            if(messageOffset>=0) lastMessage = ((PVString)pvStructure.getSubField(messageOffset)).get();
+            hasLast = true;
+        }
+
+        private boolean outsideDeadband(double value)
+        {
+            if(Double.isNaN(value) || Double.isNaN(lastValue)) {
+                return Double.isNaN(value)!=Double.isNaN(lastValue);
+            }
+            double delta = Math.abs(value - lastValue);
+            if(absoluteDeadband==0.0 && percentDeadband==0.0) return delta!=0.0;
+            if(absoluteDeadband>0.0 && delta>absoluteDeadband) return true;
+            if(percentDeadband>0.0 && delta>Math.abs(lastValue)*percentDeadband/100.0) return true;
+            return false;
+        }
+
+        private boolean alarmChanged(PVStructure pvStructure,BitSet changed)
+        {
+            if(alarmFilter==AlarmFilter.never) return false;
+            if(isChanged(changed,severityOffset,alarmOffset)
+            && ((PVInt)pvStructure.getSubField(severityOffset)).get()!=lastSeverity) return true;
+            if(alarmFilter==AlarmFilter.severity) return false;
+            if(isChanged(changed,statusOffset,alarmOffset)
+            && ((PVInt)pvStructure.getSubField(statusOffset)).get()!=lastStatus) return true;
+            if(isChanged(changed,messageOffset,alarmOffset)) {
+                String message = ((PVString)pvStructure.getSubField(messageOffset)).get();
+                if(message==null ? lastMessage!=null : !message.equals(lastMessage)) return true;
+            }
+            return false;
+        }
+
+        private boolean otherChanged(BitSet changed)
+        {
+            for(int offset = changed.nextSetBit(1); offset>=0; offset = changed.nextSetBit(offset+1)) {
+                if(offset>=valueOffset && offset<valueNextOffset) continue;
+                if(offset>=alarmOffset && offset<alarmNextOffset) continue;
+                if(offset>=timeStampOffset && offset<timeStampNextOffset) continue;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Decide if an element passes the deadband.
+         * If it passes it becomes the reference for the following elements.
+         * @param element The element.
+         * @return (false,true) if the element should be (released,delivered).
+         */
+        boolean accept(MonitorElement element)
+        {
+            PVStructure pvStructure = element.getPVStructure();
+            BitSet changed = element.getChangedBitSet();
+            if(pvStructure.getStructure()!=structure) init(pvStructure);
+            boolean pass = !hasLast || otherChanged(changed) || alarmChanged(pvStructure,changed);
+            if(!pass && isChanged(changed,valueOffset,0)) {
+                pass = !isNumeric
+                    || outsideDeadband(convert.toDouble((PVScalar)pvStructure.getSubField(valueOffset)));
+            }
+            if(pass) remember(pvStructure);
+            return pass;
+        }
+    }
+}
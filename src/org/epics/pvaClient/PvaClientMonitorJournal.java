@@ -0,0 +1,343 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.misc.SerializeHelper;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.SerializableControl;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Records every monitor update for a set of channels into append only, memory mapped segment files.
+ * <p>
+ * Each update is serialized with the pvAccess serialization directly into the mapped file,
+ * i.e. without an intermediate copy.
+ * Only the fields selected by the changed BitSet are written.
+ * When a segment is full a new one is started.
+ * Segments are named baseName-NNNNNN.pvj in the given directory.
+ * <p>
+ * A segment starts with the int MAGIC and the int segment number.
+ * This is followed by records, each of which is an int length, a byte type, and length-1 bytes.
+ * A length of 0 marks the end of the segment.
+ * A DEFINE record is an int channel index, the channel name, and the serialized Structure.
+ * An UPDATE record is an int channel index, the long receive time in nanoseconds since the POSIX epoch,
+ * the changed BitSet, the overrun BitSet, and the PVStructure serialized with the changed BitSet.
+ * Every segment repeats the DEFINE records of the channels it refers to, so each segment can be read by itself.
+ * <p>
+ * The receive time is the wall clock time when the journal was created
+ * plus the System.nanoTime elapsed since then,
+ * so it has nanosecond resolution and increases in record order.
+ */
+public class PvaClientMonitorJournal
+{
+    static final int MAGIC = 0x50564A31;
+    static final byte DEFINE = 1;
+    static final byte UPDATE = 2;
+    static final String SUFFIX = ".pvj";
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int MIN_SEGMENT_SIZE = 64*1024;
+
+    /**
+     * Create a journal.
+     * @param directory The directory in which segments are created.
+     * @param baseName The base name of the segment files.
+     * @param segmentSize The size in bytes of each segment.
+     * @return The new instance.
+     */
+    public static PvaClientMonitorJournal create(
+            String directory,
+            String baseName,
+            int segmentSize)
+    {
+        return new PvaClientMonitorJournal(directory,baseName,segmentSize);
+    }
+
+    /**
+     * Get the name of a segment file.
+     * @param directory The directory.
+     * @param baseName The base name.
+     * @param segmentNumber The segment number.
+     * @return The file.
+     */
+    static File segmentFile(String directory,String baseName,int segmentNumber)
+    {
+        return new File(directory,String.format("%s-%06d%s",baseName,segmentNumber,SUFFIX));
+    }
+
+    private PvaClientMonitorJournal(
+            String directory,
+            String baseName,
+            int segmentSize)
+    {
+        if(segmentSize<MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("PvaClientMonitorJournal segmentSize must be at least " + MIN_SEGMENT_SIZE);
+        }
+        this.directory = directory;
+        this.baseName = baseName;
+        this.segmentSize = segmentSize;
+        openSegment();
+    }
+
+    private static class SegmentFullException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+        SegmentFullException() { super(null,null,false,false); }
+    }
+    private static final SegmentFullException segmentFull = new SegmentFullException();
+
+    private class Control implements SerializableControl
+    {
+        public void flushSerializeBuffer() { throw segmentFull; }
+        public void ensureBuffer(int size) { if(buffer.remaining()<size) throw segmentFull; }
+        public void alignBuffer(int alignment) {}
+        public void cachedSerialize(Field field,ByteBuffer buffer) { field.serialize(buffer,this); }
+    }
+
+    private class JournalChannel implements PvaClientMonitorRequester, Consumer<PvaClientMonitorData>
+    {
+        private final int index;
+        private final String channelName;
+        private PvaClientMonitor pvaClientMonitor = null;
+        private Structure structure = null;
+        private int definedSegment = -1;
+
+        JournalChannel(int index,String channelName)
+        {
+            this.index = index;
+            this.channelName = channelName;
+        }
+
+        public void accept(PvaClientMonitorData data)
+        {
+            write(this,data.getPVStructure(),data.getChangedBitSet(),data.getOverrunBitSet());
+        }
+
+        /*
+         * The only path that drains the monitor, so updates are written one at a time and in order.
+         * It must not be called while holding the journal lock.
+         */
+        synchronized void drain()
+        {
+            if(pvaClientMonitor!=null) pvaClientMonitor.drain(this,0);
+        }
+
+        public void monitorConnect(Status status,PvaClientMonitor pvaClientMonitor,Structure structure) {}
+
+        public void event(PvaClientMonitor pvaClientMonitor)
+        {
+            drain();
+        }
+
+        public void unlisten(PvaClientMonitor pvaClientMonitor) {}
+    }
+
+    private final String directory;
+    private final String baseName;
+    private final int segmentSize;
+    private final Control control = new Control();
+    private final ArrayList<JournalChannel> channels = new ArrayList<JournalChannel>();
+    private final long baseTime = System.currentTimeMillis()*1000000L;
+    private final long baseNanoTime = System.nanoTime();
+    private FileChannel fileChannel = null;
+    private MappedByteBuffer buffer = null;
+    private int segmentNumber = -1;
+    private long numberUpdates = 0;
+    private boolean isClosed = false;
+
+    private void openSegment()
+    {
+        ++segmentNumber;
+        File file = segmentFile(directory,baseName,segmentNumber);
+        try {
+            fileChannel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE_NEW,StandardOpenOption.READ,StandardOpenOption.WRITE);
+            buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE,0,segmentSize);
+        } catch(IOException e) {
+            throw new RuntimeException("PvaClientMonitorJournal can not create " + file + " " + e.getMessage());
+        }
+        buffer.putInt(MAGIC);
+        buffer.putInt(segmentNumber);
+    }
+
+    private void closeSegment()
+    {
+        buffer.force();
+        try {
+            fileChannel.close();
+        } catch(IOException e) {
+            throw new RuntimeException("PvaClientMonitorJournal close failed " + e.getMessage());
+        }
+        fileChannel = null;
+        buffer = null;
+    }
+
+    // the length is written last so that a reader never sees a partial record.
+    private void endRecord(int start)
+    {
+        // the following record must start with length 0 until it is complete.
+        control.ensureBuffer(4);
+        buffer.putInt(start,buffer.position() - start - 4);
+    }
+
+    private void writeDefine(JournalChannel channel)
+    {
+        int start = buffer.position();
+        control.ensureBuffer(9);
+        buffer.putInt(0);
+        buffer.put(DEFINE);
+        buffer.putInt(channel.index);
+        SerializeHelper.serializeString(channel.channelName,buffer,control);
+        channel.structure.serialize(buffer,control);
+        endRecord(start);
+        channel.definedSegment = segmentNumber;
+    }
+
+    private void writeUpdate(JournalChannel channel,PVStructure pvStructure,BitSet changed,BitSet overrun,long time)
+    {
+        int start = buffer.position();
+        control.ensureBuffer(17);
+        buffer.putInt(0);
+        buffer.put(UPDATE);
+        buffer.putInt(channel.index);
+        buffer.putLong(time);
+        changed.serialize(buffer,control);
+        overrun.serialize(buffer,control);
+        pvStructure.serialize(buffer,control,changed);
+        endRecord(start);
+    }
+
+    private synchronized void write(JournalChannel channel,PVStructure pvStructure,BitSet changed,BitSet overrun)
+    {
+        if(isClosed) return;
+        long time = baseTime + (System.nanoTime() - baseNanoTime);
+        Structure structure = pvStructure.getStructure();
+        if(channel.structure!=structure) {
+            channel.structure = structure;
+            channel.definedSegment = -1;
+        }
+        boolean newSegment = false;
+        while(true) {
+            int start = buffer.position();
+            try {
+                if(channel.definedSegment!=segmentNumber) writeDefine(channel);
+                writeUpdate(channel,pvStructure,changed,overrun,time);
+                ++numberUpdates;
+                return;
+            } catch(SegmentFullException|BufferOverflowException e) {
+                buffer.position(start);
+                buffer.putInt(start,0);
+                if(newSegment) {
+                    throw new RuntimeException("channel " + channel.channelName
+                        + " PvaClientMonitorJournal update larger than segmentSize");
+                }
+                closeSegment();
+                openSegment();
+                newSegment = true;
+            }
+        }
+    }
+
+    /**
+     * Record all updates of a monitor.
+     * The journal becomes the requester of the monitor and the monitor is started.
+     * @param pvaClientMonitor The monitor.
+     * @return The channel index used in the journal.
+     */
+    public int add(PvaClientMonitor pvaClientMonitor)
+    {
+        int index = addChannel(pvaClientMonitor.getPvaClientChannel().getChannelName());
+        JournalChannel channel = getChannel(index);
+        synchronized(channel) {
+            channel.pvaClientMonitor = pvaClientMonitor;
+        }
+        pvaClientMonitor.setRequester(channel);
+        pvaClientMonitor.start();
+        // elements queued before the requester was set do not cause an event.
+        channel.drain();
+        return index;
+    }
+
+    /**
+     * Add a channel that is written by calls to write instead of by a monitor.
+     * @param channelName The channel name.
+     * @return The channel index used in the journal.
+     */
+    synchronized int addChannel(String channelName)
+    {
+        if(isClosed) throw new RuntimeException("PvaClientMonitorJournal is closed");
+        int index = channels.size();
+        channels.add(new JournalChannel(index,channelName));
+        return index;
+    }
+
+    private synchronized JournalChannel getChannel(int index)
+    {
+        return channels.get(index);
+    }
+
+    /**
+     * Write an update for a channel added by addChannel.
+     * @param index The channel index.
+     * @param pvStructure The data.
+     * @param changed The changed BitSet.
+     * @param overrun The overrun BitSet.
+     */
+    void write(int index,PVStructure pvStructure,BitSet changed,BitSet overrun)
+    {
+        write(getChannel(index),pvStructure,changed,overrun);
+    }
+
+    /**
+     * Get the number of updates written.
+     * @return The number.
+     */
+    public synchronized long getNumberUpdates()
+    {
+        return numberUpdates;
+    }
+
+    /**
+     * Get the number of the segment currently being written.
+     * @return The segment number.
+     */
+    public synchronized int getSegmentNumber()
+    {
+        return segmentNumber;
+    }
+
+    /**
+     * Force the current segment to storage.
+     */
+    public synchronized void flush()
+    {
+        if(!isClosed) buffer.force();
+    }
+
+    /**
+     * Close the journal. Updates that arrive after this are ignored.
+     * The monitors are not destroyed.
+     */
+    public synchronized void close()
+    {
+        if(isClosed) return;
+        isClosed = true;
+        closeSegment();
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.misc.SerializeHelper;
+import org.epics.pvdata.pv.DeserializableControl;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Reads the segments written by PvaClientMonitorJournal in order.
+ * For each channel the reader keeps a PVStructure to which each update is applied,
+ * so after next returns true getPVStructure has the complete data of the channel.
+ */
+public class PvaClientMonitorJournalReader
+{
+    /**
+     * Create a reader.
+     * @param directory The directory that holds the segments.
+     * @param baseName The base name given to PvaClientMonitorJournal.
+     * @return The new instance.
+     */
+    public static PvaClientMonitorJournalReader create(String directory,String baseName)
+    {
+        return new PvaClientMonitorJournalReader(directory,baseName);
+    }
+
+    /**
+     * Get the names of all channels in a journal without decoding the updates.
+     * @param directory The directory that holds the segments.
+     * @param baseName The base name given to PvaClientMonitorJournal.
+     * @return The channel names.
+     */
+    public static Set<String> readChannelNames(String directory,String baseName)
+    {
+        return new LinkedHashSet<String>(readStructures(directory,baseName).keySet());
+    }
+
+    /**
+     * Get the structure of all channels in a journal without decoding the updates.
+     * The structure of a channel is the structure of its first definition.
+     * @param directory The directory that holds the segments.
+     * @param baseName The base name given to PvaClientMonitorJournal.
+     * @return The structures by channel name in the order of definition.
+     */
+    public static Map<String,Structure> readStructures(String directory,String baseName)
+    {
+        PvaClientMonitorJournalReader reader = new PvaClientMonitorJournalReader(directory,baseName);
+        reader.definitions = new LinkedHashMap<String,Structure>();
+        try {
+            while(reader.readRecord(false)) {}
+            return reader.definitions;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private PvaClientMonitorJournalReader(String directory,String baseName)
+    {
+        this.directory = directory;
+        this.baseName = baseName;
+        if(!PvaClientMonitorJournal.segmentFile(directory,baseName,0).exists()) {
+            throw new RuntimeException("PvaClientMonitorJournalReader no journal "
+                + PvaClientMonitorJournal.segmentFile(directory,baseName,0));
+        }
+    }
+
+    private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+    private class Control implements DeserializableControl
+    {
+        public void ensureData(int size)
+        {
+            if(buffer.remaining()<size) {
+                throw new RuntimeException("PvaClientMonitorJournalReader segment "
+                    + segmentNumber + " is truncated");
+            }
+        }
+        public void alignData(int alignment) {}
+        public Field cachedDeserialize(ByteBuffer buffer) { return fieldCreate.deserialize(buffer,this); }
+    }
+
+    private static class ReaderChannel
+    {
+        private final String channelName;
+        private final PVStructure pvStructure;
+        private final BitSet changedBitSet;
+        private final BitSet overrunBitSet;
+
+        ReaderChannel(String channelName,Structure structure)
+        {
+            this.channelName = channelName;
+            pvStructure = pvDataCreate.createPVStructure(structure);
+            changedBitSet = new BitSet(pvStructure.getNumberFields());
+            overrunBitSet = new BitSet(pvStructure.getNumberFields());
+        }
+    }
+
+    private final String directory;
+    private final String baseName;
+    private final Control control = new Control();
+    private final ArrayList<ReaderChannel> channels = new ArrayList<ReaderChannel>();
+    private int segmentNumber = 0;
+    private FileChannel fileChannel = null;
+    private MappedByteBuffer buffer = null;
+    private ReaderChannel current = null;
+    private int currentIndex = -1;
+    private long currentTime = 0;
+    // only set by readStructures.
+    private Map<String,Structure> definitions = null;
+
+    private boolean openSegment()
+    {
+        File file = PvaClientMonitorJournal.segmentFile(directory,baseName,segmentNumber);
+        if(!file.exists()) return false;
+        try {
+            fileChannel = FileChannel.open(file.toPath(),StandardOpenOption.READ);
+            buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY,0,fileChannel.size());
+        } catch(IOException e) {
+            throw new RuntimeException("PvaClientMonitorJournalReader can not open " + file + " " + e.getMessage());
+        }
+        if(buffer.remaining()<8 || buffer.getInt()!=PvaClientMonitorJournal.MAGIC) {
+            throw new RuntimeException("PvaClientMonitorJournalReader " + file + " is not a journal segment");
+        }
+        buffer.getInt();
+        return true;
+    }
+
+    private void closeSegment()
+    {
+        if(fileChannel!=null) {
+            try {
+                fileChannel.close();
+            } catch(IOException e) {
+                throw new RuntimeException("PvaClientMonitorJournalReader close failed " + e.getMessage());
+            }
+        }
+        fileChannel = null;
+        buffer = null;
+    }
+
+    private void define()
+    {
+        int index = buffer.getInt();
+        String channelName = SerializeHelper.deserializeString(buffer,control);
+        Structure structure = (Structure)fieldCreate.deserialize(buffer,control);
+        if(definitions!=null) {
+            definitions.putIfAbsent(channelName,structure);
+            return;
+        }
+        while(channels.size()<=index) channels.add(null);
+        ReaderChannel channel = channels.get(index);
+        // every segment repeats the definition; keep the data if the structure is the same.
+        if(channel!=null && channel.channelName.equals(channelName)
+        && channel.pvStructure.getStructure().equals(structure)) return;
+        channels.set(index,new ReaderChannel(channelName,structure));
+    }
+
+    private void update()
+    {
+        int index = buffer.getInt();
+        ReaderChannel channel = (index<channels.size()) ? channels.get(index) : null;
+        if(channel==null) {
+            throw new RuntimeException("PvaClientMonitorJournalReader segment "
+                + segmentNumber + " update for undefined channel " + index);
+        }
+        currentTime = buffer.getLong();
+        channel.changedBitSet.clear();
+        channel.changedBitSet.deserialize(buffer,control);
+        channel.overrunBitSet.clear();
+        channel.overrunBitSet.deserialize(buffer,control);
+        channel.pvStructure.deserialize(buffer,control,channel.changedBitSet);
+        current = channel;
+        currentIndex = index;
+    }
+
+    /*
+     * Read records until an update has been read or the journal ends.
+     */
+    private boolean readRecord(boolean decodeUpdate)
+    {
+        while(true) {
+            if(buffer==null) {
+                if(!openSegment()) return false;
+            }
+            if(buffer.remaining()<4) {
+                closeSegment();
+                ++segmentNumber;
+                continue;
+            }
+            int length = buffer.getInt();
+            if(length==0) {
+                closeSegment();
+                ++segmentNumber;
+                continue;
+            }
+            int end = buffer.position() + length;
+            byte type = buffer.get();
+            if(type==PvaClientMonitorJournal.DEFINE) {
+                define();
+            } else if(type==PvaClientMonitorJournal.UPDATE) {
+                if(decodeUpdate) update();
+                buffer.position(end);
+                return true;
+            }
+            buffer.position(end);
+        }
+    }
+
+    /**
+     * Read the next update.
+     * @return (false,true) if (the journal has ended,an update was read).
+     */
+    public boolean next()
+    {
+        return readRecord(true);
+    }
+
+    /**
+     * Get the journal index of the channel of the current update.
+     * @return The index.
+     */
+    public int getChannelIndex()
+    {
+        checkCurrent();
+        return currentIndex;
+    }
+
+    /**
+     * Get the channel name of the current update.
+     * @return The name.
+     */
+    public String getChannelName()
+    {
+        checkCurrent();
+        return current.channelName;
+    }
+
+    /**
+     * Get the time the current update was received by the journal.
+     * @return The time in nanoseconds since the POSIX epoch.
+     */
+    public long getTime()
+    {
+        checkCurrent();
+        return currentTime;
+    }
+
+    /**
+     * Get the data of the channel of the current update.
+     * @return The complete data, with the update applied.
+     */
+    public PVStructure getPVStructure()
+    {
+        checkCurrent();
+        return current.pvStructure;
+    }
+
+    /**
+     * Get the changed BitSet of the current update.
+     * @return The BitSet.
+     */
+    public BitSet getChangedBitSet()
+    {
+        checkCurrent();
+        return current.changedBitSet;
+    }
+
+    /**
+     * Get the overrun BitSet of the current update.
+     * @return The BitSet.
+     */
+    public BitSet getOverrunBitSet()
+    {
+        checkCurrent();
+        return current.overrunBitSet;
+    }
+
+    private void checkCurrent()
+    {
+        if(current==null) throw new RuntimeException("PvaClientMonitorJournalReader next was not called");
+    }
+
+    /**
+     * Release the mapped segment.
+     */
+    public void close()
+    {
+        closeSegment();
+    }
+}
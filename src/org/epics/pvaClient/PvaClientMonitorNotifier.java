@@ -0,0 +1,110 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A notifier shared by the PvaClientMonitors of a multi channel monitor.
+ * Each monitor marks its index ready when it has an event,
+ * so the multi channel monitor only polls the channels that are ready
+ * and its waitEvent wakes as soon as any channel has data.
+ */
+class PvaClientMonitorNotifier
+{
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition isReady = lock.newCondition();
+    // guarded by lock
+    private BitSet ready;
+    private BitSet taken;
+
+    /**
+     * Constructor.
+     * @param nchannel The number of channels.
+     */
+    PvaClientMonitorNotifier(int nchannel)
+    {
+        ready = new BitSet(nchannel);
+        taken = new BitSet(nchannel);
+    }
+
+    /**
+     * Mark a channel ready and wake the waiter.
+     * Called by PvaClientMonitor for each event.
+     * @param index The channel index.
+     */
+    void ready(int index)
+    {
+        lock.lock();
+        try {
+            ready.set(index);
+            isReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark a range of channels ready, e.g. after the monitors are connected.
+     * @param fromIndex The first index.
+     * @param toIndex The index after the last.
+     */
+    void ready(int fromIndex,int toIndex)
+    {
+        lock.lock();
+        try {
+            ready.set(fromIndex,toIndex);
+            isReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the channels that are ready and clear them.
+     * The returned BitSet is reused by the next call.
+     * @return The ready channels.
+     */
+    BitSet take()
+    {
+        lock.lock();
+        try {
+            BitSet result = ready;
+            ready = taken;
+            ready.clear();
+            taken = result;
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until at least one channel is ready.
+     * @param timeout The maximum time to wait in seconds.
+     * @return (false,true) if (timeout,a channel is ready).
+     */
+    boolean waitReady(double timeout)
+    {
+        long nanos = (long)(timeout*1e9);
+        lock.lock();
+        try {
+            while(ready.isEmpty()) {
+                if(nanos<=0) return false;
+                nanos = isReady.awaitNanos(nanos);
+            }
+            return true;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return !ready.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
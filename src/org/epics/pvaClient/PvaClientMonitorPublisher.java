@@ -0,0 +1,268 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Presents a PvaClientMonitor as a publisher of snapshots.
+ * The Subscriber and Subscription interfaces have the same methods and rules as
+ * java.util.concurrent.Flow, so a one line adapter connects them to any reactive library.
+ * <p>
+ * Monitor elements are only taken from the monitor, copied and released when the subscriber has demand.
+ * Elements for which there is no demand stay in the pvAccess queue.
+ * If the monitor was created with record[pipeline=true] pvAccess does not send more data
+ * than the queue can hold until elements are released, i.e. demand is passed to the server.
+ * <p>
+ * The publisher is the requester of the monitor, and only one subscriber at a time is supported.
+ */
+public class PvaClientMonitorPublisher implements PvaClientMonitorRequester
+{
+    /**
+     * Receives snapshots. Same contract as java.util.concurrent.Flow.Subscriber.
+     */
+    public interface Subscriber {
+        /**
+         * Called before any other method.
+         * @param subscription The subscription.
+         */
+        void onSubscribe(Subscription subscription);
+        /**
+         * The next snapshot.
+         * @param data A snapshot that is owned by the subscriber.
+         */
+        void onNext(PvaClientMonitorData data);
+        /**
+         * The subscription failed. No other methods are called.
+         * @param throwable The reason.
+         */
+        void onError(Throwable throwable);
+        /**
+         * The data source is no longer available. No other methods are called.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between publisher and subscriber. Same contract as java.util.concurrent.Flow.Subscription.
+     */
+    public interface Subscription {
+        /**
+         * Add demand.
+         * @param n The number of additional snapshots. Must be greater than 0.
+         */
+        void request(long n);
+        /**
+         * Stop receiving snapshots.
+         */
+        void cancel();
+    }
+
+    /**
+     * Create a publisher for an existing monitor.
+     * @param pvaClientMonitor The monitor. Its requester is replaced by the publisher.
+     * @return The new instance.
+     */
+    public static PvaClientMonitorPublisher create(PvaClientMonitor pvaClientMonitor)
+    {
+        return new PvaClientMonitorPublisher(pvaClientMonitor);
+    }
+
+    /**
+     * Create a monitor that uses pvAccess pipelining and a publisher for it.
+     * @param pvaClientChannel The channel.
+     * @param request The request as described in package org.epics.pvdata.copy
+     * @param queueSize The pvAccess queueSize, i.e. how many elements the server may send ahead of demand.
+     * @return The new instance.
+     */
+    public static PvaClientMonitorPublisher create(
+            PvaClientChannel pvaClientChannel,
+            String request,
+            int queueSize)
+    {
+        request = PvaClientMonitorQueueOptions.addRecordOption(request,"pipeline=true");
+        request = PvaClientMonitorQueueOptions.addRecordOption(request,"queueSize=" + queueSize);
+        return new PvaClientMonitorPublisher(pvaClientChannel.createMonitor(request));
+    }
+
+    private PvaClientMonitorPublisher(PvaClientMonitor pvaClientMonitor)
+    {
+        this.pvaClientMonitor = pvaClientMonitor;
+    }
+
+    private final PvaClientMonitor pvaClientMonitor;
+    private final AtomicReference<PublisherSubscription> current =
+        new AtomicReference<PublisherSubscription>();
+
+    private class PublisherSubscription implements Subscription, Consumer<PvaClientMonitorData>
+    {
+        private final Subscriber subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean isDone = false;
+
+        PublisherSubscription(Subscriber subscriber)
+        {
+            this.subscriber = subscriber;
+        }
+
+        public void request(long n)
+        {
+            if(isDone) return;
+            if(n<=0) {
+                error(new IllegalArgumentException("request must be greater than 0"));
+                return;
+            }
+            while(true) {
+                long value = demand.get();
+                if(value==Long.MAX_VALUE) break;
+                long next = value + n;
+                if(next<0) next = Long.MAX_VALUE;
+                if(demand.compareAndSet(value,next)) break;
+            }
+            deliver();
+        }
+
+        public void cancel()
+        {
+            if(isDone) return;
+            isDone = true;
+            detach(this);
+        }
+
+        public void accept(PvaClientMonitorData data)
+        {
+            subscriber.onNext(data.createSnapshot());
+        }
+
+        void error(Throwable throwable)
+        {
+            if(isDone) return;
+            isDone = true;
+            detach(this);
+            subscriber.onError(throwable);
+        }
+
+        void complete()
+        {
+            if(isDone) return;
+            isDone = true;
+            detach(this);
+            subscriber.onComplete();
+        }
+
+        // Only one thread at a time drains; others record that there is more work.
+        void deliver()
+        {
+            if(work.getAndIncrement()!=0) return;
+            int missed = 1;
+            while(true) {
+                while(!isDone) {
+                    long value = demand.get();
+                    if(value==0) break;
+                    int max = (value>Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)value;
+                    int count;
+                    try {
+                        count = pvaClientMonitor.drain(this,max);
+                    } catch (RuntimeException e) {
+                        error(e);
+                        return;
+                    }
+                    if(count==0) break;
+                    if(value!=Long.MAX_VALUE) demand.addAndGet(-count);
+                }
+                missed = work.addAndGet(-missed);
+                if(missed==0) return;
+            }
+        }
+    }
+
+    private void detach(PublisherSubscription subscription)
+    {
+        if(!current.compareAndSet(subscription,null)) return;
+        try {
+            pvaClientMonitor.setRequester(null);
+        } catch (RuntimeException e) {
+            // monitor was destroyed
+        }
+    }
+
+    /**
+     * Subscribe to snapshots.
+     * The monitor is started if it is not already started.
+     * @param subscriber The subscriber.
+     */
+    public void subscribe(Subscriber subscriber)
+    {
+        if(subscriber==null) throw new NullPointerException("subscriber is null");
+        PublisherSubscription subscription = new PublisherSubscription(subscriber);
+        if(!current.compareAndSet(null,subscription)) {
+            subscriber.onSubscribe(new Subscription() {
+                public void request(long n) {}
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException(
+                "PvaClientMonitorPublisher already has a subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+        try {
+            pvaClientMonitor.setRequester(this);
+            pvaClientMonitor.start();
+        } catch (RuntimeException e) {
+            subscription.error(e);
+            return;
+        }
+        subscription.deliver();
+    }
+
+    /**
+     * Get the monitor.
+     * @return The interface.
+     */
+    public PvaClientMonitor getPvaClientMonitor()
+    {
+        return pvaClientMonitor;
+    }
+
+    /* (non-Javadoc)
+     * @see org.epics.pvaClient.PvaClientMonitorRequester#monitorConnect(org.epics.pvdata.pv.Status, org.epics.pvaClient.PvaClientMonitor, org.epics.pvdata.pv.Structure)
+     */
+    @Override
+    public void monitorConnect(Status status,PvaClientMonitor pvaClientMonitor,Structure structure)
+    {
+        if(status.isOK()) return;
+        PublisherSubscription subscription = current.get();
+        if(subscription!=null) subscription.error(new RuntimeException(status.getMessage()));
+    }
+
+    /* (non-Javadoc)
+     * @see org.epics.pvaClient.PvaClientMonitorRequester#event(org.epics.pvaClient.PvaClientMonitor)
+     */
+    @Override
+    public void event(PvaClientMonitor pvaClientMonitor)
+    {
+        PublisherSubscription subscription = current.get();
+        if(subscription!=null) subscription.deliver();
+    }
+
+    /* (non-Javadoc)
+     * @see org.epics.pvaClient.PvaClientMonitorRequester#unlisten(org.epics.pvaClient.PvaClientMonitor)
+     */
+    @Override
+    public void unlisten(PvaClientMonitor pvaClientMonitor)
+    {
+        PublisherSubscription subscription = current.get();
+        if(subscription!=null) subscription.complete();
+    }
+}
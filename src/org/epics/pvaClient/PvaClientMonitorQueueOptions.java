@@ -0,0 +1,112 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+
+/**
+ * Queue options for a PvaClientMonitor.
+ * The queueSize is the number of monitor elements that can be waiting for the client.
+ * The pvAccess monitor queue is created with one additional element,
+ * which is where pvAccess places new data while the client queue is full.
+ */
+public class PvaClientMonitorQueueOptions
+{
+    /**
+     * What happens when the client queue is full and new data arrives.
+     */
+    public enum OverflowPolicy {
+        /** The oldest queued element is discarded. */
+        dropOldest,
+        /** The new element is discarded. */
+        dropNewest,
+        /** New data is merged by pvAccess into the element following the queue and the overrun bits are set. */
+        conflate
+    };
+
+    /**
+     * Create queue options.
+     * @param queueSize The number of elements that can be queued for the client. Must be at least 1.
+     * @param overflowPolicy The policy when the queue is full.
+     * @return The new instance.
+     */
+    public static PvaClientMonitorQueueOptions create(
+            int queueSize,
+            OverflowPolicy overflowPolicy)
+    {
+        return new PvaClientMonitorQueueOptions(queueSize,overflowPolicy);
+    }
+
+    private PvaClientMonitorQueueOptions(
+            int queueSize,
+            OverflowPolicy overflowPolicy)
+    {
+        if(queueSize<1) {
+            throw new IllegalArgumentException("PvaClientMonitorQueueOptions queueSize must be at least 1");
+        }
+        if(overflowPolicy==null) {
+            throw new IllegalArgumentException("PvaClientMonitorQueueOptions overflowPolicy is null");
+        }
+        this.queueSize = queueSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    private final int queueSize;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Get the number of elements that can be queued for the client.
+     * @return The queueSize.
+     */
+    public int getQueueSize()
+    {
+        return queueSize;
+    }
+
+    /**
+     * Get the overflow policy.
+     * @return The policy.
+     */
+    public OverflowPolicy getOverflowPolicy()
+    {
+        return overflowPolicy;
+    }
+
+    /**
+     * Add the pvAccess queueSize option to a request.
+     * @param request The request as described in package org.epics.pvdata.copy
+     * @return The request with record[queueSize=N] set.
+     * @throws RuntimeException if the request already specifies a queueSize.
+     */
+    String applyTo(String request)
+    {
+        if(request.indexOf("queueSize=")>=0) {
+            throw new RuntimeException("request " + request
+                    + " already specifies queueSize; use PvaClientMonitorQueueOptions only");
+        }
+        return addRecordOption(request,"queueSize=" + (queueSize + 1));
+    }
+
+    /**
+     * Add an option to the record[] part of a request.
+     * @param request The request as described in package org.epics.pvdata.copy
+     * @param option The option, e.g. "pipeline=true".
+     * @return The new request.
+     */
+    static String addRecordOption(String request,String option)
+    {
+        int index = request.indexOf("record[");
+        if(index<0) return "record[" + option + "]" + request;
+        index += "record[".length();
+        String separator = (request.charAt(index)==']') ? "" : ",";
+        return request.substring(0,index) + option + separator + request.substring(index);
+    }
+
+    public String toString()
+    {
+        return "queueSize " + queueSize + " overflowPolicy " + overflowPolicy;
+    }
+}
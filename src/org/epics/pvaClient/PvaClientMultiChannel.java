@@ -6,18 +6,31 @@
 
 package org.epics.pvaClient;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
 
 import org.epics.pvaccess.client.Channel;
-import org.epics.pvaccess.client.Channel.ConnectionState;
 import org.epics.pvdata.copy.CreateRequest;
 import org.epics.pvdata.factory.StatusFactory;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
 import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
 import org.epics.pvdata.pv.StatusCreate;
 
 /**
  * Provides access to multiple channels.
+ * <p>
+ * Channels can be added and removed with addChannels and removeChannels.
+ * The gets, puts, and monitors created by this follow the change the next time they are used,
+ * creating requests only for the added channels and destroying only those of the removed channels.
  *
  * @author mrk
  * @since 2015.07
@@ -76,12 +89,14 @@ public class PvaClientMultiChannel
             int maxNotConnected)
     {
         this.pvaClient = pvaClient;
-        this.channelName = channelNames;
+        this.channelName = channelNames.clone();
         this.providerName = providerName;
         this.maxNotConnected = maxNotConnected;
         numChannel = channelName.length;
         pvaClientChannelArray = new PvaClientChannel[numChannel];
         isConnected = new boolean[numChannel];
+        stateListener = new StateListener[numChannel];
+        connectedBits = new AtomicLongArray((numChannel + 63)>>>6);
         for(int i=0; i<numChannel; ++i)
         {
             pvaClientChannelArray[i] = null;
@@ -98,17 +113,33 @@ public class PvaClientMultiChannel
     private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
     private final CreateRequest createRequest = CreateRequest.create();
     private final PvaClient pvaClient;
-    private final String[] channelName;
     private final String providerName;
     private final int maxNotConnected;
-
-    private final int numChannel;
     private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectChange = lock.newCondition();
 
-    private int numConnected = 0;
-    private PvaClientChannel[] pvaClientChannelArray;
-    boolean[] isConnected;
+    // The per channel arrays are replaced, never resized, by addChannels and removeChannels,
+    // so an array obtained by a derived operation stays consistent.
+    private volatile String[] channelName;
+    private volatile int numChannel;
+    private volatile PvaClientChannel[] pvaClientChannelArray;
+    private volatile StateListener[] stateListener;
+    // written with lock held by the StateListeners.
+    private volatile int numConnected = 0;
+    // one bit per channel, set by the StateListeners with lock held.
+    private volatile AtomicLongArray connectedBits;
+    private final AtomicLong generation = new AtomicLong();
+    // incremented by addChannels and removeChannels.
+    private final AtomicLong membershipGeneration = new AtomicLong();
+    private volatile boolean isConnectIssued = false;
+    // isConnected is the state at isConnectedGeneration.
+    private volatile long isConnectedGeneration = 0;
+    private volatile boolean[] isConnected;
     boolean isDestroyed = false;
+    // null unless setParallelism was called with a value greater than 1.
+    private volatile ForkJoinPool shardPool = null;
+    private volatile int parallelism = 1;
+    private static final int minShardSize = 256;
 
     
 
@@ -123,9 +154,14 @@ public class PvaClientMultiChannel
         } finally {
             lock.unlock();
         }
+        ForkJoinPool pool = shardPool;
+        shardPool = null;
+        if(pool!=null) pool.shutdown();
         for(int i=0; i<numChannel; ++i) 
         {
-            if(pvaClientChannelArray!=null) pvaClientChannelArray[i].destroy();
+            if(pvaClientChannelArray[i]==null) continue;
+            if(stateListener[i]!=null) pvaClientChannelArray[i].removeStateListener(stateListener[i]);
+            pvaClientChannelArray[i].destroy();
             pvaClientChannelArray[i] = null;
         }
         pvaClientChannelArray = null;
@@ -146,38 +182,237 @@ public class PvaClientMultiChannel
         return connect(5.0);
     }
     /** Connect to the channels.
-     * This calls issueConnect and waitConnect.
-     * An exception is thrown if connect fails.
+     * This calls issueConnect for every channel and then waits,
+     * until all channels are connected or the timeout expires,
+     * for the connection callbacks of all channels.
+     * Slow channels are given the full timeout no matter how many other channels fail.
      * @param timeout The time to wait for connecting to the channels.
+     * A value of 0.0 means forever.
      * @return status of request
      */
     public Status connect(double timeout)
     {
         if(isDestroyed) throw new RuntimeException("pvaClientMultiChannel was destroyed");
-        for(int i=0; i< numChannel; ++i) {
-            pvaClientChannelArray[i] = pvaClient.createChannel(channelName[i],providerName);
-            pvaClientChannelArray[i].issueConnect();
+        isConnectIssued = true;
+        issueConnect(0);
+        long deadline = System.nanoTime() + (long)(timeout*1e9);
+        lock.lock();
+        try {
+            while(numConnected<numChannel) {
+                if(timeout<=0.0) {
+                    connectChange.await();
+                    continue;
+                }
+                long nanos = deadline - System.nanoTime();
+                if(nanos<=0) break;
+                connectChange.awaitNanos(nanos);
+            }
+        } catch(InterruptedException e) {
+            return statusCreate.createStatus(StatusType.ERROR,e.getMessage(),e.fillInStackTrace());
+        } finally {
+            lock.unlock();
         }
-        Status returnStatus = statusCreate.getStatusOK();
-        Status status = statusCreate.getStatusOK();
+        boolean[] isConnected = getIsConnected();
+        String[] channelName = this.channelName;
         int numBad = 0;
-        for(int i=0; i< numChannel; ++i) {
-            if(numBad==0) {
-                status = pvaClientChannelArray[i].waitConnect(timeout);
-            } else {
-                status = pvaClientChannelArray[i].waitConnect(.001);
+        String firstBad = null;
+        for(int i=0; i< isConnected.length; ++i) {
+            if(isConnected[i]) continue;
+            if(firstBad==null) firstBad = channelName[i];
+            ++numBad;
+        }
+        if(numBad<=maxNotConnected) return statusCreate.getStatusOK();
+        return statusCreate.createStatus(
+            StatusType.ERROR,
+            "channel " + firstBad + " not connected; " + numBad + " channels not connected",
+            null);
+    }
+
+    /*
+     * Create and connect the channels, starting at an index, that were not created yet.
+     */
+    private void issueConnect(int from)
+    {
+        PvaClientChannel[] pvaClientChannelArray = this.pvaClientChannelArray;
+        StateListener[] stateListener = this.stateListener;
+        String[] channelName = this.channelName;
+        for(int i=from; i< channelName.length; ++i) {
+            // a channel created by an earlier connect keeps connecting.
+            if(pvaClientChannelArray[i]!=null) continue;
+            PvaClientChannel pvaClientChannel = pvaClient.createChannel(channelName[i],providerName);
+            pvaClientChannelArray[i] = pvaClientChannel;
+            stateListener[i] = new StateListener(i);
+            pvaClientChannel.addStateListener(stateListener[i]);
+            pvaClientChannel.issueConnect();
+            // the channel may have been connected before the listener was added.
+            Channel channel = pvaClientChannel.getChannel();
+            if(channel!=null && channel.isConnected()) stateListener[i].channelStateChange(pvaClientChannel,true);
+        }
+    }
+
+    /*
+     * Keeps the bit of one channel in the connection bitmap.
+     */
+    private class StateListener implements PvaClientChannelStateChangeRequester
+    {
+        // guarded by lock; changed by removeChannels, -1 after the channel is removed.
+        private int index;
+
+        StateListener(int index)
+        {
+            this.index = index;
+        }
+
+        public void channelStateChange(PvaClientChannel channel,boolean isConnected)
+        {
+            lock.lock();
+            try {
+                if(index<0) return;
+                if(!setBit(connectedBits,index,isConnected)) return;
+                generation.incrementAndGet();
+                if(isConnected) {
+                    ++numConnected;
+                } else {
+                    --numConnected;
+                }
+                connectChange.signal();
+            } finally {
+                lock.unlock();
             }
-            if(status.isOK()) {
-                ++numConnected;
-                isConnected[i] = true;
-                continue;
+        }
+    }
+
+    /*
+     * Set or clear a bit. Returns false if the bit already had the value.
+     */
+    private static boolean setBit(AtomicLongArray bits,int index,boolean value)
+    {
+        int word = index>>>6;
+        long bit = 1L<<(index&63);
+        while(true) {
+            long oldValue = bits.get(word);
+            long newValue = value ? (oldValue|bit) : (oldValue&~bit);
+            if(oldValue==newValue) return false;
+            if(bits.compareAndSet(word,oldValue,newValue)) return true;
+        }
+    }
+
+    /** Add channels.
+     * If connect was already called the new channels are connected without waiting,
+     * and the channels that already exist are not changed.
+     * The derived gets, puts, and monitors add the new channels the next time they are used.
+     * The new channels have the indices after the existing channels.
+     * This must not be called while another thread uses this or a derived operation.
+     * @param channelNames The names of the channels to add.
+     */
+    public void addChannels(String[] channelNames)
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiChannel was destroyed");
+        int from;
+        lock.lock();
+        try {
+            String[] oldName = channelName;
+            from = oldName.length;
+            HashSet<String> names = new HashSet<String>(Arrays.asList(oldName));
+            for(String name : channelNames) {
+                if(!names.add(name)) {
+                    throw new IllegalArgumentException("PvaClientMultiChannel::addChannels channel " + name + " is already present");
+                }
             }
-            if(returnStatus.isOK()) returnStatus = status;
-            ++numBad;
-            if(numBad>maxNotConnected) break;
+            int number = from + channelNames.length;
+            String[] newName = Arrays.copyOf(oldName,number);
+            System.arraycopy(channelNames,0,newName,from,channelNames.length);
+            AtomicLongArray bits = new AtomicLongArray((number + 63)>>>6);
+            for(int i=0; i<connectedBits.length(); ++i) bits.set(i,connectedBits.get(i));
+            pvaClientChannelArray = Arrays.copyOf(pvaClientChannelArray,number);
+            stateListener = Arrays.copyOf(stateListener,number);
+            isConnected = new boolean[number];
+            connectedBits = bits;
+            channelName = newName;
+            numChannel = number;
+            isConnectedGeneration = -1;
+            generation.incrementAndGet();
+            membershipGeneration.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        if(isConnectIssued) issueConnect(from);
+    }
+
+    /** Remove channels.
+     * The removed channels are destroyed and the other channels are not changed.
+     * The derived gets, puts, and monitors destroy their requests for the removed channels
+     * the next time they are used.
+     * The remaining channels keep their order, so the index of a channel after a removed channel changes.
+     * This must not be called while another thread uses this or a derived operation.
+     * @param channelNames The names of the channels to remove. Names that are not present are ignored.
+     */
+    public void removeChannels(String[] channelNames)
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiChannel was destroyed");
+        HashSet<String> remove = new HashSet<String>(Arrays.asList(channelNames));
+        ArrayList<PvaClientChannel> removedChannel = new ArrayList<PvaClientChannel>();
+        ArrayList<StateListener> removedListener = new ArrayList<StateListener>();
+        lock.lock();
+        try {
+            String[] oldName = channelName;
+            int number = 0;
+            for(String name : oldName) if(!remove.contains(name)) ++number;
+            if(number==oldName.length) return;
+            String[] newName = new String[number];
+            PvaClientChannel[] newChannel = new PvaClientChannel[number];
+            StateListener[] newListener = new StateListener[number];
+            AtomicLongArray bits = new AtomicLongArray((number + 63)>>>6);
+            int connected = 0;
+            int next = 0;
+            for(int i=0; i<oldName.length; ++i) {
+                if(remove.contains(oldName[i])) {
+                    if(pvaClientChannelArray[i]!=null) removedChannel.add(pvaClientChannelArray[i]);
+                    if(stateListener[i]!=null) {
+                        stateListener[i].index = -1;
+                        removedListener.add(stateListener[i]);
+                    }
+                    continue;
+                }
+                newName[next] = oldName[i];
+                newChannel[next] = pvaClientChannelArray[i];
+                newListener[next] = stateListener[i];
+                if(newListener[next]!=null) newListener[next].index = next;
+                if(isConnected(i)) {
+                    setBit(bits,next,true);
+                    ++connected;
+                }
+                ++next;
+            }
+            pvaClientChannelArray = newChannel;
+            stateListener = newListener;
+            isConnected = new boolean[number];
+            connectedBits = bits;
+            channelName = newName;
+            numChannel = number;
+            numConnected = connected;
+            isConnectedGeneration = -1;
+            generation.incrementAndGet();
+            membershipGeneration.incrementAndGet();
+            connectChange.signal();
+        } finally {
+            lock.unlock();
+        }
+        for(int i=0; i<removedChannel.size(); ++i) {
+            removedChannel.get(i).removeStateListener(removedListener.get(i));
+            removedChannel.get(i).destroy();
         }
-        return numBad>maxNotConnected ? returnStatus : statusCreate.getStatusOK();
     }
+
+    /** Get the membership generation.
+     * It is incremented by addChannels and removeChannels.
+     * @return The generation.
+     */
+    public long getMembershipGeneration()
+    {
+        return membershipGeneration.get();
+    }
+
     /** Are all channels connected?
      * @return if all are connected.
      */
@@ -187,38 +422,93 @@ public class PvaClientMultiChannel
         return (numConnected==numChannel) ? true : false;
     }
     /** Has a connection state change occured?
-     * @return (true, false) if (at least one, no) channel has changed state.
+     * @return (true, false) if (at least one, no) channel has changed state
+     * since the last call to getIsConnected.
      */
     public boolean connectionChange()
     {
         if(isDestroyed) throw new RuntimeException("pvaClientMultiChannel was destroyed");
-        for(int i=0; i<numChannel; ++i) {
-            PvaClientChannel pvaClientChannel = pvaClientChannelArray[i];
-            Channel channel = pvaClientChannel.getChannel();
-            ConnectionState stateNow = channel.getConnectionState();
-            boolean connectedNow = stateNow==ConnectionState.CONNECTED ? true : false;
-            if(connectedNow!=isConnected[i]) return true;
-        }
-        return false;
+        return generation.get()!=isConnectedGeneration;
+    }
+    /** Get the connection generation.
+     * The generation is incremented for each connection state change of any channel,
+     * so a caller that saved the generation can skip rescanning the channels if it is unchanged.
+     * @return The generation.
+     */
+    public long getConnectionGeneration()
+    {
+        return generation.get();
+    }
+    /** Is a channel connected?
+     * @param index The index of the channel.
+     * @return (false,true) if (not,is) connected.
+     */
+    public boolean isConnected(int index)
+    {
+        return (connectedBits.get(index>>>6) & (1L<<(index&63)))!=0;
     }
     /** Get the connection state of each channel.
+     * The array is only rebuilt if a channel changed state since the last call.
+     * The caller must not modify the array.
      * @return The state of each channel.
      */
     public boolean[] getIsConnected()
     {
         if(isDestroyed) throw new RuntimeException("pvaClientMultiChannel was destroyed");
-        for(int i=0; i<numChannel; ++i) {
-            PvaClientChannel pvaClientChannel = pvaClientChannelArray[i];
-            if(pvaClientChannel==null) {
-                isConnected[i] = false;
-                continue;
-            }
-            Channel channel = pvaClientChannel.getChannel();
-            ConnectionState stateNow = channel.getConnectionState();
-            isConnected[i] = (stateNow==ConnectionState.CONNECTED) ? true : false;
+        long generation = this.generation.get();
+        boolean[] isConnected = this.isConnected;
+        if(generation==isConnectedGeneration) return isConnected;
+        synchronized(isConnected) {
+            for(int i=0; i<isConnected.length; ++i) isConnected[i] = isConnected(i);
+            if(isConnected==this.isConnected) isConnectedGeneration = generation;
         }
         return isConnected;
     }
+    /** Set the number of threads used by the multi channel gets and puts.
+     * With a parallelism greater than 1 the channels are split into shards
+     * and issue, wait, and decode run for the shards in parallel.
+     * Channel sets smaller than a few hundred channels are always handled by the caller.
+     * @param parallelism The number of threads. A value of 1, the default, means the caller does all the work.
+     */
+    public void setParallelism(int parallelism)
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiChannel was destroyed");
+        if(parallelism<1) throw new IllegalArgumentException("PvaClientMultiChannel parallelism must be at least 1");
+        lock.lock();
+        try {
+            if(parallelism==this.parallelism) return;
+            ForkJoinPool pool = shardPool;
+            shardPool = (parallelism>1) ? new ForkJoinPool(parallelism) : null;
+            this.parallelism = parallelism;
+            if(pool!=null) pool.shutdown();
+        } finally {
+            lock.unlock();
+        }
+    }
+    /** Get the number of threads used by the multi channel gets and puts.
+     * @return The parallelism.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+    /**
+     * Call an action for each channel index, sharded over the pool if a parallelism was set.
+     * The action for different indices can run at the same time, so it must only write the elements of its index.
+     * @param number The number of channels.
+     * @param action Called with each index from 0 to number-1.
+     */
+    void forEachChannel(int number,IntConsumer action)
+    {
+        ForkJoinPool pool = shardPool;
+        if(pool==null || number<2*minShardSize) {
+            for(int i=0; i<number; ++i) action.accept(i);
+            return;
+        }
+        // a few shards per thread keeps the threads busy when some shards are slow.
+        int shardSize = Math.max(minShardSize,number/(4*parallelism) + 1);
+        pool.invoke(new PvaClientMultiShard(action,0,number,shardSize));
+    }
     /** Get the pvaClientChannelArray.
      * @return The interface.
      */
@@ -262,6 +552,39 @@ public class PvaClientMultiChannel
         checkConnected();
         return PvaClientMultiMonitorDouble.create(this, pvaClientChannelArray);
     }
+    /**
+     * Create a pvaClientMultiColumnGet.
+     * @param <C> The column type.
+     * @param column The column, e.g. PvaClientMultiColumn.createInt().
+     * @return The interface.
+     */
+    public <C extends PvaClientMultiColumn> PvaClientMultiColumnGet<C> createColumnGet(C column)
+    {
+        checkConnected();
+        return PvaClientMultiColumnGet.create(this,pvaClientChannelArray,column);
+    }
+    /**
+     * Create a pvaClientMultiColumnPut.
+     * @param <C> The column type.
+     * @param column The column, e.g. PvaClientMultiColumn.createInt().
+     * @return The interface.
+     */
+    public <C extends PvaClientMultiColumn> PvaClientMultiColumnPut<C> createColumnPut(C column)
+    {
+        checkConnected();
+        return PvaClientMultiColumnPut.create(this,pvaClientChannelArray,column);
+    }
+    /**
+     * Create a pvaClientMultiColumnMonitor.
+     * @param <C> The column type.
+     * @param column The column, e.g. PvaClientMultiColumn.createInt().
+     * @return The interface.
+     */
+    public <C extends PvaClientMultiColumn> PvaClientMultiColumnMonitor<C> createColumnMonitor(C column)
+    {
+        checkConnected();
+        return PvaClientMultiColumnMonitor.create(this,pvaClientChannelArray,column);
+    }
     /**
      * Create a pvaClientNTMultiPut.
      * @return The interface.
@@ -323,6 +646,69 @@ public class PvaClientMultiChannel
         }
         return PvaClientNTMultiMonitor.create(this, pvaClientChannelArray,pvRequest);
     }
+    /**
+     * Create a PvaClientMultiRPC.
+     * @param pvRequest The pvRequest that is passed to createRPC for each channel. It can be null.
+     * @param maxConcurrent The maximum number of outstanding requests.
+     * @return The interface.
+     */
+    public PvaClientMultiRPC createRPC(PVStructure pvRequest,int maxConcurrent)
+    {
+        checkConnected();
+        return PvaClientMultiRPC.create(this,pvRequest,maxConcurrent);
+    }
+    /**
+     * Create a pvaClientNTScalarMultiGet with request "value,alarm,timeStamp".
+     * @param scalarType The scalar type of the value of all channels.
+     * @return The interface.
+     */
+    public PvaClientNTScalarMultiGet createNTScalarGet(ScalarType scalarType)
+    {
+        return createNTScalarGet(scalarType,"value,alarm,timeStamp");
+    }
+    /**
+     * Create a pvaClientNTScalarMultiGet.
+     * @param scalarType The scalar type of the value of all channels.
+     * @param request The request for each channel.
+     * @return The interface.
+     */
+    public PvaClientNTScalarMultiGet createNTScalarGet(ScalarType scalarType,String request)
+    {
+        checkConnected();
+        PVStructure pvRequest = createRequest.createRequest(request);
+        if(pvRequest==null) {
+            String message = " PvaClientMultiChannel::createNTScalarGet invalid pvRequest: "
+                    + createRequest.getMessage();
+            throw new RuntimeException(message);
+        }
+        return PvaClientNTScalarMultiGet.create(this,pvaClientChannelArray,scalarType,pvRequest);
+    }
+    /**
+     * Create a pvaClientNTScalarMultiMonitor with request "value,alarm,timeStamp".
+     * @param scalarType The scalar type of the value of all channels.
+     * @return The interface.
+     */
+    public PvaClientNTScalarMultiMonitor createNTScalarMonitor(ScalarType scalarType)
+    {
+        return createNTScalarMonitor(scalarType,"value,alarm,timeStamp");
+    }
+    /**
+     * Create a pvaClientNTScalarMultiMonitor.
+     * @param scalarType The scalar type of the value of all channels.
+     * @param request The request for each channel.
+     * @return The interface.
+     */
+    public PvaClientNTScalarMultiMonitor createNTScalarMonitor(ScalarType scalarType,String request)
+    {
+        checkConnected();
+        PVStructure pvRequest = createRequest.createRequest(request);
+        if(pvRequest==null) {
+            String message = " PvaClientMultiChannel::createNTScalarMonitor invalid pvRequest: "
+                    + createRequest.getMessage();
+            throw new RuntimeException(message);
+        }
+        return PvaClientNTScalarMultiMonitor.create(this,pvaClientChannelArray,scalarType,pvRequest);
+    }
 
 };
 
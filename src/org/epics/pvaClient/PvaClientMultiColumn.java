@@ -0,0 +1,539 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.Arrays;
+
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.PVByte;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVShort;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvdata.pv.Type;
+
+/**
+ * A column of values, one per channel, for PvaClientMultiColumnGet, PvaClientMultiColumnPut,
+ * and PvaClientMultiColumnMonitor.
+ * Each column type reads and writes the value field of each channel directly as a primitive,
+ * without Convert and without a PVUnion for each channel.
+ * The field of each channel is looked up once and then reused until the channel data changes.
+ * <p>
+ * The arrays returned by a column are reused by every get, put, and poll.
+ * The column of a channel can be read or written by a different thread than other channels,
+ * see PvaClientMultiChannel.setParallelism.
+ * The element of a channel that is not connected is not changed.
+ * When channels are added to or removed from the multi channel the arrays are allocated again,
+ * so they must be fetched again after the next get, put, or poll.
+ */
+public abstract class PvaClientMultiColumn
+{
+    /**
+     * Create a column for integer value fields of type byte, short, int, ubyte, ushort, or uint.
+     * Unsigned values are converted without sign extension, except that uint keeps the raw bits.
+     * @return The new column.
+     */
+    public static IntColumn createInt()
+    {
+        return new IntColumn();
+    }
+
+    /**
+     * Create a column for integer value fields of any integer type.
+     * @return The new column.
+     */
+    public static LongColumn createLong()
+    {
+        return new LongColumn();
+    }
+
+    /**
+     * Create a column for string value fields.
+     * @return The new column.
+     */
+    public static StringColumn createString()
+    {
+        return new StringColumn();
+    }
+
+    /**
+     * Create a column for enumerated value fields, i.e. a structure with index and choices.
+     * @return The new column.
+     */
+    public static EnumColumn createEnum()
+    {
+        return new EnumColumn();
+    }
+
+    /**
+     * Create a column for double array value fields.
+     * @return The new column.
+     */
+    public static DoubleArrayColumn createDoubleArray()
+    {
+        return new DoubleArrayColumn();
+    }
+
+    private String[] channelName = null;
+    // the top level structure for which the value field of each channel is bound.
+    private PVStructure[] bound = null;
+
+    PvaClientMultiColumn() {}
+
+    /**
+     * Called by the multi channel engine that uses the column.
+     * @param channelName The name of each channel.
+     */
+    void init(String[] channelName)
+    {
+        if(this.channelName!=null) {
+            if(this.channelName.length==channelName.length) return;
+            throw new RuntimeException("PvaClientMultiColumn is already used for a different number of channels");
+        }
+        this.channelName = channelName;
+        bound = new PVStructure[channelName.length];
+        allocate(channelName.length);
+    }
+
+    /**
+     * Called by the multi channel engine that uses the column when channels are added or removed.
+     * The values of all channels are cleared.
+     * @param channelName The name of each channel.
+     */
+    void resize(String[] channelName)
+    {
+        if(Arrays.equals(this.channelName,channelName)) return;
+        this.channelName = channelName;
+        bound = new PVStructure[channelName.length];
+        allocate(channelName.length);
+    }
+
+    /**
+     * Get the number of channels.
+     * @return The number.
+     */
+    public int getNumber()
+    {
+        return (channelName==null) ? 0 : channelName.length;
+    }
+
+    /**
+     * Get the name of the value type of the column.
+     * @return The name.
+     */
+    public abstract String getTypeName();
+
+    abstract void allocate(int nchannel);
+
+    /*
+     * Save the value field of a channel.
+     * Return false if the field does not have the type of the column.
+     */
+    abstract boolean bind(int index,PVField pvValue);
+
+    abstract void readValue(int index);
+
+    abstract void writeValue(int index);
+
+    private void bind(int index,PVStructure pvStructure)
+    {
+        if(bound[index]==pvStructure) return;
+        PVField pvValue = pvStructure.getSubField("value");
+        if(pvValue==null || !bind(index,pvValue)) {
+            throw new RuntimeException("channel " + channelName[index]
+                + " value is not " + getTypeName());
+        }
+        bound[index] = pvStructure;
+    }
+
+    /**
+     * Copy the value field of a channel into the column.
+     * @param index The channel index.
+     * @param pvStructure The top level data of the channel.
+     */
+    void read(int index,PVStructure pvStructure)
+    {
+        bind(index,pvStructure);
+        readValue(index);
+    }
+
+    /**
+     * Copy the column into the value field of a channel.
+     * @param index The channel index.
+     * @param pvStructure The top level data of the channel.
+     */
+    void write(int index,PVStructure pvStructure)
+    {
+        bind(index,pvStructure);
+        writeValue(index);
+    }
+
+    private static ScalarType integerKind(PVField pvValue,boolean allowLong)
+    {
+        if(pvValue.getField().getType()!=Type.scalar) return null;
+        ScalarType scalarType = ((PVScalar)pvValue).getScalar().getScalarType();
+        switch(scalarType) {
+        case pvByte: case pvShort: case pvInt:
+        case pvUByte: case pvUShort: case pvUInt:
+            return scalarType;
+        case pvLong: case pvULong:
+            return allowLong ? scalarType : null;
+        default:
+            return null;
+        }
+    }
+
+    private static long getInteger(PVField pvValue,ScalarType kind)
+    {
+        switch(kind) {
+        case pvByte: return ((PVByte)pvValue).get();
+        case pvShort: return ((PVShort)pvValue).get();
+        case pvInt: return ((PVInt)pvValue).get();
+        case pvUByte: return ((PVByte)pvValue).get()&0xff;
+        case pvUShort: return ((PVShort)pvValue).get()&0xffff;
+        case pvUInt: return ((PVInt)pvValue).get()&0xffffffffL;
+        default: return ((PVLong)pvValue).get();
+        }
+    }
+
+    private static void putInteger(PVField pvValue,ScalarType kind,long value)
+    {
+        switch(kind) {
+        case pvByte: case pvUByte: ((PVByte)pvValue).put((byte)value); return;
+        case pvShort: case pvUShort: ((PVShort)pvValue).put((short)value); return;
+        case pvInt: case pvUInt: ((PVInt)pvValue).put((int)value); return;
+        default: ((PVLong)pvValue).put(value); return;
+        }
+    }
+
+    /**
+     * A column of int values.
+     */
+    public static final class IntColumn extends PvaClientMultiColumn
+    {
+        private int[] value = new int[0];
+        private PVField[] pvValue;
+        private ScalarType[] kind;
+
+        IntColumn() {}
+
+        /**
+         * Get the values.
+         * For a put the caller sets the elements before calling put.
+         * @return The value of each channel.
+         */
+        public int[] getValue()
+        {
+            return value;
+        }
+
+        public String getTypeName()
+        {
+            return "int";
+        }
+
+        void allocate(int nchannel)
+        {
+            value = new int[nchannel];
+            pvValue = new PVField[nchannel];
+            kind = new ScalarType[nchannel];
+        }
+
+        boolean bind(int index,PVField pvValue)
+        {
+            ScalarType kind = integerKind(pvValue,false);
+            if(kind==null) return false;
+            this.pvValue[index] = pvValue;
+            this.kind[index] = kind;
+            return true;
+        }
+
+        void readValue(int index)
+        {
+            value[index] = (int)getInteger(pvValue[index],kind[index]);
+        }
+
+        void writeValue(int index)
+        {
+            putInteger(pvValue[index],kind[index],value[index]);
+        }
+    }
+
+    /**
+     * A column of long values.
+     */
+    public static final class LongColumn extends PvaClientMultiColumn
+    {
+        private long[] value = new long[0];
+        private PVField[] pvValue;
+        private ScalarType[] kind;
+
+        LongColumn() {}
+
+        /**
+         * Get the values.
+         * For a put the caller sets the elements before calling put.
+         * @return The value of each channel.
+         */
+        public long[] getValue()
+        {
+            return value;
+        }
+
+        public String getTypeName()
+        {
+            return "long";
+        }
+
+        void allocate(int nchannel)
+        {
+            value = new long[nchannel];
+            pvValue = new PVField[nchannel];
+            kind = new ScalarType[nchannel];
+        }
+
+        boolean bind(int index,PVField pvValue)
+        {
+            ScalarType kind = integerKind(pvValue,true);
+            if(kind==null) return false;
+            this.pvValue[index] = pvValue;
+            this.kind[index] = kind;
+            return true;
+        }
+
+        void readValue(int index)
+        {
+            value[index] = getInteger(pvValue[index],kind[index]);
+        }
+
+        void writeValue(int index)
+        {
+            putInteger(pvValue[index],kind[index],value[index]);
+        }
+    }
+
+    /**
+     * A column of string values.
+     */
+    public static final class StringColumn extends PvaClientMultiColumn
+    {
+        private String[] value = new String[0];
+        private PVString[] pvValue;
+
+        StringColumn() {}
+
+        /**
+         * Get the values.
+         * For a put the caller sets the elements before calling put.
+         * @return The value of each channel.
+         */
+        public String[] getValue()
+        {
+            return value;
+        }
+
+        public String getTypeName()
+        {
+            return "string";
+        }
+
+        void allocate(int nchannel)
+        {
+            value = new String[nchannel];
+            pvValue = new PVString[nchannel];
+        }
+
+        boolean bind(int index,PVField pvValue)
+        {
+            if(!(pvValue instanceof PVString)) return false;
+            this.pvValue[index] = (PVString)pvValue;
+            return true;
+        }
+
+        void readValue(int index)
+        {
+            value[index] = pvValue[index].get();
+        }
+
+        void writeValue(int index)
+        {
+            pvValue[index].put(value[index]);
+        }
+    }
+
+    /**
+     * A column of enumerated values.
+     * A put only writes the index.
+     */
+    public static final class EnumColumn extends PvaClientMultiColumn
+    {
+        private static final String[] noChoices = new String[0];
+        private int[] index = new int[0];
+        private String[][] choices = new String[0][];
+        private PVInt[] pvIndex;
+        private PVStringArray[] pvChoices;
+        // one for each channel, since channels can be read by different threads.
+        private StringArrayData[] stringArrayData;
+
+        EnumColumn() {}
+
+        /**
+         * Get the indices.
+         * For a put the caller sets the elements before calling put.
+         * @return The index of each channel.
+         */
+        public int[] getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * Get the choices.
+         * The choices of a channel are shared with the channel data and must not be modified.
+         * @return The choices of each channel.
+         */
+        public String[][] getChoices()
+        {
+            return choices;
+        }
+
+        public String getTypeName()
+        {
+            return "enum";
+        }
+
+        void allocate(int nchannel)
+        {
+            index = new int[nchannel];
+            choices = new String[nchannel][];
+            for(int i=0; i<nchannel; ++i) choices[i] = noChoices;
+            pvIndex = new PVInt[nchannel];
+            pvChoices = new PVStringArray[nchannel];
+            stringArrayData = new StringArrayData[nchannel];
+            for(int i=0; i<nchannel; ++i) stringArrayData[i] = new StringArrayData();
+        }
+
+        boolean bind(int index,PVField pvValue)
+        {
+            if(!(pvValue instanceof PVStructure)) return false;
+            PVStructure pvStructure = (PVStructure)pvValue;
+            PVInt pvIndex = pvStructure.getSubField(PVInt.class,"index");
+            PVStringArray pvChoices = pvStructure.getSubField(PVStringArray.class,"choices");
+            if(pvIndex==null || pvChoices==null) return false;
+            this.pvIndex[index] = pvIndex;
+            this.pvChoices[index] = pvChoices;
+            return true;
+        }
+
+        void readValue(int index)
+        {
+            this.index[index] = pvIndex[index].get();
+            PVStringArray pvChoices = this.pvChoices[index];
+            int length = pvChoices.getLength();
+            StringArrayData stringArrayData = this.stringArrayData[index];
+            pvChoices.get(0,length,stringArrayData);
+            String[] data = stringArrayData.data;
+            // share the array when possible, as it rarely changes.
+            if(stringArrayData.offset==0 && data.length==length) {
+                choices[index] = data;
+                return;
+            }
+            String[] copy = new String[length];
+            System.arraycopy(data,stringArrayData.offset,copy,0,length);
+            choices[index] = copy;
+        }
+
+        void writeValue(int index)
+        {
+            pvIndex[index].put(this.index[index]);
+        }
+    }
+
+    /**
+     * A column of double array values.
+     * The array of each channel is reused and only reallocated when it is too short,
+     * so the length of the value is given by getLength.
+     */
+    public static final class DoubleArrayColumn extends PvaClientMultiColumn
+    {
+        private static final double[] empty = new double[0];
+        private double[][] value = new double[0][];
+        private int[] length = new int[0];
+        private PVDoubleArray[] pvValue;
+        // one for each channel, since channels can be read by different threads.
+        private DoubleArrayData[] doubleArrayData;
+
+        DoubleArrayColumn() {}
+
+        /**
+         * Get the values.
+         * For a put the caller sets the elements and getLength before calling put.
+         * @return The array of each channel.
+         */
+        public double[][] getValue()
+        {
+            return value;
+        }
+
+        /**
+         * Get the number of valid elements in the array of each channel.
+         * @return The length of each channel.
+         */
+        public int[] getLength()
+        {
+            return length;
+        }
+
+        public String getTypeName()
+        {
+            return "double[]";
+        }
+
+        void allocate(int nchannel)
+        {
+            value = new double[nchannel][];
+            for(int i=0; i<nchannel; ++i) value[i] = empty;
+            length = new int[nchannel];
+            pvValue = new PVDoubleArray[nchannel];
+            doubleArrayData = new DoubleArrayData[nchannel];
+            for(int i=0; i<nchannel; ++i) doubleArrayData[i] = new DoubleArrayData();
+        }
+
+        boolean bind(int index,PVField pvValue)
+        {
+            if(!(pvValue instanceof PVDoubleArray)) return false;
+            this.pvValue[index] = (PVDoubleArray)pvValue;
+            return true;
+        }
+
+        void readValue(int index)
+        {
+            PVDoubleArray pvValue = this.pvValue[index];
+            int length = pvValue.getLength();
+            if(value[index].length<length) value[index] = new double[length];
+            DoubleArrayData doubleArrayData = this.doubleArrayData[index];
+            pvValue.get(0,length,doubleArrayData);
+            System.arraycopy(doubleArrayData.data,doubleArrayData.offset,value[index],0,length);
+            this.length[index] = length;
+        }
+
+        void writeValue(int index)
+        {
+            PVDoubleArray pvValue = this.pvValue[index];
+            int length = Math.min(this.length[index],value[index].length);
+            pvValue.setLength(length);
+            pvValue.put(0,length,value[index],0);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Provides channelGet to multiple channels where the value field of each channel is read into a PvaClientMultiColumn.
+ * @param <C> The column type.
+ */
+public class PvaClientMultiColumnGet<C extends PvaClientMultiColumn>
+{
+    /**
+     * Factory method that creates a PvaClientMultiColumnGet.
+     * @param <C> The column type.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvaClientChannelArray The PvaClientChannel array.
+     * @param column The column that receives the values.
+     * @return The interface.
+     */
+    static public <C extends PvaClientMultiColumn> PvaClientMultiColumnGet<C> create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            C column)
+    {
+        return new PvaClientMultiColumnGet<C>(pvaClientMultiChannel,pvaClientChannelArray,column);
+    }
+
+    private PvaClientMultiColumnGet(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            C column)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiColumnGet::PvaClientMultiColumnGet()");
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        this.column = column;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        nchannel = pvaClientChannelArray.length;
+        column.init(pvaClientMultiChannel.getChannelNames());
+        pvaClientGet = new PvaClientGet[nchannel];
+    }
+
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private final C column;
+    private final PvaClientMultiMembership membership;
+    private int nchannel;
+
+    private PvaClientGet[] pvaClientGet;
+    private boolean isGetConnected = false;
+    private boolean isDestroyed = false;
+
+    /** Destroy the pvAccess connection.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiColumnGet::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        pvaClientChannelArray = null;
+    }
+    /**
+     * Create a channelGet for each channel.
+     */
+    public void connect()
+    {
+        sync();
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        String request = "value";
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientGet[i]==null) {
+                pvaClientGet[i] = pvaClientChannelArray[i].createGet(request);
+                pvaClientGet[i].issueConnect();
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                Status status = pvaClientGet[i].waitConnect();
+                if(status.isOK()) continue;
+                String message = "channel " + pvaClientChannelArray[i].getChannelName();
+                message += " PvaChannelGet::waitConnect " + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        }
+        isGetConnected = true;
+    }
+    /**
+     * Get the value of each connected channel into the column.
+     * @return The column.
+     */
+    public C get()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiColumnGet was destroyed");
+        sync();
+        if(!isGetConnected) connect();
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                pvaClientGet[i].issueGet();
+            }
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                Status status = pvaClientGet[i].waitGet();
+                if(!status.isOK()) {
+                    String message = "channel " + pvaClientChannelArray[i].getChannelName();
+                    message += " PvaChannelGet::waitGet " + status.getMessage();
+                    throw new RuntimeException(message);
+                }
+                column.read(i,pvaClientGet[i].getData().getPVStructure());
+            }
+        });
+        return column;
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientGet = PvaClientMultiMembership.remap(pvaClientGet,map,get -> get.destroy());
+        column.resize(pvaClientMultiChannel.getChannelNames());
+        isGetConnected = false;
+    }
+    /**
+     * Get the column.
+     * @return The column.
+     */
+    public C getColumn()
+    {
+        return column;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.BitSet;
+
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Provides a monitor to multiple channels where the value field of each channel is read into a PvaClientMultiColumn.
+ * @param <C> The column type.
+ */
+public class PvaClientMultiColumnMonitor<C extends PvaClientMultiColumn>
+{
+    /**
+     * Factory method that creates a PvaClientMultiColumnMonitor.
+     * @param <C> The column type.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvaClientChannelArray The PvaClientChannel array.
+     * @param column The column that receives the values.
+     * @return The interface.
+     */
+    static public <C extends PvaClientMultiColumn> PvaClientMultiColumnMonitor<C> create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            C column)
+    {
+        return new PvaClientMultiColumnMonitor<C>(pvaClientMultiChannel,pvaClientChannelArray,column);
+    }
+
+    private PvaClientMultiColumnMonitor(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            C column)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiColumnMonitor::PvaClientMultiColumnMonitor()");
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        this.column = column;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        nchannel = pvaClientChannelArray.length;
+        column.init(pvaClientMultiChannel.getChannelNames());
+        pvaClientMonitor = new PvaClientMonitor[nchannel];
+        notifier = new PvaClientMonitorNotifier(nchannel);
+    }
+
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private final C column;
+    private final PvaClientMultiMembership membership;
+    private int nchannel;
+
+    private PvaClientMonitor[] pvaClientMonitor;
+    private final PvaClientMonitorNotifier notifier;
+    private boolean isMonitorConnected = false;
+    private boolean isDestroyed = false;
+
+    /** Destroy the pvAccess connection.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiColumnMonitor::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].destroy();
+            pvaClientMonitor[i] = null;
+        }
+        pvaClientChannelArray = null;
+    }
+    /**
+     * Create and start a channel monitor for each channel.
+     */
+    public void connect()
+    {
+        sync();
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        String request = "value";
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]==null) {
+                pvaClientMonitor[i] = pvaClientChannelArray[i].createMonitor(request);
+                pvaClientMonitor[i].setNotifier(notifier,i);
+                pvaClientMonitor[i].issueConnect();
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
+                Status status = pvaClientMonitor[i].waitConnect();
+                if(status.isOK()) continue;
+                String message = "channel " + pvaClientChannelArray[i].getChannelName();
+                message += " PvaChannelMonitor::waitConnect " + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) pvaClientMonitor[i].start();
+        }
+        notifier.ready(0,nchannel);
+        isMonitorConnected = true;
+    }
+    /**
+     * poll each channel that has had an event since the last poll.
+     * If any has new data it is used to update the column.
+     * @return (false,true) if (no, at least one) value was updated.
+     */
+    public boolean poll()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiColumnMonitor was destroyed");
+        sync();
+        if(!isMonitorConnected) connect();
+        boolean result = false;
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        BitSet ready = notifier.take();
+        for(int i=ready.nextSetBit(0); i>=0 && i<nchannel; i=ready.nextSetBit(i+1))
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
+                if(pvaClientMonitor[i].poll()) {
+                    column.read(i,pvaClientMonitor[i].getData().getPVStructure());
+                    pvaClientMonitor[i].releaseEvent();
+                    // more elements may be queued.
+                    notifier.ready(i);
+                    result = true;
+                }
+            }
+        }
+        return result;
+    }
+    /**
+     * Wait until poll returns true.
+     * @param waitForEvent The time to keep trying.
+     * The caller is woken as soon as any channel has an event.
+     * @return (false,true) if (timeOut, poll returned true).
+     */
+    public boolean waitEvent(double waitForEvent)
+    {
+        if(poll()) return true;
+        long deadline = System.nanoTime() + (long)(waitForEvent*1e9);
+        while(true) {
+            double timeout = (deadline - System.nanoTime())/1e9;
+            if(!notifier.waitReady(timeout)) return false;
+            if(poll()) return true;
+        }
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientMonitor = PvaClientMultiMembership.remap(pvaClientMonitor,map,monitor -> {
+            monitor.setNotifier(null,0);
+            monitor.destroy();
+        });
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].setNotifier(notifier,i);
+        }
+        column.resize(pvaClientMultiChannel.getChannelNames());
+        // forget the old indices and poll each channel once.
+        notifier.take();
+        notifier.ready(0,nchannel);
+        isMonitorConnected = false;
+    }
+    /**
+     * Get the column.
+     * @return The column.
+     */
+    public C getColumn()
+    {
+        return column;
+    }
+}
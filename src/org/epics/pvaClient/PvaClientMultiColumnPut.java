@@ -0,0 +1,141 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Provides channelPut to multiple channels where the value field of each channel is written from a PvaClientMultiColumn.
+ * @param <C> The column type.
+ */
+public class PvaClientMultiColumnPut<C extends PvaClientMultiColumn>
+{
+    /**
+     * Factory method that creates a PvaClientMultiColumnPut.
+     * @param <C> The column type.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvaClientChannelArray The PvaClientChannel array.
+     * @param column The column that holds the values.
+     * @return The interface.
+     */
+    static public <C extends PvaClientMultiColumn> PvaClientMultiColumnPut<C> create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            C column)
+    {
+        return new PvaClientMultiColumnPut<C>(pvaClientMultiChannel,pvaClientChannelArray,column);
+    }
+
+    private PvaClientMultiColumnPut(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            C column)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiColumnPut::PvaClientMultiColumnPut()");
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        this.column = column;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        nchannel = pvaClientChannelArray.length;
+        column.init(pvaClientMultiChannel.getChannelNames());
+        pvaClientPut = new PvaClientPut[nchannel];
+    }
+
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private final C column;
+    private final PvaClientMultiMembership membership;
+    private int nchannel;
+
+    private PvaClientPut[] pvaClientPut;
+    private boolean isPutConnected = false;
+    private boolean isDestroyed = false;
+
+    /** Destroy the pvAccess connection.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiColumnPut::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        pvaClientChannelArray = null;
+    }
+    /**
+     * Create a channelPut for each channel.
+     */
+    public void connect()
+    {
+        sync();
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        String request = "value";
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientPut[i]==null) {
+                pvaClientPut[i] = pvaClientChannelArray[i].createPut(request);
+                pvaClientPut[i].issueConnect();
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientPut[i]!=null) {
+                Status status = pvaClientPut[i].waitConnect();
+                if(status.isOK()) continue;
+                String message = "channel " + pvaClientChannelArray[i].getChannelName();
+                message += " PvaChannelPut::waitConnect " + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        }
+        isPutConnected = true;
+    }
+    /**
+     * Put the column value of each connected channel.
+     * All puts are issued before waiting for any of them.
+     */
+    public void put()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiColumnPut was destroyed");
+        sync();
+        if(!isPutConnected) connect();
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientPut[i]!=null) {
+                column.write(i,pvaClientPut[i].getData().getPVStructure());
+                pvaClientPut[i].issuePut();
+            }
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientPut[i]!=null) {
+                Status status = pvaClientPut[i].waitPut();
+                if(status.isOK()) return;
+                String message = "channel " + pvaClientChannelArray[i].getChannelName();
+                message += " PvaChannelPut::waitPut " + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        });
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientPut = PvaClientMultiMembership.remap(pvaClientPut,map,put -> put.destroy());
+        column.resize(pvaClientMultiChannel.getChannelNames());
+        isPutConnected = false;
+    }
+    /**
+     * Get the column.
+     * @return The column.
+     */
+    public C getColumn()
+    {
+        return column;
+    }
+}
@@ -6,10 +6,13 @@
 package org.epics.pvaClient;
 
 import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.StatusFactory;
 import org.epics.pvdata.pv.Convert;
 import org.epics.pvdata.pv.PVScalar;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.StatusCreate;
 
 /**
  * Provides channelGet to multiple channels where each channel has a numeric scalar value field.
@@ -47,18 +50,19 @@ public class PvaClientMultiGetDouble
      */
     public void connect()
     {
+        sync();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
         String request = "value";
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientGet[i]==null) {
                 pvaClientGet[i] = pvaClientChannelArray[i].createGet(request);
                 pvaClientGet[i].issueConnect();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
                 Status status = pvaClientGet[i].waitConnect();
                 if(status.isOK()) continue;
                 String message = "channel " + pvaClientChannelArray[i].getChannelName();
@@ -74,37 +78,154 @@ public class PvaClientMultiGetDouble
      */
     public double[] get()
     {
+        sync();
         if(!isGetConnected) connect();
-        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
 
-        for(int i=0; i<nchannel; ++i)
-        {
-            if(isConnected[i]) {
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
                 pvaClientGet[i].issueGet();
             }
-        }
-        for(int i=0; i<nchannel; ++i)
-        {
-            if(isConnected[i]) {
-                Status status = pvaClientGet[i].waitGet();
-                if(status.isOK()) continue;
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(!isConnected[i] || pvaClientGet[i]==null) {
+                doubleValue[i] = Double.NaN;
+                return;
+            }
+            final PvaClientGet get = pvaClientGet[i];
+            Status status = PvaClientMultiShard.managedWait(() -> !get.isGetActive(),() -> get.waitGet());
+            if(!status.isOK()) {
                 String message = "channel " + pvaClientChannelArray[i].getChannelName();
                 message += " PvaChannelGet::waitGet " + status.getMessage();
                 throw new RuntimeException(message);
             }
+            PVStructure pvStructure = pvaClientGet[i].getData().getPVStructure();
+            doubleValue[i] = convert.toDouble(pvStructure.getSubField(PVScalar.class,"value"));
+        });
+        return doubleValue;
+    }
+    /**
+     * get the data with a deadline for the whole batch.
+     * Unlike get this does not throw if a channel fails.
+     * The value of a channel that is not connected, fails, or does not complete before the deadline is NaN,
+     * and getStatus and getLatency give the result of each channel.
+     * The deadline includes the time to connect the channelGet of each channel.
+     * A channel whose get is still active from an earlier call is not issued again until it completes.
+     * @param timeout The time in seconds for all channels to complete.
+     * @return The double[] where each element is the value field of the corresponding channel.
+     */
+    public double[] get(double timeout)
+    {
+        sync();
+        final long deadline = System.nanoTime() + (long)(timeout*1e9);
+        connect(deadline);
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            latency[i] = Double.NaN;
+            if(!channelStatus[i].isOK()) return;
+            if(pvaClientGet[i].isGetActive()) {
+                channelStatus[i] = stillActiveStatus;
+                return;
+            }
+            try {
+                pvaClientGet[i].issueGet();
+                channelStatus[i] = okStatus;
+            } catch(RuntimeException e) {
+                channelStatus[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+            }
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            doubleValue[i] = Double.NaN;
+            if(!channelStatus[i].isOK()) return;
+            try {
+                double remaining = (deadline - System.nanoTime())/1e9;
+                // a remaining time of 0 would wait forever.
+                final PvaClientGet get = pvaClientGet[i];
+                Status status = PvaClientMultiShard.managedWait(
+                    () -> !get.isGetActive(),
+                    () -> get.waitGet(Math.max(remaining,1e-9)));
+                channelStatus[i] = status;
+                if(!status.isOK()) return;
+                latency[i] = pvaClientGet[i].getLatency();
+                PVStructure pvStructure = pvaClientGet[i].getData().getPVStructure();
+                doubleValue[i] = convert.toDouble(pvStructure.getSubField(PVScalar.class,"value"));
+            } catch(RuntimeException e) {
+                channelStatus[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+            }
+        });
+        return doubleValue;
+    }
+    /*
+     * Create a channelGet for each connected channel and wait for the connections until the deadline.
+     * The result of each channel is put in channelStatus instead of throwing.
+     * A channelGet that is not connected by the deadline is kept and waited for by the next call.
+     */
+    private void connect(long deadline)
+    {
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        String request = "value";
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(!isConnected[i]) {
+                channelStatus[i] = notConnectedStatus;
+                continue;
+            }
+            channelStatus[i] = okStatus;
+            if(pvaClientGet[i]!=null) continue;
+            try {
+                pvaClientGet[i] = pvaClientChannelArray[i].createGet(request);
+                pvaClientGet[i].issueConnect();
+            } catch(RuntimeException e) {
+                channelStatus[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+                if(pvaClientGet[i]!=null) pvaClientGet[i].destroy();
+                pvaClientGet[i] = null;
+            }
         }
-
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i])
-            {
-                PVStructure pvStructure = pvaClientGet[i].getData().getPVStructure();
-                doubleValue[i] = convert.toDouble(pvStructure.getSubField(PVScalar.class,"value"));
-            } else {
-                doubleValue[i] = Double.NaN;
+            if(!channelStatus[i].isOK() || !pvaClientGet[i].isConnectActive()) continue;
+            double remaining = (deadline - System.nanoTime())/1e9;
+            // a remaining time of 0 would wait forever.
+            Status status = pvaClientGet[i].waitConnect(Math.max(remaining,1e-9));
+            if(status.isOK()) continue;
+            channelStatus[i] = status;
+            // a connect that failed is created again by the next call.
+            if(!pvaClientGet[i].isConnectActive()) {
+                pvaClientGet[i].destroy();
+                pvaClientGet[i] = null;
             }
         }
-        return doubleValue;
+    }
+    /**
+     * Get the status of each channel for the last call to get(timeout).
+     * @return The shared array of status.
+     */
+    public Status[] getStatus()
+    {
+        return channelStatus;
+    }
+    /**
+     * Get the latency of each channel for the last call to get(timeout).
+     * @return The shared array of the time in seconds from issue to completion, NaN if the get did not complete.
+     */
+    public double[] getLatency()
+    {
+        return latency;
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientGet = PvaClientMultiMembership.remap(pvaClientGet,map,get -> get.destroy());
+        channelStatus = PvaClientMultiMembership.remap(channelStatus,map,null);
+        for(int i=0; i<nchannel; ++i) if(channelStatus[i]==null) channelStatus[i] = okStatus;
+        doubleValue = PvaClientMultiMembership.remap(doubleValue,map,Double.NaN);
+        latency = PvaClientMultiMembership.remap(latency,map,Double.NaN);
+        isGetConnected = false;
     }
 
 
@@ -115,22 +236,34 @@ public class PvaClientMultiGetDouble
         if(PvaClient.getDebug()) System.out.println("PvaClientMultiGetDouble::PvaClientMultiGetDouble()");
         this.pvaClientMultiChannel = pvaClientMultiChannel;
         this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
         nchannel = pvaClientChannelArray.length;
         doubleValue = new double[nchannel];
+        channelStatus = new Status[nchannel];
+        latency = new double[nchannel];
         pvaClientGet = new PvaClientGet[nchannel];
         for(int i=0; i<nchannel; ++i) {
             {
                 pvaClientGet[i] = null;
                 doubleValue[i] = Double.NaN;
+                channelStatus[i] = okStatus;
+                latency[i] = Double.NaN;
             }
         }
     }
     private static final Convert convert = ConvertFactory.getConvert();
+    private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
+    private static final Status okStatus = statusCreate.getStatusOK();
+    private static final Status notConnectedStatus = statusCreate.createStatus(StatusType.ERROR,"channel not connected",null);
+    private static final Status stillActiveStatus = statusCreate.createStatus(StatusType.ERROR,"previous get still active",null);
     private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final PvaClientMultiMembership membership;
     private PvaClientChannel[] pvaClientChannelArray;
     private int nchannel;
 
     private double[] doubleValue;
+    private Status[] channelStatus;
+    private double[] latency;
     private PvaClientGet[] pvaClientGet;
     boolean isGetConnected = false;
     boolean isDestroyed = false;
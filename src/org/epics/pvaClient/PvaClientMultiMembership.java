@@ -0,0 +1,96 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Follows the channels of a PvaClientMultiChannel for an operation created from it.
+ * When channels are added or removed the operation calls update
+ * and moves its per channel state to the new indices with remap,
+ * so that only the added and removed channels are connected or destroyed.
+ */
+class PvaClientMultiMembership
+{
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private String[] channelName;
+    private long generation;
+
+    /**
+     * Constructor.
+     * @param pvaClientMultiChannel The multi channel.
+     */
+    PvaClientMultiMembership(PvaClientMultiChannel pvaClientMultiChannel)
+    {
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        generation = pvaClientMultiChannel.getMembershipGeneration();
+        channelName = pvaClientMultiChannel.getChannelNames();
+    }
+
+    /**
+     * Check if the channels changed since the last call.
+     * @return null if nothing changed, else for each new index the old index or -1 if the channel was added.
+     */
+    int[] update()
+    {
+        long generation = pvaClientMultiChannel.getMembershipGeneration();
+        if(generation==this.generation) return null;
+        String[] newName = pvaClientMultiChannel.getChannelNames();
+        HashMap<String,Integer> oldIndex = new HashMap<String,Integer>(channelName.length*2);
+        for(int i=0; i<channelName.length; ++i) oldIndex.put(channelName[i],i);
+        int[] map = new int[newName.length];
+        for(int i=0; i<newName.length; ++i) {
+            Integer index = oldIndex.get(newName[i]);
+            map[i] = (index==null) ? -1 : index;
+        }
+        channelName = newName;
+        this.generation = generation;
+        return map;
+    }
+
+    /**
+     * Move the elements of an array to the new indices.
+     * @param old The array for the old indices.
+     * @param map The map returned by update.
+     * @param removed If not null it is called for each non null element of a removed channel.
+     * @return The array for the new indices. Added channels have a null element.
+     */
+    static <T> T[] remap(T[] old,int[] map,Consumer<T> removed)
+    {
+        T[] result = Arrays.copyOf(old,map.length);
+        boolean[] isKept = new boolean[old.length];
+        for(int i=0; i<map.length; ++i) {
+            if(map[i]<0) {
+                result[i] = null;
+                continue;
+            }
+            result[i] = old[map[i]];
+            isKept[map[i]] = true;
+        }
+        if(removed==null) return result;
+        for(int i=0; i<old.length; ++i) {
+            if(!isKept[i] && old[i]!=null) removed.accept(old[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Move the elements of an array to the new indices.
+     * @param old The array for the old indices.
+     * @param map The map returned by update.
+     * @param initial The value for added channels.
+     * @return The array for the new indices.
+     */
+    static double[] remap(double[] old,int[] map,double initial)
+    {
+        double[] result = new double[map.length];
+        for(int i=0; i<map.length; ++i) result[i] = (map[i]<0) ? initial : old[map[i]];
+        return result;
+    }
+}
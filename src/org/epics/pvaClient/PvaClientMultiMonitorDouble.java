@@ -7,8 +7,8 @@
 
 package org.epics.pvaClient;
 
-import org.epics.pvdata.property.TimeStamp;
-import org.epics.pvdata.property.TimeStampFactory;
+import java.util.BitSet;
+
 import org.epics.pvdata.pv.Status;
 
 /**
@@ -45,18 +45,20 @@ public class PvaClientMultiMonitorDouble
      */
     public void connect()
     {
+        sync();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
         String request = "value";
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientMonitor[i]==null) {
                 pvaClientMonitor[i] = pvaClientChannelArray[i].createMonitor(request);
+                pvaClientMonitor[i].setNotifier(notifier,i);
                 pvaClientMonitor[i].issueConnect();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
                 Status status = pvaClientMonitor[i].waitConnect();
                 if(status.isOK()) continue;
                 String message = "channel " + pvaClientChannelArray[i].getChannelName();
@@ -64,32 +66,34 @@ public class PvaClientMultiMonitorDouble
                 throw new RuntimeException(message);
             }
         }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) pvaClientMonitor[i].start();
+        }
+        // events that arrived before the notifier was set are found by the first poll.
+        notifier.ready(0,nchannel);
         isMonitorConnected = true;
     }
     /**
-     * poll each channel.
+     * poll each channel that has had an event since the last poll.
      * If any has new data it is used to update the double[].
      * @return (false,true) if (no, at least one) value was updated.
      */
     public boolean poll()
     {
-        if(!isMonitorConnected){
-            connect();
-            try
-            {
-                Thread.sleep(100);
-            } catch (Throwable th) {
-                th.printStackTrace();
-            }
-        }
+        sync();
+        if(!isMonitorConnected) connect();
         boolean result = false;
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
-        for(int i=0; i<nchannel; ++i)
+        BitSet ready = notifier.take();
+        for(int i=ready.nextSetBit(0); i>=0 && i<nchannel; i=ready.nextSetBit(i+1))
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
                 if(pvaClientMonitor[i].poll()) {
                     doubleValue[i] = pvaClientMonitor[i].getData().getDouble();
                     pvaClientMonitor[i].releaseEvent();
+                    // more elements may be queued.
+                    notifier.ready(i);
                     result = true;
                 }
             }
@@ -99,28 +103,18 @@ public class PvaClientMultiMonitorDouble
     /**
      * Wait until poll returns true.
      * @param waitForEvent The time to keep trying.
-     * A thread sleep of .1 seconds occurs between each call to poll.
+     * The caller is woken as soon as any channel has an event.
      * @return (false,true) if (timeOut, poll returned true).
      */
     public boolean waitEvent(double waitForEvent)
     {
         if(poll()) return true;
-        TimeStamp start = TimeStampFactory.create();
-        start.getCurrentTime();
-        TimeStamp now  = TimeStampFactory.create();
+        long deadline = System.nanoTime() + (long)(waitForEvent*1e9);
         while(true) {
-            try
-            {
-                Thread.sleep(100);
-            } catch (Throwable th) {
-                th.printStackTrace();
-            }
+            double timeout = (deadline - System.nanoTime())/1e9;
+            if(!notifier.waitReady(timeout)) return false;
             if(poll()) return true;
-            now.getCurrentTime();
-            double diff = start.diff(now, start);
-            if(diff>=waitForEvent) break;
         }
-        return false;
     }
     /**
      * get the data.
@@ -131,6 +125,29 @@ public class PvaClientMultiMonitorDouble
         return doubleValue;
     }
 
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientMonitor = PvaClientMultiMembership.remap(pvaClientMonitor,map,monitor -> {
+            monitor.setNotifier(null,0);
+            monitor.destroy();
+        });
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].setNotifier(notifier,i);
+        }
+        doubleValue = PvaClientMultiMembership.remap(doubleValue,map,Double.NaN);
+        // forget the old indices and poll each channel once.
+        notifier.take();
+        notifier.ready(0,nchannel);
+        isMonitorConnected = false;
+    }
+
     private PvaClientMultiMonitorDouble(
             PvaClientMultiChannel pvaClientMultiChannel,
             PvaClientChannel[] pvaClientChannelArray)
@@ -138,9 +155,11 @@ public class PvaClientMultiMonitorDouble
         if(PvaClient.getDebug()) System.out.println("PvaClientMultiMonitorDouble::PvaClientMultiMonitorDouble()");
         this.pvaClientMultiChannel = pvaClientMultiChannel;
         this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
         nchannel = pvaClientChannelArray.length;
         doubleValue = new double[nchannel];
         pvaClientMonitor = new PvaClientMonitor[nchannel];
+        notifier = new PvaClientMonitorNotifier(nchannel);
         for(int i=0; i<nchannel; ++i) {
             {
                 pvaClientMonitor[i] = null;
@@ -150,11 +169,13 @@ public class PvaClientMultiMonitorDouble
     }
 
     private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final PvaClientMultiMembership membership;
     private PvaClientChannel[] pvaClientChannelArray;
     private int nchannel;
 
     private double[] doubleValue;
     private PvaClientMonitor[] pvaClientMonitor;
+    private final PvaClientMonitorNotifier notifier;
     boolean isMonitorConnected = false;
     boolean isDestroyed = false;
 
@@ -48,18 +48,19 @@ public class PvaClientMultiPutDouble
      */
     public void connect()
     {
+        sync();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
         String request = "value";
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]==null) {
                 pvaClientPut[i] = pvaClientChannelArray[i].createPut(request);
                 pvaClientPut[i].issueConnect();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]!=null) {
                 Status status = pvaClientPut[i].waitConnect();
                 if(status.isOK()) continue;
                 String message = "channel " + pvaClientChannelArray[i].getChannelName();
@@ -74,27 +75,37 @@ public class PvaClientMultiPutDouble
      */
     public void put(double[] data)
     {
+        sync();
         if(!isPutConnected) connect();
         if(data.length!=nchannel) {
             throw new RuntimeException("data has wrong size");
         }
-        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
-        for(int i=0; i<nchannel; ++i)
-        {
-            if(isConnected[i]) {
-                PVStructure pvTop = pvaClientPut[i].getData().getPVStructure();
-                PVScalar pvValue = pvTop.getSubField(PVScalar.class,"value");
-                convert.fromDouble(pvValue, data[i]);
-                pvaClientPut[i].issuePut();
-            }
-            if(isConnected[i]) {
-                Status status = pvaClientPut[i].waitPut();
-                if(status.isOK())  continue;
-                String message = "channel " + pvaClientChannelArray[i].getChannelName();
-                message += " PvaChannelPut::waitConnect " + status.getMessage();
-                throw new RuntimeException(message);
-            }
-        }
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(!isConnected[i] || pvaClientPut[i]==null) return;
+            PVStructure pvTop = pvaClientPut[i].getData().getPVStructure();
+            PVScalar pvValue = pvTop.getSubField(PVScalar.class,"value");
+            convert.fromDouble(pvValue, data[i]);
+            pvaClientPut[i].issuePut();
+            Status status = pvaClientPut[i].waitPut();
+            if(status.isOK())  return;
+            String message = "channel " + pvaClientChannelArray[i].getChannelName();
+            message += " PvaChannelPut::waitConnect " + status.getMessage();
+            throw new RuntimeException(message);
+        });
+    }
+
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientPut = PvaClientMultiMembership.remap(pvaClientPut,map,put -> put.destroy());
+        isPutConnected = false;
     }
 
     private PvaClientMultiPutDouble(
@@ -104,6 +115,7 @@ public class PvaClientMultiPutDouble
         if(PvaClient.getDebug()) System.out.println("PvaClientMultiPutDouble::PvaClientMultiPutDouble()");
         this.pvaClientMultiChannel = pvaClientMultiChannel;
         this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
         nchannel = pvaClientChannelArray.length;
         pvaClientPut = new PvaClientPut[nchannel];
         for(int i=0; i<nchannel; ++i) {
@@ -114,6 +126,7 @@ public class PvaClientMultiPutDouble
     }
 
     private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final PvaClientMultiMembership membership;
     private static final Convert convert = ConvertFactory.getConvert();
     private PvaClientChannel[] pvaClientChannelArray;
     private int nchannel;
@@ -0,0 +1,380 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvdata.factory.StatusFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.StatusCreate;
+
+/**
+ * Provides channelRPC to multiple channels.
+ * <p>
+ * A request sends the same argument, or an argument for each channel, to the RPC service of every channel.
+ * The requests are issued without waiting for earlier responses,
+ * but at most maxConcurrent requests are outstanding at any time.
+ * All channels share one deadline.
+ * A request does not throw if a channel fails,
+ * instead getStatus and getLatency give the result of each channel.
+ * <p>
+ * A channel whose request did not complete before the deadline keeps its request outstanding,
+ * and it is not sent another request until the response arrives.
+ * The deadline also bounds the time to connect the channelRPC of each channel;
+ * a channel that is not connected in time is not sent the request,
+ * and its connect is waited for again by the next request.
+ * The methods must be called by a single thread.
+ */
+public class PvaClientMultiRPC
+{
+    /**
+     * Factory method that creates a PvaClientMultiRPC.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvRequest The pvRequest that is passed to createRPC for each channel. It can be null.
+     * @param maxConcurrent The maximum number of outstanding requests.
+     * @return The interface.
+     */
+    static public PvaClientMultiRPC create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PVStructure pvRequest,
+            int maxConcurrent)
+    {
+        return new PvaClientMultiRPC(pvaClientMultiChannel,pvRequest,maxConcurrent);
+    }
+
+    private PvaClientMultiRPC(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PVStructure pvRequest,
+            int maxConcurrent)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiRPC::PvaClientMultiRPC()");
+        if(maxConcurrent<1) {
+            throw new IllegalArgumentException("PvaClientMultiRPC maxConcurrent must be at least 1");
+        }
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvRequest = pvRequest;
+        this.maxConcurrent = maxConcurrent;
+        permits = new Semaphore(maxConcurrent);
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = pvaClientChannelArray.length;
+        slot = new Slot[nchannel];
+        for(int i=0; i<nchannel; ++i) slot[i] = new Slot();
+    }
+
+    private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
+    private static final Status okStatus = statusCreate.getStatusOK();
+    private static final Status notConnectedStatus = statusCreate.createStatus(StatusType.ERROR,"channel not connected",null);
+    private static final Status stillActiveStatus = statusCreate.createStatus(StatusType.ERROR,"previous request still active",null);
+    private static final Status notSentStatus = statusCreate.createStatus(StatusType.ERROR,"deadline expired before the request was sent",null);
+    private static final Status timeoutStatus = statusCreate.createStatus(StatusType.ERROR,"request timeout",null);
+
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final PvaClientMultiMembership membership;
+    private final PVStructure pvRequest;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private int nchannel;
+    private Slot[] slot;
+    private Batch last = null;
+    private boolean isDestroyed = false;
+
+    /*
+     * The PvaClientRPC of a channel, which has at most one outstanding request.
+     */
+    private static class Slot
+    {
+        private PvaClientRPC pvaClientRPC = null;
+        // issueConnect was called and waitConnect has not returned the result.
+        private boolean isConnecting = false;
+        private final AtomicBoolean isActive = new AtomicBoolean(false);
+    }
+
+    /*
+     * The results of one call to request.
+     * A response that arrives after the batch is closed is ignored.
+     */
+    private static class Batch
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition isDone = lock.newCondition();
+        private final PVStructure[] response;
+        private final Status[] status;
+        private final double[] latency;
+        // guarded by lock
+        private int outstanding = 0;
+        private boolean isClosed = false;
+
+        Batch(int nchannel)
+        {
+            response = new PVStructure[nchannel];
+            status = new Status[nchannel];
+            latency = new double[nchannel];
+            for(int i=0; i<nchannel; ++i) latency[i] = Double.NaN;
+        }
+
+        void issued()
+        {
+            lock.lock();
+            try {
+                ++outstanding;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void done(int index,Status status,PVStructure response,long issueTime)
+        {
+            lock.lock();
+            try {
+                if(isClosed) return;
+                this.status[index] = status;
+                this.response[index] = response;
+                latency[index] = (System.nanoTime() - issueTime)/1e9;
+                if(--outstanding==0) isDone.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void await(long deadline)
+        {
+            lock.lock();
+            try {
+                while(outstanding>0) {
+                    long nanos = deadline - System.nanoTime();
+                    if(nanos<=0) break;
+                    isDone.awaitNanos(nanos);
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                isClosed = true;
+                for(int i=0; i<status.length; ++i) {
+                    if(status[i]==null) status[i] = timeoutStatus;
+                }
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Called when the response of a channel arrives.
+     */
+    private class Requester implements PvaClientRPCRequester
+    {
+        private final Batch batch;
+        private final Slot slot;
+        private final int index;
+        private final long issueTime;
+
+        Requester(Batch batch,Slot slot,int index,long issueTime)
+        {
+            this.batch = batch;
+            this.slot = slot;
+            this.index = index;
+            this.issueTime = issueTime;
+        }
+
+        public void requestDone(Status status,PvaClientRPC channelRPC,PVStructure pvResponse)
+        {
+            if(!slot.isActive.compareAndSet(true,false)) return;
+            permits.release();
+            batch.done(index,status,pvResponse,issueTime);
+        }
+    }
+
+    /** Destroy the PvaClientRPC of each channel.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientMultiRPC::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        for(int i=0; i<nchannel; ++i) {
+            if(slot[i].pvaClientRPC!=null) slot[i].pvaClientRPC.destroy();
+            slot[i].pvaClientRPC = null;
+        }
+        pvaClientChannelArray = null;
+    }
+
+    /*
+     * Create and connect the PvaClientRPC of each connected channel that does not have one,
+     * and wait for the connections until the deadline.
+     * A channel that can not be used gets its status in the batch.
+     */
+    private void connect(Batch batch,boolean[] isConnected,long deadline)
+    {
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(!isConnected[i]) {
+                batch.status[i] = notConnectedStatus;
+                continue;
+            }
+            if(slot[i].pvaClientRPC!=null) continue;
+            PvaClientChannel pvaClientChannel = pvaClientChannelArray[i];
+            // createRPC would wait for a channel that disconnected since isConnected was read.
+            Channel channel = pvaClientChannel.getChannel();
+            if(channel==null || !channel.isConnected()) {
+                batch.status[i] = notConnectedStatus;
+                continue;
+            }
+            try {
+                slot[i].pvaClientRPC = PvaClientRPC.create(
+                    pvaClientChannel.getPvaClient(),pvaClientChannel,pvRequest);
+                slot[i].pvaClientRPC.issueConnect();
+                slot[i].isConnecting = true;
+            } catch(RuntimeException e) {
+                batch.status[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+                slot[i].pvaClientRPC = null;
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(batch.status[i]!=null || !slot[i].isConnecting) continue;
+            PvaClientRPC pvaClientRPC = slot[i].pvaClientRPC;
+            double remaining = (deadline - System.nanoTime())/1e9;
+            // a remaining time of 0 would wait forever.
+            Status status = pvaClientRPC.waitConnect(Math.max(remaining,1e-9));
+            if(pvaClientRPC.isConnectActive()) {
+                batch.status[i] = notSentStatus;
+                continue;
+            }
+            slot[i].isConnecting = false;
+            if(status.isOK()) continue;
+            batch.status[i] = status;
+            pvaClientRPC.destroy();
+            slot[i].pvaClientRPC = null;
+        }
+    }
+
+    /**
+     * Send the same argument to each channel and wait for the responses.
+     * @param pvArgument The argument for every channel.
+     * @param timeout The time in seconds for all channels to complete.
+     * @return The response of each channel, null if the channel failed. A new array is returned by every call.
+     */
+    public PVStructure[] request(PVStructure pvArgument,double timeout)
+    {
+        return request(null,pvArgument,timeout);
+    }
+
+    /**
+     * Send an argument to each channel and wait for the responses.
+     * @param pvArgument The argument for each channel.
+     * The length must be the number of channels, and a null element skips the channel.
+     * @param timeout The time in seconds for all channels to complete.
+     * @return The response of each channel, null if the channel failed or was skipped.
+     * A new array is returned by every call.
+     */
+    public PVStructure[] request(PVStructure[] pvArgument,double timeout)
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiRPC was destroyed");
+        sync();
+        if(pvArgument.length!=nchannel) {
+            throw new IllegalArgumentException("PvaClientMultiRPC::request argument has wrong size");
+        }
+        return request(pvArgument,null,timeout);
+    }
+
+    private PVStructure[] request(PVStructure[] pvArguments,PVStructure pvArgument,double timeout)
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientMultiRPC was destroyed");
+        sync();
+        long deadline = System.nanoTime() + (long)(timeout*1e9);
+        Batch batch = new Batch(nchannel);
+        connect(batch,pvaClientMultiChannel.getIsConnected(),deadline);
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(batch.status[i]!=null) continue;
+            PVStructure argument = (pvArguments==null) ? pvArgument : pvArguments[i];
+            if(argument==null) {
+                batch.status[i] = okStatus;
+                continue;
+            }
+            Slot slot = this.slot[i];
+            if(!slot.isActive.compareAndSet(false,true)) {
+                batch.status[i] = stillActiveStatus;
+                continue;
+            }
+            boolean gotPermit = false;
+            try {
+                gotPermit = permits.tryAcquire(Math.max(deadline - System.nanoTime(),0),TimeUnit.NANOSECONDS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if(!gotPermit) {
+                slot.isActive.set(false);
+                batch.status[i] = notSentStatus;
+                continue;
+            }
+            batch.issued();
+            Requester requester = new Requester(batch,slot,i,System.nanoTime());
+            try {
+                slot.pvaClientRPC.request(argument,requester);
+            } catch(RuntimeException e) {
+                requester.requestDone(statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null),slot.pvaClientRPC,null);
+            }
+        }
+        batch.await(deadline);
+        last = batch;
+        return batch.response;
+    }
+
+    /**
+     * Get the status of each channel for the last request.
+     * @return The array of status, null if no request was made.
+     */
+    public Status[] getStatus()
+    {
+        return (last==null) ? null : last.status;
+    }
+
+    /**
+     * Get the latency of each channel for the last request.
+     * @return The time in seconds from issue to response, NaN if the request did not complete,
+     * or null if no request was made.
+     */
+    public double[] getLatency()
+    {
+        return (last==null) ? null : last.latency;
+    }
+
+    /**
+     * Get the maximum number of outstanding requests.
+     * @return The number.
+     */
+    public int getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        slot = PvaClientMultiMembership.remap(slot,map,removed -> {
+            // the response of an outstanding request will not arrive.
+            if(removed.isActive.compareAndSet(true,false)) permits.release();
+            if(removed.pvaClientRPC!=null) removed.pvaClientRPC.destroy();
+        });
+        for(int i=0; i<nchannel; ++i) if(slot[i]==null) slot[i] = new Slot();
+    }
+};
@@ -0,0 +1,105 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Runs an action for a range of channel indices by splitting the range into shards
+ * that are run by the threads of a ForkJoinPool.
+ * Each shard writes only the elements of its own channels,
+ * so the results of all shards are in the same arrays when invoke returns.
+ * An action that waits must use managedWait, so that the pool can add a thread
+ * instead of leaving the other shards queued behind the waiting one.
+ */
+class PvaClientMultiShard extends RecursiveAction
+{
+    private static final long serialVersionUID = 1L;
+    private final IntConsumer action;
+    private final int from;
+    private final int to;
+    private final int shardSize;
+
+    /**
+     * Constructor.
+     * @param action Called for each index.
+     * @param from The first index.
+     * @param to The index after the last.
+     * @param shardSize The maximum number of indices run by one task.
+     */
+    PvaClientMultiShard(IntConsumer action,int from,int to,int shardSize)
+    {
+        this.action = action;
+        this.from = from;
+        this.to = to;
+        this.shardSize = shardSize;
+    }
+
+    @Override
+    protected void compute()
+    {
+        if(to - from<=shardSize) {
+            for(int i=from; i<to; ++i) action.accept(i);
+            return;
+        }
+        int middle = (from + to)>>>1;
+        invokeAll(
+            new PvaClientMultiShard(action,from,middle,shardSize),
+            new PvaClientMultiShard(action,middle,to,shardSize));
+    }
+
+    private static final class Blocker implements ForkJoinPool.ManagedBlocker
+    {
+        private final BooleanSupplier isDone;
+        private final Supplier<Status> wait;
+        private Status status = null;
+
+        Blocker(BooleanSupplier isDone,Supplier<Status> wait)
+        {
+            this.isDone = isDone;
+            this.wait = wait;
+        }
+
+        public boolean block()
+        {
+            if(status==null) status = wait.get();
+            return true;
+        }
+
+        public boolean isReleasable()
+        {
+            if(status!=null) return true;
+            if(!isDone.getAsBoolean()) return false;
+            // it does not block, so the pool does not need another thread.
+            status = wait.get();
+            return true;
+        }
+    }
+
+    /**
+     * Wait for a pvAccess request from a thread of the pool, or from any other thread.
+     * @param isDone Returns true if the request is complete, i.e. wait would not block.
+     * @param wait Waits for the request and returns its status.
+     * @return The status returned by wait.
+     */
+    static Status managedWait(BooleanSupplier isDone,Supplier<Status> wait)
+    {
+        Blocker blocker = new Blocker(isDone,wait);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch(InterruptedException e) {
+            throw new RuntimeException("PvaClientMultiShard InterruptedException " + e.getMessage());
+        }
+        return blocker.status;
+    }
+}
@@ -10,36 +10,18 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.epics.nt.NTMultiChannel;
 import org.epics.nt.NTMultiChannelBuilder;
-import org.epics.pvdata.factory.ConvertFactory;
 import org.epics.pvdata.factory.PVDataFactory;
-import org.epics.pvdata.property.Alarm;
-import org.epics.pvdata.property.AlarmSeverity;
-import org.epics.pvdata.property.AlarmStatus;
 import org.epics.pvdata.property.PVTimeStamp;
 import org.epics.pvdata.property.PVTimeStampFactory;
 import org.epics.pvdata.property.TimeStamp;
 import org.epics.pvdata.property.TimeStampFactory;
-import org.epics.pvdata.pv.BooleanArrayData;
-import org.epics.pvdata.pv.Convert;
 import org.epics.pvdata.pv.Field;
-import org.epics.pvdata.pv.IntArrayData;
-import org.epics.pvdata.pv.LongArrayData;
-import org.epics.pvdata.pv.PVBooleanArray;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVField;
-import org.epics.pvdata.pv.PVInt;
-import org.epics.pvdata.pv.PVIntArray;
-import org.epics.pvdata.pv.PVLong;
-import org.epics.pvdata.pv.PVLongArray;
-import org.epics.pvdata.pv.PVString;
-import org.epics.pvdata.pv.PVStringArray;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.PVUnion;
-import org.epics.pvdata.pv.PVUnionArray;
-import org.epics.pvdata.pv.StringArrayData;
 import org.epics.pvdata.pv.Structure;
 import org.epics.pvdata.pv.Union;
-import org.epics.pvdata.pv.UnionArrayData;
 
 
 /**
@@ -81,12 +63,7 @@ public class PvaClientNTMultiData
         if(pvValue==null) {
             throw new RuntimeException("pvRequest did not specify value");
         }
-        topPVStructure = new PVStructure[nchannel];
-        unionValue = new PVUnion[nchannel];
-        for(int i=0; i< nchannel; ++i) {
-            topPVStructure[i] = null;
-            unionValue[i] = pvDataCreate.createPVUnion(u);
-        }
+        union = u;
         NTMultiChannelBuilder builder = NTMultiChannel.createBuilder();
         builder.value(u).addIsConnected();
         if(pvRequest.getSubField("field.alarm")!=null)
@@ -96,10 +73,6 @@ public class PvaClientNTMultiData
             builder.addSeverity();
             builder.addStatus();
             builder.addMessage();
-            severity = new int[nchannel];
-            status = new int[nchannel];
-            message = new String[nchannel];
-
         }
         if(pvRequest.getSubField("field.timeStamp")!=null) {
             gotTimeStamp = true;
@@ -107,11 +80,57 @@ public class PvaClientNTMultiData
             builder.addSecondsPastEpoch();
             builder.addNanoseconds();
             builder.addUserTag();
-            secondsPastEpoch = new long[nchannel];
-            nanoseconds = new int[nchannel];
-            userTag = new int[nchannel];
         }
         ntMultiChannelStructure = builder.createStructure();
+        PVStructure pvStructure = pvDataCreate.createPVStructure(ntMultiChannelStructure);
+        ntMultiChannel = NTMultiChannel.wrap(pvStructure);
+        properties = new PvaClientNTMultiProperties(gotAlarm,gotTimeStamp);
+        if(gotTimeStamp) {
+            PVField pvTop = pvStructure.getSubField("timeStamp");
+            if(pvTop!=null) pvTimeStamp.attach(pvTop);
+        }
+        allocate();
+    }
+
+    /*
+     * Allocate the arrays for nchannel channels.
+     */
+    private void allocate()
+    {
+        topPVStructure = new PVStructure[nchannel];
+        unionValue = new PVUnion[nchannel];
+        for(int i=0; i< nchannel; ++i) {
+            topPVStructure[i] = null;
+            unionValue[i] = pvDataCreate.createPVUnion(union);
+        }
+        isConnected = new boolean[nchannel];
+        pvChannelValue = new PVField[nchannel];
+        // The NTMultiChannel shares the arrays of this class,
+        // so endDeltaTime writes the result directly into it.
+        ntMultiChannel.getChannelName().shareData(pvaClientMultiChannel.getChannelNames().clone());
+        ntMultiChannel.getValue().shareData(unionValue);
+        ntMultiChannel.getIsConnected().shareData(isConnected);
+        properties.allocate(
+            nchannel,
+            ntMultiChannel.getSeverity(),
+            ntMultiChannel.getStatus(),
+            ntMultiChannel.getMessage(),
+            ntMultiChannel.getSecondsPastEpoch(),
+            ntMultiChannel.getNanoseconds(),
+            ntMultiChannel.getUserTag());
+    }
+
+    /**
+     * Follow channels added to or removed from the multi channel.
+     * Called by PvaClientNTMultiGet, PvaClientNTMultiPut, and PvaClientNTMultiMonitor.
+     * The data of all channels is cleared.
+     * @param pvaClientChannelArray The new PvaClientChannel array.
+     */
+    void resize(PvaClientChannel[] pvaClientChannelArray)
+    {
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        nchannel = pvaClientChannelArray.length;
+        allocate();
     }
 
 
@@ -132,10 +151,10 @@ public class PvaClientNTMultiData
     }
 
     private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
-    private static final Convert convert = ConvertFactory.getConvert();
     private final PvaClientMultiChannel pvaClientMultiChannel;
-    private final PvaClientChannel[] pvaClientChannelArray;
-    private final int nchannel;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private int nchannel;
+    private Union union;
     private final ReentrantLock lock = new ReentrantLock();
 
     private PVStructure[] topPVStructure;
@@ -144,19 +163,12 @@ public class PvaClientNTMultiData
     private boolean isDestroyed = false;
 
     private Structure ntMultiChannelStructure;
+    private NTMultiChannel ntMultiChannel;
     private PVUnion[] unionValue;
-    private UnionArrayData unionArrayData = new UnionArrayData();
-    private IntArrayData intArrayData = new IntArrayData();
-    private LongArrayData longArrayData = new LongArrayData();
-    private StringArrayData stringArrayData = new StringArrayData();
-    private BooleanArrayData booleanArrayData = new BooleanArrayData();
-    private int[] severity;
-    private int[] status;
-    private String[] message;
-    private long[] secondsPastEpoch;
-    private int[] nanoseconds;
-    private int[] userTag;
-    private Alarm alarm = new Alarm();
+    private boolean[] isConnected;
+    private PvaClientNTMultiProperties properties;
+    // the value field of each channel, looked up again only if the channel data changes.
+    private PVField[] pvChannelValue;
     private TimeStamp timeStamp = TimeStampFactory.create();
     private PVTimeStamp pvTimeStamp = PVTimeStampFactory.create();
 
@@ -192,29 +204,21 @@ public class PvaClientNTMultiData
      */
     public void startDeltaTime()
     {
-
+        timeStamp.getCurrentTime();
         for(int i=0; i<nchannel; ++i)
         {
             topPVStructure[i] = null;
-            if(gotAlarm)
-            {
-                alarm.setSeverity(AlarmSeverity.NONE);
-                alarm.setStatus(AlarmStatus.NONE);
-                alarm.setMessage("");
-                severity[i] = AlarmSeverity.INVALID.ordinal();
-                status[i] = AlarmStatus.UNDEFINED.ordinal();
-                message[i] = "not connected";
-            }
-            if(gotTimeStamp)
-            {
-                timeStamp.getCurrentTime();
-                secondsPastEpoch[i] = 0;
-                nanoseconds[i] = 0;
-                userTag[i] = 0;
-            }
+            properties.reset(i);
         }
     }
 
+    private void bind(PVStructure pvst,int index)
+    {
+        if(properties.isBound(pvst,index)) return;
+        pvChannelValue[index] = pvst.getSubField("value");
+        properties.bind(pvst,index);
+    }
+
     /**
      * Update NTMultiChannel fields.
      */
@@ -226,19 +230,9 @@ public class PvaClientNTMultiData
             if(pvst==null) {
                 unionValue[i].set(null);
             } else {
-                unionValue[i].set(pvst.getSubField("value"));
-                if(gotAlarm)
-                {
-                    severity[i] = pvst.getSubField(PVInt.class,"alarm.severity").get();
-                    status[i] = pvst.getSubField(PVInt.class,"alarm.status").get();
-                    message[i] = pvst.getSubField(PVString.class,"alarm.message").get();
-                }
-                if(gotTimeStamp)
-                {
-                    secondsPastEpoch[i] = pvst.getSubField(PVLong.class,"timeStamp.secondsPastEpoch").get();
-                    nanoseconds[i] = pvst.getSubField(PVInt.class,"timeStamp.nanoseconds").get();
-                    userTag[i] = pvst.getSubField(PVInt.class,"timeStamp.userTag").get();
-                }
+                bind(pvst,i);
+                unionValue[i].set(pvChannelValue[i]);
+                properties.update(i);
             }
         }
 
@@ -249,74 +243,18 @@ public class PvaClientNTMultiData
      */
     public TimeStamp getTimeStamp()
     {
-        pvTimeStamp.get(timeStamp);
         return timeStamp;
     }
     /**
      * Get the  NTMultiChannel.
+     * The same NTMultiChannel is returned by every call and is updated by the next get or poll.
      * @return The value.
      */
     public NTMultiChannel getNTMultiChannel()
     {
-        PVStructure pvStructure = pvDataCreate.createPVStructure(ntMultiChannelStructure);
-        NTMultiChannel ntMultiChannel = NTMultiChannel.wrap(pvStructure);
-        convert.fromStringArray(ntMultiChannel.getChannelName(),0,nchannel,pvaClientMultiChannel.getChannelNames(),0);
-        PVUnion[] val = new PVUnion[nchannel];
-        for(int i=0; i<nchannel; ++i) val[i] = unionValue[i];
-        PVUnionArray array = ntMultiChannel.getValue();
-        array.setLength(nchannel);
-        array.get(0, nchannel, unionArrayData);
-        for(int i=0; i<nchannel; ++i) unionArrayData.data[i] = val[i];
         boolean[] connected = pvaClientMultiChannel.getIsConnected();
-        boolean[] isConnected = new boolean[nchannel];
-        for(int i=0; i<nchannel; ++i) isConnected[i] = connected[i];
-        PVBooleanArray pvBooleanArray = ntMultiChannel.getIsConnected();
-        pvBooleanArray.setLength(nchannel);
-        pvBooleanArray.get(0, nchannel, booleanArrayData);
-        for(int i=0; i<nchannel; ++i) booleanArrayData.data[i] = isConnected[i];
-        if(gotAlarm)
-        {
-            int[] sev = new int[nchannel];
-            for(int i=0; i<nchannel; ++i) sev[i] = severity[i];
-            PVIntArray pvIntArray = ntMultiChannel.getSeverity();
-            pvIntArray.setLength(nchannel);
-            pvIntArray.get(0, nchannel, intArrayData);
-            for(int i=0; i<nchannel; ++i) intArrayData.data[i] = sev[i];
-            int[] sta = new int[nchannel];
-            for(int i=0; i<nchannel; ++i) sta[i] = status[i];
-            pvIntArray = ntMultiChannel.getStatus();
-            pvIntArray.setLength(nchannel);
-            pvIntArray.get(0, nchannel, intArrayData);
-            for(int i=0; i<nchannel; ++i) intArrayData.data[i] = sev[i];
-            String[] mes = new String[nchannel];
-            for(int i=0; i<nchannel; ++i) mes[i] = message[i];
-            PVStringArray pvStringArray = ntMultiChannel.getMessage();
-            pvStringArray.setLength(nchannel);
-            pvStringArray.get(0, nchannel, stringArrayData);
-            for(int i=0; i<nchannel; ++i) stringArrayData.data[i] = mes[i];
-        }
-        if(gotTimeStamp)
-        {
-            long[] sec = new long[nchannel];
-            for(int i=0; i<nchannel; ++i) sec[i] = secondsPastEpoch[i];
-            PVLongArray pvLongArray = ntMultiChannel.getSecondsPastEpoch();
-            pvLongArray.setLength(nchannel);
-            pvLongArray.get(0, nchannel, longArrayData);
-            for(int i=0; i<nchannel; ++i) longArrayData.data[i] = sec[i];
-            int[]  nano = new int[nchannel];
-            for(int i=0; i<nchannel; ++i) nano[i] = nanoseconds[i];
-            PVIntArray pvIntArray = ntMultiChannel.getNanoseconds();
-            pvIntArray.setLength(nchannel);
-            pvIntArray.get(0, nchannel, intArrayData);
-            for(int i=0; i<nchannel; ++i) intArrayData.data[i] = nano[i];
-            int[] tag = new int[nchannel];
-            for(int i=0; i<nchannel; ++i) tag[i] = userTag[i];
-            pvIntArray = ntMultiChannel.getUserTag();
-            pvIntArray.setLength(nchannel);
-            pvIntArray.get(0, nchannel, intArrayData);
-            for(int i=0; i<nchannel; ++i) intArrayData.data[i] = tag[i];
-        }
+        System.arraycopy(connected,0,isConnected,0,nchannel);
+        if(pvTimeStamp.isAttached()) pvTimeStamp.set(timeStamp);
         return ntMultiChannel;
     }
 };
-
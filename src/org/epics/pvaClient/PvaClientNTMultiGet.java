@@ -9,9 +9,12 @@ package org.epics.pvaClient;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.StatusFactory;
 import org.epics.pvdata.pv.FieldCreate;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Status.StatusType;
+import org.epics.pvdata.pv.StatusCreate;
 import org.epics.pvdata.pv.Union;
 
 /**
@@ -22,14 +25,21 @@ import org.epics.pvdata.pv.Union;
 public class PvaClientNTMultiGet
 {
     private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+    private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
+    private static final Status okStatus = statusCreate.getStatusOK();
+    private static final Status notConnectedStatus = statusCreate.createStatus(StatusType.ERROR,"channel not connected",null);
+    private static final Status stillActiveStatus = statusCreate.createStatus(StatusType.ERROR,"previous get still active",null);
     private final PvaClientMultiChannel pvaClientMultiChannel;
-    private final PvaClientChannel[] pvaClientChannelArray;
-    private final int nchannel;
+    private final PvaClientMultiMembership membership;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private int nchannel;
     private final ReentrantLock lock = new ReentrantLock();
 
     private final PVStructure pvRequest;
     private PvaClientNTMultiData pvaClientNTMultiData;
     private PvaClientGet[] pvaClientGet;
+    private Status[] channelStatus;
+    private double[] latency;
     private boolean isConnected = false;
     private boolean isDestroyed = false;
 
@@ -67,20 +77,19 @@ public class PvaClientNTMultiGet
      */
     public void connect()
     {
+        sync();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
-        String request = "value";
-        if(pvRequest.getSubField("field.alarm")!=null) request += ",alarm";
-        if(pvRequest.getSubField("field.timeStamp")!=null) request += ",timeStamp";
+        String request = getRequest();
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientGet[i]==null) {
                 pvaClientGet[i] = pvaClientChannelArray[i].createGet(request);
                 pvaClientGet[i].issueConnect();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
                 Status status = pvaClientGet[i].waitConnect();
                 if(status.isOK()) continue;
                 String message = "channel "
@@ -92,41 +101,157 @@ public class PvaClientNTMultiGet
         }
         this.isConnected = true;
     }
-    /**
-     * get data for each channel.
+    private String getRequest()
+    {
+        String request = "value";
+        if(pvRequest.getSubField("field.alarm")!=null) request += ",alarm";
+        if(pvRequest.getSubField("field.timeStamp")!=null) request += ",timeStamp";
+        return request;
+    }
+    /*
+     * Create a channelGet for each connected channel and wait for the connections until the deadline.
+     * The result of each channel is put in channelStatus instead of throwing.
+     * A channelGet that is not connected by the deadline is kept and waited for by the next call.
      */
-    public void get()
+    private void connect(long deadline)
     {
-        if(!isConnected) connect();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
-
+        String request = getRequest();
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
-                pvaClientGet[i].issueGet();
+            if(!isConnected[i]) {
+                channelStatus[i] = notConnectedStatus;
+                continue;
+            }
+            channelStatus[i] = okStatus;
+            if(pvaClientGet[i]!=null) continue;
+            try {
+                pvaClientGet[i] = pvaClientChannelArray[i].createGet(request);
+                pvaClientGet[i].issueConnect();
+            } catch(RuntimeException e) {
+                channelStatus[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+                if(pvaClientGet[i]!=null) pvaClientGet[i].destroy();
+                pvaClientGet[i] = null;
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
-                Status status = pvaClientGet[i].waitGet();
-                if(status.isOK()) continue;
+            if(!channelStatus[i].isOK() || !pvaClientGet[i].isConnectActive()) continue;
+            double remaining = (deadline - System.nanoTime())/1e9;
+            // a remaining time of 0 would wait forever.
+            Status status = pvaClientGet[i].waitConnect(Math.max(remaining,1e-9));
+            if(status.isOK()) continue;
+            channelStatus[i] = status;
+            // a connect that failed is created again by the next call.
+            if(!pvaClientGet[i].isConnectActive()) {
+                pvaClientGet[i].destroy();
+                pvaClientGet[i] = null;
+            }
+        }
+    }
+    /**
+     * get data for each channel.
+     */
+    public void get()
+    {
+        sync();
+        if(!isConnected) connect();
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                pvaClientGet[i].issueGet();
+            }
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                final PvaClientGet get = pvaClientGet[i];
+                Status status = PvaClientMultiShard.managedWait(() -> !get.isGetActive(),() -> get.waitGet());
+                if(status.isOK()) return;
                 String message = "channel "
                         + pvaClientChannelArray[i].getChannelName()
                         + " PvaChannelGet::waitGet "
                         + status.getMessage();
                 throw new RuntimeException(message);
             }
+        });
+        pvaClientNTMultiData.startDeltaTime();
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                pvaClientNTMultiData.setPVStructure(pvaClientGet[i].getData().getPVStructure(),i);
+            }
         }
+        pvaClientNTMultiData.endDeltaTime();
+    }
+    /**
+     * get data for each channel with a deadline for the whole batch.
+     * Unlike get this does not throw if a channel fails.
+     * A channel that is not connected, fails, or does not complete before the deadline has no value,
+     * and getStatus and getLatency give the result of each channel.
+     * The deadline includes the time to connect the channelGet of each channel.
+     * A channel whose get is still active from an earlier call is not issued again until it completes.
+     * @param timeout The time in seconds for all channels to complete.
+     */
+    public void get(double timeout)
+    {
+        sync();
+        final long deadline = System.nanoTime() + (long)(timeout*1e9);
+        connect(deadline);
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            latency[i] = Double.NaN;
+            if(!channelStatus[i].isOK()) return;
+            if(pvaClientGet[i].isGetActive()) {
+                channelStatus[i] = stillActiveStatus;
+                return;
+            }
+            try {
+                pvaClientGet[i].issueGet();
+                channelStatus[i] = okStatus;
+            } catch(RuntimeException e) {
+                channelStatus[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+            }
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(!channelStatus[i].isOK()) return;
+            try {
+                double remaining = (deadline - System.nanoTime())/1e9;
+                // a remaining time of 0 would wait forever.
+                final PvaClientGet get = pvaClientGet[i];
+                Status status = PvaClientMultiShard.managedWait(
+                    () -> !get.isGetActive(),
+                    () -> get.waitGet(Math.max(remaining,1e-9)));
+                channelStatus[i] = status;
+                if(status.isOK()) latency[i] = pvaClientGet[i].getLatency();
+            } catch(RuntimeException e) {
+                channelStatus[i] = statusCreate.createStatus(StatusType.ERROR,e.getMessage(),null);
+            }
+        });
         pvaClientNTMultiData.startDeltaTime();
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(channelStatus[i].isOK()) {
                 pvaClientNTMultiData.setPVStructure(pvaClientGet[i].getData().getPVStructure(),i);
             }
         }
         pvaClientNTMultiData.endDeltaTime();
     }
+    /**
+     * Get the status of each channel for the last call to get(timeout).
+     * @return The shared array of status.
+     */
+    public Status[] getStatus()
+    {
+        return channelStatus;
+    }
+    /**
+     * Get the latency of each channel for the last call to get(timeout).
+     * @return The shared array of the time in seconds from issue to completion, NaN if the get did not complete.
+     */
+    public double[] getLatency()
+    {
+        return latency;
+    }
     /**
      * get the data.
      * @return the pvaClientNTMultiData.
@@ -136,6 +261,23 @@ public class PvaClientNTMultiGet
         return pvaClientNTMultiData;
     }
 
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientGet = PvaClientMultiMembership.remap(pvaClientGet,map,get -> get.destroy());
+        channelStatus = PvaClientMultiMembership.remap(channelStatus,map,null);
+        for(int i=0; i<nchannel; ++i) if(channelStatus[i]==null) channelStatus[i] = okStatus;
+        latency = PvaClientMultiMembership.remap(latency,map,Double.NaN);
+        pvaClientNTMultiData.resize(pvaClientChannelArray);
+        isConnected = false;
+    }
+
     private PvaClientNTMultiGet(
             Union  u,
             PvaClientMultiChannel pvaClientMultiChannel,
@@ -145,6 +287,7 @@ public class PvaClientNTMultiGet
         if(PvaClient.getDebug()) System.out.println("PvaClientNTMultiGet::PvaClientNTMultiGet()");
         this.pvaClientMultiChannel = pvaClientMultiChannel;
         this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
         this.pvRequest = pvRequest;
         nchannel = pvaClientChannelArray.length;
         pvaClientNTMultiData = PvaClientNTMultiData.create(
@@ -153,9 +296,13 @@ public class PvaClientNTMultiGet
                 pvaClientChannelArray,
                 pvRequest);
         pvaClientGet = new PvaClientGet[nchannel];
+        channelStatus = new Status[nchannel];
+        latency = new double[nchannel];
         for(int i=0; i<nchannel; ++i)
         {
             pvaClientGet[i] = null;
+            channelStatus[i] = okStatus;
+            latency[i] = Double.NaN;
         }
     }
 };
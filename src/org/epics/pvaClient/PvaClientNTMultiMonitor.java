@@ -6,11 +6,10 @@
 
 package org.epics.pvaClient;
 
+import java.util.BitSet;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.epics.pvdata.factory.FieldFactory;
-import org.epics.pvdata.property.TimeStamp;
-import org.epics.pvdata.property.TimeStampFactory;
 import org.epics.pvdata.pv.FieldCreate;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Status;
@@ -25,17 +24,17 @@ public class PvaClientNTMultiMonitor
 {
     private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
     private final PvaClientMultiChannel pvaClientMultiChannel;
-    private final PvaClientChannel[] pvaClientChannelArray;
+    private final PvaClientMultiMembership membership;
+    private PvaClientChannel[] pvaClientChannelArray;
     private final PVStructure pvRequest;
-    private final int nchannel;
+    private int nchannel;
     private final ReentrantLock lock = new ReentrantLock();
+    private final PvaClientMonitorNotifier notifier;
 
     private PvaClientNTMultiData pvaClientNTMultiData;
     private PvaClientMonitor[] pvaClientMonitor;
     private boolean isConnected = false;
     private boolean isDestroyed = false;
-    private TimeStamp start = TimeStampFactory.create();
-    private TimeStamp now = TimeStampFactory.create();
 
     /**
      * Factory method that creates a PvaClientNTMultiMonitor.
@@ -62,6 +61,7 @@ public class PvaClientNTMultiMonitor
         if(PvaClient.getDebug()) System.out.println("PvaClientNTMultiMonitor::PvaClientNTMultiMonitor()");
         this.pvaClientMultiChannel = pvaClientMultiChannel;
         this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
         this.pvRequest = pvRequest;
         nchannel = pvaClientChannelArray.length;
         pvaClientNTMultiData = PvaClientNTMultiData.create(
@@ -70,6 +70,7 @@ public class PvaClientNTMultiMonitor
                 pvaClientChannelArray,
                 pvRequest);
         pvaClientMonitor = new PvaClientMonitor[nchannel];
+        notifier = new PvaClientMonitorNotifier(nchannel);
         for(int i=0; i<nchannel; ++i)
         {
             pvaClientMonitor[i] = null;
@@ -94,6 +95,7 @@ public class PvaClientNTMultiMonitor
      */
     public void connect()
     {
+        sync();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
         String request = "value";
         if(pvRequest.getSubField("field.alarm")!=null) request += ",alarm";
@@ -101,14 +103,15 @@ public class PvaClientNTMultiMonitor
 
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientMonitor[i]==null) {
                 pvaClientMonitor[i] = pvaClientChannelArray[i].createMonitor(request);
+                pvaClientMonitor[i].setNotifier(notifier,i);
                 pvaClientMonitor[i].issueConnect();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
                 Status status = pvaClientMonitor[i].waitConnect();
                 if(status.isOK()) continue;
                 String message = "channel "
@@ -120,28 +123,34 @@ public class PvaClientNTMultiMonitor
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) pvaClientMonitor[i].start();
+            if(isConnected[i] && pvaClientMonitor[i]!=null) pvaClientMonitor[i].start();
         }
+        // events that arrived before the notifier was set are found by the first poll.
+        notifier.ready(0,nchannel);
         this.isConnected = true;
     }
     /**
-     * poll each channel.
-     * If any has new data it is used to update the double[].
+     * poll each channel that has had an event since the last poll.
+     * If any has new data it is used to update the data.
      * @return (false,true) if (no, at least one) value was updated.
      */
     public boolean poll()
     {
+        sync();
         if(!isConnected) connect();
         boolean result = false;
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
         pvaClientNTMultiData.startDeltaTime();
-        for(int i=0; i<nchannel; ++i)
+        BitSet ready = notifier.take();
+        for(int i=ready.nextSetBit(0); i>=0 && i<nchannel; i=ready.nextSetBit(i+1))
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
                 if(pvaClientMonitor[i].poll()) {
                     pvaClientNTMultiData.setPVStructure(
                             pvaClientMonitor[i].getData().getPVStructure(),i);
                     pvaClientMonitor[i].releaseEvent();
+                    // more elements may be queued.
+                    notifier.ready(i);
                     result = true;
                 }
             }
@@ -152,23 +161,40 @@ public class PvaClientNTMultiMonitor
     /**
      * Wait until poll returns true.
      * @param waitForEvent The time to keep trying.
-     * A thread sleep of .1 seconds occurs between each call to poll.
+     * The caller is woken as soon as any channel has an event.
      * @return (false,true) if (timeOut, poll returned true).
      */
     public boolean waitEvent(double waitForEvent)
     {
         if(poll()) return true;
-        start.getCurrentTime();
+        long deadline = System.nanoTime() + (long)(waitForEvent*1e9);
         while(true) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {}
+            double timeout = (deadline - System.nanoTime())/1e9;
+            if(!notifier.waitReady(timeout)) return false;
             if(poll()) return true;
-            now.getCurrentTime();
-            double diff = now.diff(now, start);
-            if(diff>=waitForEvent) break;
         }
-        return false;
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientMonitor = PvaClientMultiMembership.remap(pvaClientMonitor,map,monitor -> {
+            monitor.setNotifier(null,0);
+            monitor.destroy();
+        });
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].setNotifier(notifier,i);
+        }
+        pvaClientNTMultiData.resize(pvaClientChannelArray);
+        // forget the old indices and poll each channel once.
+        notifier.take();
+        notifier.ready(0,nchannel);
+        isConnected = false;
     }
     /**
      * get the data.
@@ -0,0 +1,156 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.pvdata.property.AlarmSeverity;
+import org.epics.pvdata.property.AlarmStatus;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVLongArray;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.PVStructure;
+
+/**
+ * The alarm and timeStamp of each channel for PvaClientNTMultiData and PvaClientNTScalarMultiData.
+ * The arrays are shared with the fields of the NTMultiChannel or NTScalarMultiChannel,
+ * and the fields of each channel are looked up again only if the channel data changes.
+ */
+class PvaClientNTMultiProperties
+{
+    private final boolean gotAlarm;
+    private final boolean gotTimeStamp;
+    private int[] severity;
+    private int[] status;
+    private String[] message;
+    private long[] secondsPastEpoch;
+    private int[] nanoseconds;
+    private int[] userTag;
+    private PVStructure[] boundPVStructure;
+    private PVInt[] pvSeverity;
+    private PVInt[] pvStatus;
+    private PVString[] pvMessage;
+    private PVLong[] pvSecondsPastEpoch;
+    private PVInt[] pvNanoseconds;
+    private PVInt[] pvUserTag;
+
+    PvaClientNTMultiProperties(boolean gotAlarm,boolean gotTimeStamp)
+    {
+        this.gotAlarm = gotAlarm;
+        this.gotTimeStamp = gotTimeStamp;
+    }
+
+    /**
+     * Allocate the arrays for nchannel channels and share them with the fields.
+     * Every channel starts as not connected.
+     * The alarm fields are only used if the pvRequest selected alarm,
+     * and the timeStamp fields only if it selected timeStamp.
+     */
+    void allocate(
+            int nchannel,
+            PVIntArray pvSeverityArray,
+            PVIntArray pvStatusArray,
+            PVStringArray pvMessageArray,
+            PVLongArray pvSecondsPastEpochArray,
+            PVIntArray pvNanosecondsArray,
+            PVIntArray pvUserTagArray)
+    {
+        boundPVStructure = new PVStructure[nchannel];
+        if(gotAlarm) {
+            severity = new int[nchannel];
+            status = new int[nchannel];
+            message = new String[nchannel];
+            pvSeverity = new PVInt[nchannel];
+            pvStatus = new PVInt[nchannel];
+            pvMessage = new PVString[nchannel];
+            pvSeverityArray.shareData(severity);
+            pvStatusArray.shareData(status);
+            pvMessageArray.shareData(message);
+        }
+        if(gotTimeStamp) {
+            secondsPastEpoch = new long[nchannel];
+            nanoseconds = new int[nchannel];
+            userTag = new int[nchannel];
+            pvSecondsPastEpoch = new PVLong[nchannel];
+            pvNanoseconds = new PVInt[nchannel];
+            pvUserTag = new PVInt[nchannel];
+            pvSecondsPastEpochArray.shareData(secondsPastEpoch);
+            pvNanosecondsArray.shareData(nanoseconds);
+            pvUserTagArray.shareData(userTag);
+        }
+        for(int i=0; i<nchannel; ++i) reset(i);
+    }
+
+    /**
+     * Set the alarm of a channel to not connected.
+     */
+    void setNotConnected(int index)
+    {
+        if(!gotAlarm) return;
+        severity[index] = AlarmSeverity.INVALID.ordinal();
+        status[index] = AlarmStatus.UNDEFINED.ordinal();
+        message[index] = "not connected";
+    }
+
+    /**
+     * Set the alarm of a channel to not connected and clear its timeStamp.
+     */
+    void reset(int index)
+    {
+        setNotConnected(index);
+        if(!gotTimeStamp) return;
+        secondsPastEpoch[index] = 0;
+        nanoseconds[index] = 0;
+        userTag[index] = 0;
+    }
+
+    /**
+     * Are the fields of pvst already bound.
+     * If not the caller looks up its own fields and then calls bind.
+     */
+    boolean isBound(PVStructure pvst,int index)
+    {
+        return boundPVStructure[index]==pvst;
+    }
+
+    void bind(PVStructure pvst,int index)
+    {
+        if(gotAlarm)
+        {
+            pvSeverity[index] = pvst.getSubField(PVInt.class,"alarm.severity");
+            pvStatus[index] = pvst.getSubField(PVInt.class,"alarm.status");
+            pvMessage[index] = pvst.getSubField(PVString.class,"alarm.message");
+        }
+        if(gotTimeStamp)
+        {
+            pvSecondsPastEpoch[index] = pvst.getSubField(PVLong.class,"timeStamp.secondsPastEpoch");
+            pvNanoseconds[index] = pvst.getSubField(PVInt.class,"timeStamp.nanoseconds");
+            pvUserTag[index] = pvst.getSubField(PVInt.class,"timeStamp.userTag");
+        }
+        boundPVStructure[index] = pvst;
+    }
+
+    /**
+     * Copy the alarm and timeStamp of the bound data of a channel.
+     */
+    void update(int index)
+    {
+        if(gotAlarm)
+        {
+            severity[index] = pvSeverity[index].get();
+            status[index] = pvStatus[index].get();
+            message[index] = pvMessage[index].get();
+        }
+        if(gotTimeStamp)
+        {
+            secondsPastEpoch[index] = pvSecondsPastEpoch[index].get();
+            nanoseconds[index] = pvNanoseconds[index].get();
+            userTag[index] = pvUserTag[index].get();
+        }
+    }
+}
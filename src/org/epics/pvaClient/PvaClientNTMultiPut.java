@@ -31,8 +31,9 @@ public class PvaClientNTMultiPut
     private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
     private static final Convert convert = ConvertFactory.getConvert();
     private final PvaClientMultiChannel pvaClientMultiChannel;
-    private final PvaClientChannel[] pvaClientChannelArray;
-    private final int nchannel;
+    private final PvaClientMultiMembership membership;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private int nchannel;
     private final ReentrantLock lock = new ReentrantLock();
 
     private PVUnion[] unionValue;
@@ -72,17 +73,18 @@ public class PvaClientNTMultiPut
      */
     public void connect()
     {
+        sync();
         boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]==null) {
                 pvaClientPut[i] = pvaClientChannelArray[i].createPut();
                 pvaClientPut[i].issueConnect();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]!=null) {
                 Status status = pvaClientPut[i].waitConnect();
                 if(status.isOK()) continue;
                 String message = "channel "
@@ -92,15 +94,16 @@ public class PvaClientNTMultiPut
                 throw new RuntimeException(message);
             }
         }
+        // only the channels without a value, i.e. that were just connected, are read.
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]!=null && value[i]==null) {
                 pvaClientPut[i].issueGet();
             }
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]!=null && value[i]==null) {
                 Status status = pvaClientPut[i].waitGet();
                 if(status.isOK()) continue;
                 String message = "channel "
@@ -112,7 +115,7 @@ public class PvaClientNTMultiPut
         }
         for(int i=0; i<nchannel; ++i)
         {
-            if(isConnected[i]) {
+            if(isConnected[i] && pvaClientPut[i]!=null && value[i]==null) {
                 value[i] = pvaClientPut[i].getData().getValue();
                 FieldBuilder fb = fieldCreate.createFieldBuilder();
                 fb.add("value",value[i].getField());
@@ -127,6 +130,7 @@ public class PvaClientNTMultiPut
      */
     public PVUnion[] getValues()
     {
+        sync();
         if(!isConnected) connect();
         return unionValue;
     }
@@ -135,24 +139,36 @@ public class PvaClientNTMultiPut
 '    */
     public void put()
     {
+        sync();
         if(!isConnected) connect();
-        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
-        for(int i=0; i<nchannel; ++i)
-        {
-            if(isConnected[i]) {
-                convert.copy(unionValue[i].get(),value[i]);
-                pvaClientPut[i].issuePut();
-            }
-            if(isConnected[i]) {
-                Status status = pvaClientPut[i].waitPut();
-                if(status.isOK())  continue;
-                String message = "channel "
-                        + pvaClientChannelArray[i].getChannelName()
-                        + " PvaChannelPut::waitPut "
-                        + status.getMessage();
-                throw new RuntimeException(message);
-            }
-        }
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(!isConnected[i] || value[i]==null) return;
+            convert.copy(unionValue[i].get(),value[i]);
+            pvaClientPut[i].issuePut();
+            Status status = pvaClientPut[i].waitPut();
+            if(status.isOK())  return;
+            String message = "channel "
+                    + pvaClientChannelArray[i].getChannelName()
+                    + " PvaChannelPut::waitPut "
+                    + status.getMessage();
+            throw new RuntimeException(message);
+        });
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     * The values of the other channels are kept.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientPut = PvaClientMultiMembership.remap(pvaClientPut,map,put -> put.destroy());
+        value = PvaClientMultiMembership.remap(value,map,null);
+        unionValue = PvaClientMultiMembership.remap(unionValue,map,null);
+        isConnected = false;
     }
 
     private PvaClientNTMultiPut(
@@ -162,6 +178,7 @@ public class PvaClientNTMultiPut
         if(PvaClient.getDebug()) System.out.println("PvaClientNTMultiPut::PvaClientNTMultiPut()");
         this.pvaClientMultiChannel = pvaClientMultiChannel;
         this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
         nchannel = pvaClientChannelArray.length;
         unionValue = new PVUnion[nchannel];
         value = new PVField[nchannel];
@@ -0,0 +1,410 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.nt.NTScalarMultiChannel;
+import org.epics.nt.NTScalarMultiChannelBuilder;
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.property.PVTimeStamp;
+import org.epics.pvdata.property.PVTimeStampFactory;
+import org.epics.pvdata.property.TimeStamp;
+import org.epics.pvdata.property.TimeStampFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVBooleanArray;
+import org.epics.pvdata.pv.PVByteArray;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVFloatArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVLongArray;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVShortArray;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+
+
+/**
+ * This provides NTScalarMultiChannel data for both PvaClientNTScalarMultiGet and PvaClientNTScalarMultiMonitor.
+ * <p>
+ * All channels have the same scalar type.
+ * The value of each channel is stored directly into one primitive array,
+ * which is shared with the value field of the NTScalarMultiChannel,
+ * so there is no PVUnion for each channel.
+ * The value field of each channel must be a scalar.
+ * If its type differs from the scalar type of this it is converted, except that pvBoolean requires a boolean.
+ * <p>
+ * A channel keeps the value, alarm, and timeStamp of the last data it received.
+ * A channel that is not connected has severity INVALID and message "not connected".
+ */
+public class PvaClientNTScalarMultiData
+{
+    /**
+     * Factory method that creates a PvaClientNTScalarMultiData.
+     * Normally only called by PvaClientNTScalarMultiGet and PvaClientNTScalarMultiMonitor.
+     * @param scalarType The scalar type of the value of all channels.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvaClientChannelArray The PvaClientChannel array.
+     * @param pvRequest The pvRequest for each channel.
+     * @return The interface.
+     */
+    public static PvaClientNTScalarMultiData create(
+            ScalarType scalarType,
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[]  pvaClientChannelArray,
+            PVStructure pvRequest)
+    {
+        return new PvaClientNTScalarMultiData(scalarType,pvaClientMultiChannel,pvaClientChannelArray,pvRequest);
+    }
+
+    private PvaClientNTScalarMultiData(
+            ScalarType scalarType,
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[]  pvaClientChannelArray,
+            PVStructure pvRequest)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientNTScalarMultiData::PvaClientNTScalarMultiData()");
+        this.scalarType = scalarType;
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        nchannel = pvaClientChannelArray.length;
+        PVField pvValue = pvRequest.getSubField("field.value");
+        if(pvValue==null) {
+            throw new RuntimeException("pvRequest did not specify value");
+        }
+        NTScalarMultiChannelBuilder builder = NTScalarMultiChannel.createBuilder();
+        builder.value(scalarType).addIsConnected();
+        if(pvRequest.getSubField("field.alarm")!=null)
+        {
+            gotAlarm = true;
+            builder.addAlarm();
+            builder.addSeverity();
+            builder.addStatus();
+            builder.addMessage();
+        }
+        if(pvRequest.getSubField("field.timeStamp")!=null) {
+            gotTimeStamp = true;
+            builder.addTimeStamp();
+            builder.addSecondsPastEpoch();
+            builder.addNanoseconds();
+            builder.addUserTag();
+        }
+        PVStructure pvStructure = pvDataCreate.createPVStructure(builder.createStructure());
+        ntScalarMultiChannel = NTScalarMultiChannel.wrap(pvStructure);
+        properties = new PvaClientNTMultiProperties(gotAlarm,gotTimeStamp);
+        if(gotTimeStamp) {
+            PVField pvTop = pvStructure.getSubField("timeStamp");
+            if(pvTop!=null) pvTimeStamp.attach(pvTop);
+        }
+        allocate();
+    }
+
+    /*
+     * Allocate the arrays for nchannel channels.
+     * The NTScalarMultiChannel shares the arrays of this class,
+     * so endDeltaTime writes the result directly into it.
+     */
+    private void allocate()
+    {
+        topPVStructure = new PVStructure[nchannel];
+        pvChannelValue = new PVScalar[nchannel];
+        isConnected = new boolean[nchannel];
+        PVScalarArray pvValue = ntScalarMultiChannel.getValue();
+        switch(scalarType) {
+        case pvBoolean:
+            booleanValue = new boolean[nchannel];
+            ((PVBooleanArray)pvValue).shareData(booleanValue);
+            break;
+        case pvByte:
+        case pvUByte:
+            byteValue = new byte[nchannel];
+            ((PVByteArray)pvValue).shareData(byteValue);
+            break;
+        case pvShort:
+        case pvUShort:
+            shortValue = new short[nchannel];
+            ((PVShortArray)pvValue).shareData(shortValue);
+            break;
+        case pvInt:
+        case pvUInt:
+            intValue = new int[nchannel];
+            ((PVIntArray)pvValue).shareData(intValue);
+            break;
+        case pvLong:
+        case pvULong:
+            longValue = new long[nchannel];
+            ((PVLongArray)pvValue).shareData(longValue);
+            break;
+        case pvFloat:
+            floatValue = new float[nchannel];
+            for(int i=0; i<nchannel; ++i) floatValue[i] = Float.NaN;
+            ((PVFloatArray)pvValue).shareData(floatValue);
+            break;
+        case pvDouble:
+            doubleValue = new double[nchannel];
+            for(int i=0; i<nchannel; ++i) doubleValue[i] = Double.NaN;
+            ((PVDoubleArray)pvValue).shareData(doubleValue);
+            break;
+        case pvString:
+            stringValue = new String[nchannel];
+            for(int i=0; i<nchannel; ++i) stringValue[i] = "";
+            ((PVStringArray)pvValue).shareData(stringValue);
+            break;
+        }
+        ntScalarMultiChannel.getChannelName().shareData(pvaClientMultiChannel.getChannelNames().clone());
+        ntScalarMultiChannel.getIsConnected().shareData(isConnected);
+        properties.allocate(
+            nchannel,
+            ntScalarMultiChannel.getSeverity(),
+            ntScalarMultiChannel.getStatus(),
+            ntScalarMultiChannel.getMessage(),
+            ntScalarMultiChannel.getSecondsPastEpoch(),
+            ntScalarMultiChannel.getNanoseconds(),
+            ntScalarMultiChannel.getUserTag());
+    }
+
+    /**
+     * Follow channels added to or removed from the multi channel.
+     * Called by PvaClientNTScalarMultiGet and PvaClientNTScalarMultiMonitor.
+     * The data of all channels is cleared.
+     * @param pvaClientChannelArray The new PvaClientChannel array.
+     */
+    void resize(PvaClientChannel[] pvaClientChannelArray)
+    {
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        nchannel = pvaClientChannelArray.length;
+        allocate();
+    }
+
+    void setPVStructure(PVStructure pvStructure,int index)
+    {
+        topPVStructure[index] = pvStructure;
+    }
+
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private static final Convert convert = ConvertFactory.getConvert();
+    private final ScalarType scalarType;
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private int nchannel;
+
+    private PVStructure[] topPVStructure;
+    private boolean gotAlarm = false;
+    private boolean gotTimeStamp = false;
+
+    private final NTScalarMultiChannel ntScalarMultiChannel;
+    // only the array for scalarType is allocated.
+    private boolean[] booleanValue;
+    private byte[] byteValue;
+    private short[] shortValue;
+    private int[] intValue;
+    private long[] longValue;
+    private float[] floatValue;
+    private double[] doubleValue;
+    private String[] stringValue;
+    private boolean[] isConnected;
+    private PvaClientNTMultiProperties properties;
+    // the value field of each channel, looked up again only if the channel data changes.
+    private PVScalar[] pvChannelValue;
+    private TimeStamp timeStamp = TimeStampFactory.create();
+    private PVTimeStamp pvTimeStamp = PVTimeStampFactory.create();
+
+    /**
+     * Get the scalar type of the value of all channels.
+     * @return The type.
+     */
+    public ScalarType getScalarType()
+    {
+        return scalarType;
+    }
+
+    /**
+     * Get the number of channels.
+     * @return The number of channels.
+     */
+    public int getNumber()
+    {
+        return nchannel;
+    }
+
+    /**
+     * Set the timeStamp base for computing deltaTimes.
+     */
+    public void startDeltaTime()
+    {
+        timeStamp.getCurrentTime();
+        for(int i=0; i<nchannel; ++i) topPVStructure[i] = null;
+    }
+
+    private void bind(PVStructure pvst,int index)
+    {
+        if(properties.isBound(pvst,index)) return;
+        PVScalar pvValue = pvst.getSubField(PVScalar.class,"value");
+        String channelName = pvaClientChannelArray[index].getChannelName();
+        if(pvValue==null) {
+            throw new RuntimeException("channel " + channelName + " value is not a scalar");
+        }
+        if(scalarType==ScalarType.pvBoolean && !(pvValue instanceof PVBoolean)) {
+            throw new RuntimeException("channel " + channelName + " value is not boolean");
+        }
+        pvChannelValue[index] = pvValue;
+        properties.bind(pvst,index);
+    }
+
+    private void readValue(int index)
+    {
+        PVScalar pvValue = pvChannelValue[index];
+        switch(scalarType) {
+        case pvBoolean: booleanValue[index] = ((PVBoolean)pvValue).get(); break;
+        case pvByte:
+        case pvUByte: byteValue[index] = convert.toByte(pvValue); break;
+        case pvShort:
+        case pvUShort: shortValue[index] = convert.toShort(pvValue); break;
+        case pvInt:
+        case pvUInt: intValue[index] = convert.toInt(pvValue); break;
+        case pvLong:
+        case pvULong: longValue[index] = convert.toLong(pvValue); break;
+        case pvFloat: floatValue[index] = convert.toFloat(pvValue); break;
+        case pvDouble: doubleValue[index] = convert.toDouble(pvValue); break;
+        case pvString: stringValue[index] = convert.toString(pvValue); break;
+        }
+    }
+
+    /*
+     * Copy the data of one channel into the shared arrays.
+     */
+    void update(PVStructure pvst,int index)
+    {
+        bind(pvst,index);
+        readValue(index);
+        properties.update(index);
+    }
+
+    /**
+     * Update NTScalarMultiChannel fields for the channels that have new data.
+     */
+    public void endDeltaTime()
+    {
+        for(int i=0; i<nchannel; ++i)
+        {
+            PVStructure pvst = topPVStructure[i];
+            if(pvst!=null) update(pvst,i);
+        }
+    }
+    /**
+     * Get the time when the last get was made.
+     * @return The timeStamp.
+     */
+    public TimeStamp getTimeStamp()
+    {
+        return timeStamp;
+    }
+    /**
+     * Get the NTScalarMultiChannel.
+     * The same NTScalarMultiChannel is returned by every call and is updated by the next get or poll.
+     * @return The value.
+     */
+    public NTScalarMultiChannel getNTScalarMultiChannel()
+    {
+        boolean[] connected = pvaClientMultiChannel.getIsConnected();
+        System.arraycopy(connected,0,isConnected,0,nchannel);
+        for(int i=0; i<nchannel; ++i) {
+            if(!isConnected[i]) properties.setNotConnected(i);
+        }
+        if(pvTimeStamp.isAttached()) pvTimeStamp.set(timeStamp);
+        return ntScalarMultiChannel;
+    }
+
+    private RuntimeException wrongType(String type)
+    {
+        return new RuntimeException("PvaClientNTScalarMultiData scalarType is " + scalarType + " not " + type);
+    }
+
+    /**
+     * Get the values for scalarType pvBoolean.
+     * @return The shared array.
+     */
+    public boolean[] getBooleanArray()
+    {
+        if(booleanValue==null) throw wrongType("boolean");
+        return booleanValue;
+    }
+
+    /**
+     * Get the values for scalarType pvByte or pvUByte.
+     * @return The shared array.
+     */
+    public byte[] getByteArray()
+    {
+        if(byteValue==null) throw wrongType("byte");
+        return byteValue;
+    }
+
+    /**
+     * Get the values for scalarType pvShort or pvUShort.
+     * @return The shared array.
+     */
+    public short[] getShortArray()
+    {
+        if(shortValue==null) throw wrongType("short");
+        return shortValue;
+    }
+
+    /**
+     * Get the values for scalarType pvInt or pvUInt.
+     * @return The shared array.
+     */
+    public int[] getIntArray()
+    {
+        if(intValue==null) throw wrongType("int");
+        return intValue;
+    }
+
+    /**
+     * Get the values for scalarType pvLong or pvULong.
+     * @return The shared array.
+     */
+    public long[] getLongArray()
+    {
+        if(longValue==null) throw wrongType("long");
+        return longValue;
+    }
+
+    /**
+     * Get the values for scalarType pvFloat.
+     * @return The shared array.
+     */
+    public float[] getFloatArray()
+    {
+        if(floatValue==null) throw wrongType("float");
+        return floatValue;
+    }
+
+    /**
+     * Get the values for scalarType pvDouble.
+     * @return The shared array.
+     */
+    public double[] getDoubleArray()
+    {
+        if(doubleValue==null) throw wrongType("double");
+        return doubleValue;
+    }
+
+    /**
+     * Get the values for scalarType pvString.
+     * @return The shared array.
+     */
+    public String[] getStringArray()
+    {
+        if(stringValue==null) throw wrongType("string");
+        return stringValue;
+    }
+};
@@ -0,0 +1,166 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Provides channelGet to multiple channels where the value fields of all channels
+ * are presented as one primitive array of an NTScalarMultiChannel.
+ */
+public class PvaClientNTScalarMultiGet
+{
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final PvaClientMultiMembership membership;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private int nchannel;
+
+    private final PVStructure pvRequest;
+    private final PvaClientNTScalarMultiData pvaClientNTScalarMultiData;
+    private PvaClientGet[] pvaClientGet;
+    private boolean isConnected = false;
+    private boolean isDestroyed = false;
+
+    /**
+     * Factory method that creates a PvaClientNTScalarMultiGet.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvaClientChannelArray The PvaClientChannel array.
+     * @param scalarType The scalar type of the value of all channels.
+     * @param pvRequest The pvRequest for each channel.
+     * @return The interface.
+     */
+    public static PvaClientNTScalarMultiGet create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            ScalarType scalarType,
+            PVStructure   pvRequest)
+    {
+        return new PvaClientNTScalarMultiGet(pvaClientMultiChannel,pvaClientChannelArray,scalarType,pvRequest);
+    }
+
+    private PvaClientNTScalarMultiGet(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            ScalarType scalarType,
+            PVStructure pvRequest)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientNTScalarMultiGet::PvaClientNTScalarMultiGet()");
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        this.pvRequest = pvRequest;
+        nchannel = pvaClientChannelArray.length;
+        pvaClientNTScalarMultiData = PvaClientNTScalarMultiData.create(
+                scalarType,
+                pvaClientMultiChannel,
+                pvaClientChannelArray,
+                pvRequest);
+        pvaClientGet = new PvaClientGet[nchannel];
+    }
+    /** Destroy the channelGets.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientNTScalarMultiGet::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientGet[i]!=null) pvaClientGet[i].destroy();
+            pvaClientGet[i] = null;
+        }
+        pvaClientChannelArray = null;
+    }
+    /**
+     * Create a channelGet for each channel.
+     */
+    public void connect()
+    {
+        sync();
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        String request = "value";
+        if(pvRequest.getSubField("field.alarm")!=null) request += ",alarm";
+        if(pvRequest.getSubField("field.timeStamp")!=null) request += ",timeStamp";
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientGet[i]==null) {
+                pvaClientGet[i] = pvaClientChannelArray[i].createGet(request);
+                pvaClientGet[i].issueConnect();
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                Status status = pvaClientGet[i].waitConnect();
+                if(status.isOK()) continue;
+                String message = "channel "
+                        + pvaClientChannelArray[i].getChannelName()
+                        + " PvaChannelGet::waitConnect "
+                        + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        }
+        this.isConnected = true;
+    }
+    /**
+     * get data for each channel.
+     */
+    public void get()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientNTScalarMultiGet was destroyed");
+        sync();
+        if(!isConnected) connect();
+        final boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                pvaClientGet[i].issueGet();
+            }
+        });
+        pvaClientMultiChannel.forEachChannel(nchannel, i -> {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                Status status = pvaClientGet[i].waitGet();
+                if(status.isOK()) return;
+                String message = "channel "
+                        + pvaClientChannelArray[i].getChannelName()
+                        + " PvaChannelGet::waitGet "
+                        + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        });
+        pvaClientNTScalarMultiData.startDeltaTime();
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientGet[i]!=null) {
+                pvaClientNTScalarMultiData.setPVStructure(pvaClientGet[i].getData().getPVStructure(),i);
+            }
+        }
+        pvaClientNTScalarMultiData.endDeltaTime();
+    }
+    /**
+     * get the data.
+     * @return the pvaClientNTScalarMultiData.
+     */
+    public PvaClientNTScalarMultiData getData()
+    {
+        return pvaClientNTScalarMultiData;
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientGet = PvaClientMultiMembership.remap(pvaClientGet,map,get -> get.destroy());
+        pvaClientNTScalarMultiData.resize(pvaClientChannelArray);
+        isConnected = false;
+    }
+};
@@ -0,0 +1,199 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.BitSet;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Status;
+
+/**
+ * Provides a channel monitor to multiple channels where the value fields of all channels
+ * are presented as one primitive array of an NTScalarMultiChannel.
+ */
+public class PvaClientNTScalarMultiMonitor
+{
+    private final PvaClientMultiChannel pvaClientMultiChannel;
+    private final PvaClientMultiMembership membership;
+    private PvaClientChannel[] pvaClientChannelArray;
+    private final PVStructure pvRequest;
+    private int nchannel;
+    private final PvaClientMonitorNotifier notifier;
+
+    private final PvaClientNTScalarMultiData pvaClientNTScalarMultiData;
+    private PvaClientMonitor[] pvaClientMonitor;
+    private boolean isConnected = false;
+    private boolean isDestroyed = false;
+
+    /**
+     * Factory method that creates a PvaClientNTScalarMultiMonitor.
+     * @param pvaClientMultiChannel The interface to PvaClientMultiChannel.
+     * @param pvaClientChannelArray The PvaClientChannel array.
+     * @param scalarType The scalar type of the value of all channels.
+     * @param pvRequest The pvRequest for each channel.
+     * @return The interface.
+     */
+    public static PvaClientNTScalarMultiMonitor create(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            ScalarType scalarType,
+            PVStructure  pvRequest)
+    {
+        return new PvaClientNTScalarMultiMonitor(pvaClientMultiChannel,pvaClientChannelArray,scalarType,pvRequest);
+    }
+
+    private PvaClientNTScalarMultiMonitor(
+            PvaClientMultiChannel pvaClientMultiChannel,
+            PvaClientChannel[] pvaClientChannelArray,
+            ScalarType scalarType,
+            PVStructure pvRequest)
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientNTScalarMultiMonitor::PvaClientNTScalarMultiMonitor()");
+        this.pvaClientMultiChannel = pvaClientMultiChannel;
+        this.pvaClientChannelArray = pvaClientChannelArray;
+        membership = new PvaClientMultiMembership(pvaClientMultiChannel);
+        this.pvRequest = pvRequest;
+        nchannel = pvaClientChannelArray.length;
+        pvaClientNTScalarMultiData = PvaClientNTScalarMultiData.create(
+                scalarType,
+                pvaClientMultiChannel,
+                pvaClientChannelArray,
+                pvRequest);
+        pvaClientMonitor = new PvaClientMonitor[nchannel];
+        notifier = new PvaClientMonitorNotifier(nchannel);
+    }
+    /** Destroy the channel monitors.
+     */
+    public void destroy()
+    {
+        if(PvaClient.getDebug()) System.out.println("PvaClientNTScalarMultiMonitor::destroy()");
+        if(isDestroyed) return;
+        isDestroyed = true;
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].destroy();
+            pvaClientMonitor[i] = null;
+        }
+        pvaClientChannelArray = null;
+    }
+    /**
+     * Create and start a channel monitor for each channel.
+     */
+    public void connect()
+    {
+        sync();
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        String request = "value";
+        if(pvRequest.getSubField("field.alarm")!=null) request += ",alarm";
+        if(pvRequest.getSubField("field.timeStamp")!=null) request += ",timeStamp";
+
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]==null) {
+                pvaClientMonitor[i] = pvaClientChannelArray[i].createMonitor(request);
+                pvaClientMonitor[i].setNotifier(notifier,i);
+                pvaClientMonitor[i].issueConnect();
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
+                Status status = pvaClientMonitor[i].waitConnect();
+                if(status.isOK()) continue;
+                String message = "channel "
+                        + pvaClientChannelArray[i].getChannelName()
+                        + " PvaChannelMonitor::waitConnect "
+                        + status.getMessage();
+                throw new RuntimeException(message);
+            }
+        }
+        for(int i=0; i<nchannel; ++i)
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) pvaClientMonitor[i].start();
+        }
+        // events that arrived before the notifier was set are found by the first poll.
+        notifier.ready(0,nchannel);
+        this.isConnected = true;
+    }
+    /**
+     * poll each channel that has had an event since the last poll.
+     * If any has new data it is used to update the data.
+     * The other channels keep their last value.
+     * @return (false,true) if (no, at least one) value was updated.
+     */
+    public boolean poll()
+    {
+        if(isDestroyed) throw new RuntimeException("pvaClientNTScalarMultiMonitor was destroyed");
+        sync();
+        if(!isConnected) connect();
+        boolean result = false;
+        boolean[] isConnected = pvaClientMultiChannel.getIsConnected();
+        BitSet ready = notifier.take();
+        for(int i=ready.nextSetBit(0); i>=0 && i<nchannel; i=ready.nextSetBit(i+1))
+        {
+            if(isConnected[i] && pvaClientMonitor[i]!=null) {
+                if(pvaClientMonitor[i].poll()) {
+                    // the data is copied before the element is released.
+                    pvaClientNTScalarMultiData.update(
+                            pvaClientMonitor[i].getData().getPVStructure(),i);
+                    pvaClientMonitor[i].releaseEvent();
+                    // more elements may be queued.
+                    notifier.ready(i);
+                    result = true;
+                }
+            }
+        }
+        if(result) pvaClientNTScalarMultiData.getTimeStamp().getCurrentTime();
+        return result;
+    }
+    /**
+     * Wait until poll returns true.
+     * @param waitForEvent The time to keep trying.
+     * The caller is woken as soon as any channel has an event.
+     * @return (false,true) if (timeOut, poll returned true).
+     */
+    public boolean waitEvent(double waitForEvent)
+    {
+        if(poll()) return true;
+        long deadline = System.nanoTime() + (long)(waitForEvent*1e9);
+        while(true) {
+            double timeout = (deadline - System.nanoTime())/1e9;
+            if(!notifier.waitReady(timeout)) return false;
+            if(poll()) return true;
+        }
+    }
+    /**
+     * get the data.
+     * @return the pvaClientNTScalarMultiData.
+     */
+    public PvaClientNTScalarMultiData getData()
+    {
+        return pvaClientNTScalarMultiData;
+    }
+    /*
+     * Follow the channels added to or removed from the multi channel.
+     */
+    private void sync()
+    {
+        int[] map = membership.update();
+        if(map==null) return;
+        pvaClientChannelArray = pvaClientMultiChannel.getPvaClientChannelArray();
+        nchannel = map.length;
+        pvaClientMonitor = PvaClientMultiMembership.remap(pvaClientMonitor,map,monitor -> {
+            monitor.setNotifier(null,0);
+            monitor.destroy();
+        });
+        for(int i=0; i<nchannel; ++i) {
+            if(pvaClientMonitor[i]!=null) pvaClientMonitor[i].setNotifier(notifier,i);
+        }
+        pvaClientNTScalarMultiData.resize(pvaClientChannelArray);
+        // forget the old indices and poll each channel once.
+        notifier.take();
+        notifier.ready(0,nchannel);
+        isConnected = false;
+    }
+};
@@ -135,7 +135,8 @@ public class PvaClientProcess implements PvaClientChannelStateChangeRequester,Ch
         } finally {
             lock.unlock();
         }
-        if(pvaClientProcessRequester!=null) pvaClientProcessRequester.channelProcessConnect(status,this);
+        final PvaClientProcessRequester requester = pvaClientProcessRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.channelProcessConnect(status,this));
     }
 
     /* (non-Javadoc)
@@ -157,7 +158,8 @@ public class PvaClientProcess implements PvaClientChannelStateChangeRequester,Ch
         } finally {
             lock.unlock();
         }
-        if(pvaClientProcessRequester!=null) pvaClientProcessRequester.processDone(status,this);
+        final PvaClientProcessRequester requester = pvaClientProcessRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.processDone(status,this));
     }
 
     /**
@@ -77,6 +77,11 @@ public class PvaClientPut implements ChannelPutRequester {
     
     private volatile PutState putState = PutState.putIdle;
     private volatile PvaClientPutRequester pvaClientPutRequester = null;
+    // set by suspend until the channelPut is connected again.
+    private volatile boolean isSuspended = false;
+    private volatile Runnable resumeDone = null;
+    // incremented by suspend; guarded by lock.
+    private long suspendCount = 0;
    
     void checkPutState()
     {
@@ -85,6 +90,9 @@ public class PvaClientPut implements ChannelPutRequester {
             System.out.println("PvaClientPut::checkPutState()"
                  + " channelName " +  pvaClientChannel.getChannel().getChannelName());
         }
+        if(isSuspended) {
+            throw new RuntimeException("channel " + pvaClientChannel.getChannelName() + " is disconnected");
+        }
         if(connectState==PutConnectState.connectIdle)
         {
             connect();
@@ -98,6 +106,97 @@ public class PvaClientPut implements ChannelPutRequester {
         }
     }
 
+    /**
+     * Destroy the channelPut because the channel disconnected.
+     * Called by PvaClientReconnectCoordinator.
+     * A get or put that is active completes with an error status.
+     * A put that was resumed but is not connected yet is suspended again.
+     * @return true if the put must be resumed when the channel reconnects.
+     */
+    boolean suspend()
+    {
+        ChannelPut channelPut;
+        lock.lock();
+        try {
+            if(isDestroyed) return false;
+            if(isSuspended) {
+                // still queued by the coordinator.
+                if(resumeDone==null) return false;
+                // the new channelPut is abandoned; the coordinator knows the resume did not complete.
+                resumeDone = null;
+            } else if(connectState!=PutConnectState.connected) {
+                return false;
+            }
+            isSuspended = true;
+            ++suspendCount;
+            channelPut = this.channelPut;
+            this.channelPut = null;
+            connectState = PutConnectState.connectIdle;
+            if(putState==PutState.getActive || putState==PutState.putActive) {
+                channelGetPutStatus = statusCreate.createStatus(StatusType.ERROR,"channel disconnected",null);
+                putState = PutState.putComplete;
+                waitForGetPut.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if(channelPut!=null) channelPut.destroy();
+        return true;
+    }
+
+    /**
+     * Create a new channelPut after the channel reconnected.
+     * Called by PvaClientReconnectCoordinator.
+     * @param done Called when the channelPut is connected.
+     */
+    void resume(Runnable done)
+    {
+        if(isDestroyed) {
+            done.run();
+            return;
+        }
+        long count;
+        lock.lock();
+        try {
+            resumeDone = done;
+            connectState = PutConnectState.connectActive;
+            channelPutConnectStatus = StatusFactory.getStatusCreate().createStatus(Status.StatusType.ERROR,"connect active",null);
+            count = suspendCount;
+        } finally {
+            lock.unlock();
+        }
+        ChannelPut channelPut = pvaClientChannel.getChannel().createChannelPut(this, pvRequest);
+        boolean isAbandoned;
+        lock.lock();
+        try {
+            // suspend was called again while the channelPut was created.
+            isAbandoned = (count!=suspendCount);
+            if(!isAbandoned && this.channelPut==null) this.channelPut = channelPut;
+        } finally {
+            lock.unlock();
+        }
+        if(isAbandoned && channelPut!=null) channelPut.destroy();
+    }
+
+    /**
+     * Clear the suspended state because the coordinator no longer handles the put.
+     * Called by PvaClientReconnectCoordinator.
+     * The next get or put connects again.
+     */
+    void release()
+    {
+        lock.lock();
+        try {
+            if(isDestroyed || !isSuspended) return;
+            isSuspended = false;
+            resumeDone = null;
+            ++suspendCount;
+            connectState = PutConnectState.connectIdle;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.epics.pvdata.pv.Requester#getRequesterName()
      */
@@ -130,6 +229,8 @@ public class PvaClientPut implements ChannelPutRequester {
         }
         lock.lock();
         try {
+            // a channelPut abandoned by suspend.
+            if(isSuspended && resumeDone==null) return;
             if(status.isOK()) {
                 channelPutConnectStatus = status;
                 connectState = PutConnectState.connected;
@@ -146,7 +247,12 @@ public class PvaClientPut implements ChannelPutRequester {
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutRequester!=null) pvaClientPutRequester.channelPutConnect(status,this);
+        isSuspended = false;
+        Runnable done = resumeDone;
+        resumeDone = null;
+        if(done!=null) done.run();
+        final PvaClientPutRequester requester = pvaClientPutRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.channelPutConnect(status,this));
     }
 
     /* (non-Javadoc)
@@ -180,7 +286,8 @@ public class PvaClientPut implements ChannelPutRequester {
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutRequester!=null) pvaClientPutRequester.getDone(status,this);
+        final PvaClientPutRequester requester = pvaClientPutRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.getDone(status,this));
     }
 
     /* (non-Javadoc)
@@ -202,7 +309,8 @@ public class PvaClientPut implements ChannelPutRequester {
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutRequester!=null) pvaClientPutRequester.putDone(status,this);
+        final PvaClientPutRequester requester = pvaClientPutRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.putDone(status,this));
     }
 
 
@@ -217,6 +325,10 @@ public class PvaClientPut implements ChannelPutRequester {
             if(isDestroyed) return;
             isDestroyed = true;
         }
+        // a resume that will not complete.
+        Runnable done = resumeDone;
+        resumeDone = null;
+        if(done!=null) done.run();
         if(channelPut!=null) channelPut.destroy();
     }
 
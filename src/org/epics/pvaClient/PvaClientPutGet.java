@@ -148,7 +148,8 @@ public class PvaClientPutGet implements ChannelPutGetRequester
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutGetRequester!=null) pvaClientPutGetRequester.channelPutGetConnect(status,this);
+        final PvaClientPutGetRequester requester = pvaClientPutGetRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.channelPutGetConnect(status,this));
     }
 
     /* (non-Javadoc)
@@ -177,7 +178,8 @@ public class PvaClientPutGet implements ChannelPutGetRequester
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutGetRequester!=null) pvaClientPutGetRequester.putGetDone(status,this);
+        final PvaClientPutGetRequester requester = pvaClientPutGetRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.putGetDone(status,this));
     }
 
     /* (non-Javadoc)
@@ -210,7 +212,8 @@ public class PvaClientPutGet implements ChannelPutGetRequester
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutGetRequester!=null) pvaClientPutGetRequester.getPutDone(status,this);
+        final PvaClientPutGetRequester requester = pvaClientPutGetRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.getPutDone(status,this));
     }
 
     /* (non-Javadoc)
@@ -239,7 +242,8 @@ public class PvaClientPutGet implements ChannelPutGetRequester
         } finally {
             lock.unlock();
         }
-        if(pvaClientPutGetRequester!=null) pvaClientPutGetRequester.getGetDone(status,this);
+        final PvaClientPutGetRequester requester = pvaClientPutGetRequester;
+        if(requester!=null) pvaClientChannel.dispatch(() -> requester.getGetDone(status,this));
     }
 
 
@@ -32,37 +32,38 @@ public class PvaClientRPC implements ChannelRPCRequester{
     /**
      * Create an instance of PvaClientRPC.
      * @param pvaClient The single instance of pvaClient.
-     * @param channel The channel.
+     * @param pvaClientChannel The pvaClientChannel.
      * @return The new instance.
      */
     static PvaClientRPC create(
             PvaClient pvaClient,
-            Channel channel)
+            PvaClientChannel pvaClientChannel)
     {
-        return create(pvaClient,channel,null);
+        return create(pvaClient,pvaClientChannel,null);
     }
     /**
      * Create an instance of PvaClientRPC.
      * @param pvaClient The single instance of pvaClient.
-     * @param channel The channel.
+     * @param pvaClientChannel The pvaClientChannel.
      * @param pvRequest The pvRequest.
      * @return The new instance.
      */
     static PvaClientRPC create(
             PvaClient pvaClient,
-            Channel channel,
+            PvaClientChannel pvaClientChannel,
             PVStructure pvRequest)
     {
-        return new PvaClientRPC(pvaClient,channel,pvRequest);
+        return new PvaClientRPC(pvaClient,pvaClientChannel,pvRequest);
     }
 
     private PvaClientRPC(
             PvaClient pvaClient,
-            Channel channel,
+            PvaClientChannel pvaClientChannel,
             PVStructure pvRequest)
     {
         this.pvaClient = pvaClient;
-        this.channel = channel;
+        this.pvaClientChannel = pvaClientChannel;
+        this.channel = pvaClientChannel.getChannel();
         this.pvRequest = pvRequest;
         if(PvaClient.getDebug()) System.out.println("PvaClientRPC::PvaClientRPC");
     }
@@ -74,6 +75,7 @@ public class PvaClientRPC implements ChannelRPCRequester{
     private volatile Status connectStatus = statusCreate.getStatusOK();
     
     private final PvaClient pvaClient;
+    private final PvaClientChannel pvaClientChannel;
     private final Channel channel;
     private final PVStructure pvRequest;
     private final ReentrantLock lock = new ReentrantLock();
@@ -88,6 +90,7 @@ public class PvaClientRPC implements ChannelRPCRequester{
     private enum RPCState {rpcIdle,rpcActive,rpcComplete};
     private volatile RPCState rpcState = RPCState.rpcIdle;
     private double responseTimeout = 0.0;
+    private volatile PvaClientRPCCache cache = null;
 
     
     void checkRPCState()
@@ -171,9 +174,13 @@ public class PvaClientRPC implements ChannelRPCRequester{
         } finally {
             lock.unlock();
         }
-        if(pvaClientRPCRequester!=null) {
-            pvaClientRPCRequester.requestDone(status, this, pvResponse);
+        final PvaClientRPCRequester requester = pvaClientRPCRequester;
+        if(requester==null) return;
+        if(!pvaClientChannel.hasDispatcher()) {
+            requester.requestDone(status, this, pvResponse);
+            return;
         }
+        pvaClientChannel.dispatch(() -> requester.requestDone(status, this, pvResponse));
     }
 
     /**
@@ -204,6 +211,24 @@ public class PvaClientRPC implements ChannelRPCRequester{
     {
         return responseTimeout;
     }
+    /**
+     * Set a cache for the responses of request(pvArgument).
+     * A request whose argument has a valid response in the cache is not sent to the server.
+     * request(pvArgument,pvaClientRPCRequester) does not use the cache.
+     * @param cache The cache or null for no cache, which is the default.
+     */
+    public void setCache(PvaClientRPCCache cache)
+    {
+        this.cache = cache;
+    }
+    /**
+     * Get the cache.
+     * @return The cache or null.
+     */
+    public PvaClientRPCCache getCache()
+    {
+        return cache;
+    }
     /**
      * call issueConnect and then waitConnect.
      * @throws RuntimeException if create fails.
@@ -271,12 +296,73 @@ public class PvaClientRPC implements ChannelRPCRequester{
         }
     }
 
+    /**
+     * wait until the channelRPC connection to the channel is complete or for timeout.
+     * If the timeout expires the connect stays active and an error status is returned,
+     * so waitConnect can be called again, see isConnectActive.
+     * @param timeout The time in seconds to wait. A value of 0 means forever.
+     * @return status of connection request.
+     */
+    public Status waitConnect(double timeout)
+    {
+        if(timeout<=0.0) return waitConnect();
+        if(isDestroyed) throw new RuntimeException("pvaClientRPC was destroyed");
+        long nanos = (long)(timeout*1e9);
+        lock.lock();
+        try {
+            if(connectState==RPCConnectState.connectIdle) {
+                String message = "channel "
+                        + channel.getChannelName() 
+                        + " pvaClientRPC illegal connect state ";
+                return statusCreate.createStatus(StatusType.ERROR, message,null);
+            }
+            while(connectState==RPCConnectState.connectActive) {
+                if(nanos<=0) return statusCreate.createStatus(StatusType.ERROR,"connect timeout",null);
+                try {
+                    nanos = waitForConnect.awaitNanos(nanos);
+                } catch(InterruptedException e) {
+                    String message = "channel "
+                            + channel.getChannelName() 
+                            + " InterruptedException " + e.getMessage();
+                    return statusCreate.createStatus(StatusType.ERROR, message,e.fillInStackTrace());
+                }
+            }
+            if(!connectStatus.isOK()) connectState = RPCConnectState.connectIdle;
+            return connectStatus;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Is a connect active, i.e. issued and channelRPCConnect not yet called?
+     * @return (false,true) if a connect (is not,is) active.
+     */
+    public boolean isConnectActive()
+    {
+        return connectState==RPCConnectState.connectActive;
+    }
+
     /**
      * Issue a request.
      * @param pvArgument The argument for the request.
      * @return The result.
      */
     public PVStructure request(PVStructure pvArgument)
+    {
+        PvaClientRPCCache cache = this.cache;
+        if(cache==null) return issueRequest(pvArgument);
+        if(isDestroyed) throw new RuntimeException("pvaClientRPC was destroyed");
+        PvaClientRPCCache.EntryKey key = PvaClientRPCCache.key(
+            channel.getChannelName(),PvaClientRPCCache.Key.create(pvRequest),pvArgument);
+        PVStructure pvResponse = cache.get(key);
+        if(pvResponse!=null) return pvResponse;
+        pvResponse = issueRequest(pvArgument);
+        if(pvResponse!=null) cache.put(key,pvResponse);
+        return pvResponse;
+    }
+
+    private PVStructure issueRequest(PVStructure pvArgument)
     {
         checkRPCState();
         if(rpcState!=RPCState.rpcIdle) {
@@ -326,6 +412,7 @@ public class PvaClientRPC implements ChannelRPCRequester{
      * Issue a request.
      * Note that if responseTimeout is ( lt 0.0, ge 0.0) then this (will, will not) block
      * until response completes or timeout.
+     * This always sends the request to the server, i.e. the cache set by setCache is not used.
      * @param pvArgument The argument for the request.
      * @param pvaClientRPCRequester The client requester to call when the request completes.
      */
@@ -351,6 +438,6 @@ public class PvaClientRPC implements ChannelRPCRequester{
             channelRPC.request(pvArgument);
             return;
         }
-        request(pvArgument);
+        issueRequest(pvArgument);
     }
 }
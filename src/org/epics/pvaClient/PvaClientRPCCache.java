@@ -0,0 +1,305 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.SerializableControl;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * A cache of RPC responses for services where the same argument always gives the same response,
+ * e.g. configuration or naming services.
+ * <p>
+ * It is used by PvaClientRPC.request(pvArgument) and PvaClientChannel.rpc after a call to setCache or setRPCCache.
+ * A request with a PvaClientRPCRequester always goes to the server.
+ * A response is found by channel name, pvRequest, and argument,
+ * where the pvRequest and argument match if they have the same introspection interface and the same values.
+ * Only successful responses are cached.
+ * An entry expires after timeToLive seconds,
+ * and if there are more than maxEntries entries the least recently used entry is removed.
+ * The cache stores a copy of each response and returns a new copy for each hit,
+ * so the caller can modify a response.
+ * A cache can be shared by any number of channels and threads.
+ */
+public class PvaClientRPCCache
+{
+    /**
+     * Create a cache.
+     * @param maxEntries The maximum number of responses.
+     * @param timeToLive The time in seconds that a response is valid.
+     * @return The new instance.
+     */
+    public static PvaClientRPCCache create(int maxEntries,double timeToLive)
+    {
+        return new PvaClientRPCCache(maxEntries,timeToLive);
+    }
+
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private static final class Control implements SerializableControl
+    {
+        public void flushSerializeBuffer() { throw new BufferOverflowException(); }
+        public void ensureBuffer(int size) { if(buffer.get().remaining()<size) throw new BufferOverflowException(); }
+        public void alignBuffer(int alignment) {}
+        public void cachedSerialize(Field field,ByteBuffer buffer) { field.serialize(buffer,this); }
+    }
+    private static final Control control = new Control();
+    // grown when a structure does not fit.
+    private static final ThreadLocal<ByteBuffer> buffer
+        = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+    /*
+     * Identifies a PVStructure by its introspection interface and the serialized values of its fields.
+     * Creating one does not format text, so it is much cheaper than toString.
+     */
+    static final class Key
+    {
+        private static final Key nullKey = new Key(null,new byte[0]);
+        private final Structure structure;
+        private final byte[] value;
+        private final int hash;
+
+        private Key(Structure structure,byte[] value)
+        {
+            this.structure = structure;
+            this.value = value;
+            hash = 31*((structure==null) ? 0 : structure.hashCode()) + Arrays.hashCode(value);
+        }
+
+        /*
+         * The PVStructure must not be modified while the key is created.
+         */
+        static Key create(PVStructure pvStructure)
+        {
+            if(pvStructure==null) return nullKey;
+            ByteBuffer byteBuffer = buffer.get();
+            while(true) {
+                byteBuffer.clear();
+                try {
+                    pvStructure.serialize(byteBuffer,control);
+                    break;
+                } catch(BufferOverflowException e) {
+                    byteBuffer = ByteBuffer.allocate(2*byteBuffer.capacity());
+                    buffer.set(byteBuffer);
+                }
+            }
+            return new Key(pvStructure.getStructure(),Arrays.copyOf(byteBuffer.array(),byteBuffer.position()));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if(this==object) return true;
+            if(!(object instanceof Key)) return false;
+            Key key = (Key)object;
+            if(hash!=key.hash || !Arrays.equals(value,key.value)) return false;
+            return structure==key.structure || (structure!=null && structure.equals(key.structure));
+        }
+    }
+
+    /*
+     * Identifies a response by channel name, pvRequest, and argument.
+     */
+    static final class EntryKey
+    {
+        private final String channelName;
+        private final Key request;
+        private final Key argument;
+        private final int hash;
+
+        EntryKey(String channelName,Key request,Key argument)
+        {
+            this.channelName = channelName;
+            this.request = request;
+            this.argument = argument;
+            hash = 31*(31*channelName.hashCode() + request.hashCode()) + argument.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if(this==object) return true;
+            if(!(object instanceof EntryKey)) return false;
+            EntryKey key = (EntryKey)object;
+            return hash==key.hash
+                && channelName.equals(key.channelName)
+                && request.equals(key.request)
+                && argument.equals(key.argument);
+        }
+    }
+
+    private static class CachedResponse
+    {
+        private final String channelName;
+        private final PVStructure pvResponse;
+        private final long expireTime;
+
+        CachedResponse(String channelName,PVStructure pvResponse,long expireTime)
+        {
+            this.channelName = channelName;
+            this.pvResponse = pvResponse;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    // guarded by this; in access order for LRU eviction.
+    private final LinkedHashMap<EntryKey,CachedResponse> entries;
+    private long numberHits = 0;
+    private long numberMisses = 0;
+
+    private PvaClientRPCCache(int maxEntries,double timeToLive)
+    {
+        if(maxEntries<1) {
+            throw new IllegalArgumentException("PvaClientRPCCache maxEntries must be at least 1");
+        }
+        if(timeToLive<=0.0) {
+            throw new IllegalArgumentException("PvaClientRPCCache timeToLive must be positive");
+        }
+        this.maxEntries = maxEntries;
+        timeToLiveNanos = (long)(timeToLive*1e9);
+        entries = new LinkedHashMap<EntryKey,CachedResponse>(16,0.75f,true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EntryKey,CachedResponse> eldest)
+            {
+                return size()>PvaClientRPCCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Create the key of a response, which is used for both get and put.
+     * @param channelName The channel name.
+     * @param request The key of the pvRequest, which the caller can keep since a pvRequest rarely changes.
+     * @param pvArgument The argument.
+     * @return The key.
+     */
+    static EntryKey key(String channelName,Key request,PVStructure pvArgument)
+    {
+        return new EntryKey(channelName,request,Key.create(pvArgument));
+    }
+
+    /**
+     * Find a response.
+     * @param key The key returned by key.
+     * @return A copy of the response or null if there is no valid response.
+     */
+    PVStructure get(EntryKey key)
+    {
+        PVStructure pvResponse;
+        synchronized(this) {
+            CachedResponse entry = entries.get(key);
+            if(entry!=null && entry.expireTime - System.nanoTime()<=0) {
+                entries.remove(key);
+                entry = null;
+            }
+            if(entry==null) {
+                ++numberMisses;
+                return null;
+            }
+            ++numberHits;
+            pvResponse = entry.pvResponse;
+        }
+        // the cached copy is never modified, so it can be copied without holding the lock.
+        return pvDataCreate.createPVStructure(pvResponse);
+    }
+
+    /**
+     * Add a response.
+     * @param key The key returned by key.
+     * @param pvResponse The response, which is copied.
+     */
+    void put(EntryKey key,PVStructure pvResponse)
+    {
+        CachedResponse entry = new CachedResponse(
+            key.channelName,
+            pvDataCreate.createPVStructure(pvResponse),
+            System.nanoTime() + timeToLiveNanos);
+        synchronized(this) {
+            entries.put(key,entry);
+        }
+    }
+
+    /**
+     * Remove all responses of a channel.
+     * @param channelName The channel name.
+     */
+    public synchronized void invalidate(String channelName)
+    {
+        Iterator<CachedResponse> iter = entries.values().iterator();
+        while(iter.hasNext()) {
+            if(iter.next().channelName.equals(channelName)) iter.remove();
+        }
+    }
+
+    /**
+     * Remove all responses.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Get the number of responses, including expired responses that were not removed yet.
+     * @return The number.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of requests that were answered from the cache.
+     * @return The number.
+     */
+    public synchronized long getNumberHits()
+    {
+        return numberHits;
+    }
+
+    /**
+     * Get the number of requests that were not found in the cache.
+     * @return The number.
+     */
+    public synchronized long getNumberMisses()
+    {
+        return numberMisses;
+    }
+
+    public synchronized String toString()
+    {
+        return "entries " + entries.size()
+             + " hits " + numberHits
+             + " misses " + numberMisses;
+    }
+}
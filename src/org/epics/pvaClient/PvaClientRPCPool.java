@@ -0,0 +1,216 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Semaphore;
+
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+
+/**
+ * The connected PvaClientRPCs of a channel that are reused by PvaClientChannel.rpc.
+ * <p>
+ * A PvaClientRPC can only have one active request,
+ * so each request takes an idle PvaClientRPC for its pvRequest, or creates a new one,
+ * and returns it when the response arrives.
+ * The number of requests in flight is limited by maxConcurrent,
+ * and a request waits if the limit is reached.
+ * When maxConcurrent is changed the requests in flight keep their permits,
+ * so after a decrease new requests wait until enough of them complete.
+ * A PvaClientRPC whose request fails is destroyed instead of being reused.
+ */
+class PvaClientRPCPool
+{
+    /*
+     * A Semaphore whose number of permits can be changed while permits are held.
+     */
+    static final class Limit extends Semaphore
+    {
+        private static final long serialVersionUID = 1L;
+        // guarded by this
+        private int max;
+
+        Limit(int max)
+        {
+            super(max);
+            this.max = max;
+        }
+
+        /*
+         * A decrease can make the available permits negative until enough holders release.
+         */
+        synchronized void setMax(int max)
+        {
+            int delta = max - this.max;
+            this.max = max;
+            if(delta>0) {
+                release(delta);
+            } else if(delta<0) {
+                reducePermits(-delta);
+            }
+        }
+
+        synchronized int getMax()
+        {
+            return max;
+        }
+    }
+
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private final PvaClientChannel pvaClientChannel;
+    private final Limit permits;
+    // guarded by this
+    private final HashMap<PvaClientRPCCache.Key,ArrayDeque<PvaClientRPC>> idle
+        = new HashMap<PvaClientRPCCache.Key,ArrayDeque<PvaClientRPC>>();
+    private boolean isDestroyed = false;
+
+    /**
+     * Constructor.
+     * @param pvaClientChannel The channel.
+     * @param maxConcurrent The maximum number of requests in flight.
+     */
+    PvaClientRPCPool(PvaClientChannel pvaClientChannel,int maxConcurrent)
+    {
+        this.pvaClientChannel = pvaClientChannel;
+        checkMaxConcurrent(maxConcurrent);
+        permits = new Limit(maxConcurrent);
+    }
+
+    private void checkMaxConcurrent(int maxConcurrent)
+    {
+        if(maxConcurrent<1) {
+            throw new IllegalArgumentException("channel "
+                + pvaClientChannel.getChannelName()
+                + " PvaClientRPCPool maxConcurrent must be at least 1");
+        }
+    }
+
+    /**
+     * Set the maximum number of requests in flight.
+     * The limit also applies to the requests that are already waiting.
+     * @param maxConcurrent The maximum.
+     */
+    void setMaxConcurrent(int maxConcurrent)
+    {
+        checkMaxConcurrent(maxConcurrent);
+        permits.setMax(maxConcurrent);
+    }
+
+    /**
+     * Get the maximum number of requests in flight.
+     * @return The maximum.
+     */
+    int getMaxConcurrent()
+    {
+        return permits.getMax();
+    }
+
+    private PvaClientRPC take(PvaClientRPCCache.Key key,PVStructure pvRequest)
+    {
+        synchronized(this) {
+            if(isDestroyed) throw new RuntimeException("channel "
+                + pvaClientChannel.getChannelName() + " PvaClientRPCPool was destroyed");
+            ArrayDeque<PvaClientRPC> queue = idle.get(key);
+            if(queue!=null && !queue.isEmpty()) return queue.pollLast();
+        }
+        // a copy, so that the idle PvaClientRPC still matches its key if the caller modifies pvRequest.
+        PvaClientRPC pvaClientRPC = pvaClientChannel.createRPC(
+            (pvRequest==null) ? null : pvDataCreate.createPVStructure(pvRequest));
+        try {
+            pvaClientRPC.connect();
+        } catch(RuntimeException e) {
+            pvaClientRPC.destroy();
+            throw e;
+        }
+        return pvaClientRPC;
+    }
+
+    private void give(PvaClientRPCCache.Key key,PvaClientRPC pvaClientRPC)
+    {
+        synchronized(this) {
+            if(!isDestroyed) {
+                ArrayDeque<PvaClientRPC> queue = idle.get(key);
+                if(queue==null) {
+                    queue = new ArrayDeque<PvaClientRPC>();
+                    idle.put(key,queue);
+                }
+                if(queue.size()<permits.getMax()) {
+                    queue.addLast(pvaClientRPC);
+                    return;
+                }
+            }
+        }
+        pvaClientRPC.destroy();
+    }
+
+    /**
+     * Issue a request with a pooled PvaClientRPC and wait for the response.
+     * @param key The key of pvRequest, which selects the pooled PvaClientRPCs.
+     * @param pvRequest The pvRequest that is passed to createRPC. It can be null.
+     * @param pvArgument The argument for the request.
+     * @return The response.
+     */
+    PVStructure request(PvaClientRPCCache.Key key,PVStructure pvRequest,PVStructure pvArgument)
+    {
+        try {
+            permits.acquire();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("channel "
+                + pvaClientChannel.getChannelName()
+                + " PvaClientRPCPool::request InterruptedException " + e.getMessage());
+        }
+        try {
+            PvaClientRPC pvaClientRPC = take(key,pvRequest);
+            PVStructure pvResponse;
+            try {
+                pvResponse = pvaClientRPC.request(pvArgument);
+            } catch(RuntimeException e) {
+                pvaClientRPC.destroy();
+                throw e;
+            }
+            if(pvResponse==null) {
+                pvaClientRPC.destroy();
+            } else {
+                give(key,pvaClientRPC);
+            }
+            return pvResponse;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Get the number of idle PvaClientRPCs.
+     * @return The number.
+     */
+    synchronized int getNumberIdle()
+    {
+        int number = 0;
+        for(ArrayDeque<PvaClientRPC> queue : idle.values()) number += queue.size();
+        return number;
+    }
+
+    /**
+     * Destroy the idle PvaClientRPCs.
+     * A PvaClientRPC that is in flight is destroyed when its request completes.
+     */
+    void destroy()
+    {
+        ArrayList<PvaClientRPC> list = new ArrayList<PvaClientRPC>();
+        synchronized(this) {
+            isDestroyed = true;
+            for(ArrayDeque<PvaClientRPC> queue : idle.values()) list.addAll(queue);
+            idle.clear();
+        }
+        for(PvaClientRPC pvaClientRPC : list) pvaClientRPC.destroy();
+    }
+}
@@ -0,0 +1,414 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.epics.pvaccess.client.Channel;
+
+/**
+ * Coordinates the resubscription of monitors and cached gets and puts after channels reconnect.
+ * <p>
+ * Without coordination pvAccess re-creates every monitor and request of a channel as soon as it reconnects,
+ * so the restart of a server that hosts thousands of channels results in a flood of requests and callbacks.
+ * When a coordinator is given to PvaClient.setReconnectCoordinator,
+ * a PvaClientMonitor, and each cached PvaClientGet and PvaClientPut, is suspended when its channel disconnects,
+ * i.e. the pvAccess monitor or request is destroyed.
+ * While suspended, poll returns false and get and put throw an exception.
+ * When the channel reconnects its operations are queued by server address and re-created in batches.
+ * Each server gets at most batchSize operations every batchPeriod seconds,
+ * and each batch is delayed by a random jitter of up to maxJitter seconds.
+ * <p>
+ * The recovery time of a server is the time from the first disconnect
+ * until all of its operations are connected again.
+ * <p>
+ * When the coordinator is destroyed, or replaced by PvaClient.setReconnectCoordinator,
+ * its operations are handed back to their channels.
+ */
+public class PvaClientReconnectCoordinator
+{
+    /**
+     * Create a coordinator.
+     * @param batchSize The maximum number of operations re-created per server in each batch.
+     * @param batchPeriod The time in seconds between batches for a server.
+     * @param maxJitter The maximum random delay in seconds added to each batch.
+     * @return The new instance.
+     */
+    public static PvaClientReconnectCoordinator create(
+            int batchSize,
+            double batchPeriod,
+            double maxJitter)
+    {
+        return new PvaClientReconnectCoordinator(batchSize,batchPeriod,maxJitter);
+    }
+
+    private PvaClientReconnectCoordinator(
+            int batchSize,
+            double batchPeriod,
+            double maxJitter)
+    {
+        if(batchSize<1) {
+            throw new IllegalArgumentException("PvaClientReconnectCoordinator batchSize must be at least 1");
+        }
+        if(batchPeriod<0.0 || maxJitter<0.0) {
+            throw new IllegalArgumentException("PvaClientReconnectCoordinator times can not be negative");
+        }
+        this.batchSize = batchSize;
+        periodNanos = (long)(batchPeriod*1e9);
+        jitterNanos = (long)(maxJitter*1e9);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable,"pvaClientReconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static class Operation
+    {
+        // the PvaClientMonitor, PvaClientGet, or PvaClientPut.
+        private final Object key;
+        private final PvaClientChannel pvaClientChannel;
+        private final long disconnectTime;
+        private final Consumer<Runnable> resume;
+        private final Runnable release;
+        // set when the operation is resumed.
+        private Server server = null;
+
+        Operation(
+            Object key,
+            PvaClientChannel pvaClientChannel,
+            long disconnectTime,
+            Consumer<Runnable> resume,
+            Runnable release)
+        {
+            this.key = key;
+            this.pvaClientChannel = pvaClientChannel;
+            this.disconnectTime = disconnectTime;
+            this.resume = resume;
+            this.release = release;
+        }
+    }
+
+    private static class Server
+    {
+        private final ArrayDeque<Operation> pending = new ArrayDeque<Operation>();
+        private int outstanding = 0;
+        private boolean isScheduled = false;
+        private long episodeStart = Long.MAX_VALUE;
+    }
+
+    private final int batchSize;
+    private final long periodNanos;
+    private final long jitterNanos;
+    private final ScheduledExecutorService timer;
+    // guarded by this
+    private final HashMap<PvaClientChannel,ArrayList<Operation>> suspended
+        = new HashMap<PvaClientChannel,ArrayList<Operation>>();
+    private final HashMap<String,Server> servers = new HashMap<String,Server>();
+    // operations that were resumed but are not connected yet.
+    private final HashMap<Object,Operation> resuming = new HashMap<Object,Operation>();
+    private long numberPending = 0;
+    private long numberResumed = 0;
+    private long numberRecoveries = 0;
+    private long lastRecoveryNanos = 0;
+    private long maxRecoveryNanos = 0;
+    private boolean isDestroyed = false;
+
+    /**
+     * Called by PvaClientChannel when the channel disconnects.
+     * An operation that was resumed but is not connected yet is suspended again
+     * and no longer counts as outstanding for its server.
+     * @param pvaClientChannel The channel.
+     */
+    void channelDisconnected(PvaClientChannel pvaClientChannel)
+    {
+        // pvAccess resubscribes operations that are not suspended.
+        synchronized(this) {
+            if(isDestroyed) return;
+        }
+        long now = System.nanoTime();
+        ArrayList<Operation> operations = new ArrayList<Operation>();
+        for(PvaClientMonitor pvaClientMonitor : pvaClientChannel.getMonitors()) {
+            if(pvaClientMonitor.suspend()) {
+                operations.add(new Operation(pvaClientMonitor,pvaClientChannel,now,done -> pvaClientMonitor.resume(done),pvaClientMonitor::release));
+            }
+        }
+        for(PvaClientGet pvaClientGet : pvaClientChannel.getCachedGets()) {
+            if(pvaClientGet.suspend()) {
+                operations.add(new Operation(pvaClientGet,pvaClientChannel,now,done -> pvaClientGet.resume(done),pvaClientGet::release));
+            }
+        }
+        for(PvaClientPut pvaClientPut : pvaClientChannel.getCachedPuts()) {
+            if(pvaClientPut.suspend()) {
+                operations.add(new Operation(pvaClientPut,pvaClientChannel,now,done -> pvaClientPut.resume(done),pvaClientPut::release));
+            }
+        }
+        if(operations.isEmpty()) return;
+        synchronized(this) {
+            if(!isDestroyed) {
+                suspend(pvaClientChannel,operations);
+                return;
+            }
+        }
+        // destroyed while the operations were suspended.
+        for(Operation operation : operations) handBack(operation);
+    }
+
+    // caller must hold this
+    private void suspend(PvaClientChannel pvaClientChannel,ArrayList<Operation> operations)
+    {
+        for(Operation operation : operations) {
+            Operation abandoned = resuming.remove(operation.key);
+            if(abandoned==null) continue;
+            // its done callback will not be called; it is counted again below.
+            --abandoned.server.outstanding;
+            --numberPending;
+        }
+        ArrayList<Operation> list = suspended.get(pvaClientChannel);
+        if(list==null) {
+            suspended.put(pvaClientChannel,operations);
+        } else {
+            list.addAll(operations);
+        }
+        numberPending += operations.size();
+    }
+
+    /**
+     * Called by PvaClientChannel when the channel reconnects.
+     * @param pvaClientChannel The channel.
+     */
+    void channelConnected(PvaClientChannel pvaClientChannel)
+    {
+        Channel channel = pvaClientChannel.getChannel();
+        String address = (channel==null) ? null : channel.getRemoteAddress();
+        if(address==null) address = "";
+        synchronized(this) {
+            ArrayList<Operation> operations = suspended.remove(pvaClientChannel);
+            if(operations==null) return;
+            Server server = servers.get(address);
+            if(server==null) {
+                server = new Server();
+                servers.put(address,server);
+            }
+            for(Operation operation : operations) {
+                server.episodeStart = Math.min(server.episodeStart,operation.disconnectTime);
+                server.pending.addLast(operation);
+            }
+            schedule(server,jitter());
+        }
+    }
+
+    private long jitter()
+    {
+        return (jitterNanos==0) ? 0 : ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+    }
+
+    // caller must hold this
+    private void schedule(final Server server,long delay)
+    {
+        if(server.isScheduled || isDestroyed) return;
+        server.isScheduled = true;
+        timer.schedule(() -> runBatch(server),delay,TimeUnit.NANOSECONDS);
+    }
+
+    private void runBatch(final Server server)
+    {
+        ArrayList<Operation> batch = new ArrayList<Operation>(batchSize);
+        synchronized(this) {
+            server.isScheduled = false;
+            while(batch.size()<batchSize && !server.pending.isEmpty()) {
+                Operation operation = server.pending.removeFirst();
+                Channel channel = operation.pvaClientChannel.getChannel();
+                if(channel!=null && channel.isConnected()) {
+                    operation.server = server;
+                    resuming.put(operation.key,operation);
+                    batch.add(operation);
+                    continue;
+                }
+                // disconnected again; wait for the next reconnect.
+                ArrayList<Operation> list = suspended.get(operation.pvaClientChannel);
+                if(list==null) {
+                    list = new ArrayList<Operation>();
+                    suspended.put(operation.pvaClientChannel,list);
+                }
+                list.add(operation);
+            }
+            server.outstanding += batch.size();
+        }
+        for(Operation operation : batch) {
+            try {
+                operation.resume.accept(() -> resumed(operation));
+            } catch(RuntimeException e) {
+                synchronized(this) {
+                    if(resuming.remove(operation.key)!=operation) continue;
+                    --server.outstanding;
+                    server.pending.addLast(operation);
+                }
+            }
+        }
+        synchronized(this) {
+            if(!server.pending.isEmpty()) {
+                schedule(server,periodNanos + jitter());
+            } else {
+                checkRecovered(server);
+            }
+        }
+    }
+
+    /**
+     * Hand the operations of a client back to their channels.
+     * Called by PvaClient.setReconnectCoordinator when this coordinator is replaced.
+     * An operation whose channel is connected is resumed immediately.
+     * Any other operation connects again on its next get, put, or poll.
+     * Operations that are being resumed complete normally.
+     * @param pvaClient The client or null for the operations of all clients.
+     */
+    void release(PvaClient pvaClient)
+    {
+        ArrayList<Operation> released = new ArrayList<Operation>();
+        synchronized(this) {
+            Iterator<ArrayList<Operation>> iter = suspended.values().iterator();
+            while(iter.hasNext()) {
+                ArrayList<Operation> list = iter.next();
+                remove(list,pvaClient,released);
+                if(list.isEmpty()) iter.remove();
+            }
+            for(Server server : servers.values()) remove(server.pending,pvaClient,released);
+            numberPending -= released.size();
+        }
+        for(Operation operation : released) handBack(operation);
+    }
+
+    private static void remove(Collection<Operation> operations,PvaClient pvaClient,ArrayList<Operation> released)
+    {
+        Iterator<Operation> iter = operations.iterator();
+        while(iter.hasNext()) {
+            Operation operation = iter.next();
+            if(pvaClient!=null && operation.pvaClientChannel.getPvaClient()!=pvaClient) continue;
+            iter.remove();
+            released.add(operation);
+        }
+    }
+
+    private static void handBack(Operation operation)
+    {
+        Channel channel = operation.pvaClientChannel.getChannel();
+        if(channel!=null && channel.isConnected()) {
+            try {
+                operation.resume.accept(() -> {});
+                return;
+            } catch(RuntimeException e) {
+                // fall back to the connect of the next request.
+            }
+        }
+        operation.release.run();
+    }
+
+    private synchronized void resumed(Operation operation)
+    {
+        // the operation was abandoned by channelDisconnected.
+        if(resuming.get(operation.key)!=operation) return;
+        resuming.remove(operation.key);
+        Server server = operation.server;
+        --server.outstanding;
+        --numberPending;
+        ++numberResumed;
+        checkRecovered(server);
+    }
+
+    // caller must hold this
+    private void checkRecovered(Server server)
+    {
+        if(server.outstanding>0 || !server.pending.isEmpty() || server.isScheduled) return;
+        if(server.episodeStart==Long.MAX_VALUE) return;
+        lastRecoveryNanos = System.nanoTime() - server.episodeStart;
+        maxRecoveryNanos = Math.max(maxRecoveryNanos,lastRecoveryNanos);
+        ++numberRecoveries;
+        server.episodeStart = Long.MAX_VALUE;
+    }
+
+    /**
+     * Get the number of operations that are suspended or waiting to be re-created.
+     * @return The number.
+     */
+    public synchronized long getNumberPending()
+    {
+        return numberPending;
+    }
+
+    /**
+     * Get the number of operations that have been re-created.
+     * @return The number.
+     */
+    public synchronized long getNumberResumed()
+    {
+        return numberResumed;
+    }
+
+    /**
+     * Get the number of times that all operations of a server were re-created.
+     * @return The number.
+     */
+    public synchronized long getNumberRecoveries()
+    {
+        return numberRecoveries;
+    }
+
+    /**
+     * Get the recovery time of the last server that recovered.
+     * @return The time in seconds.
+     */
+    public synchronized double getLastRecoveryTime()
+    {
+        return lastRecoveryNanos/1e9;
+    }
+
+    /**
+     * Get the longest recovery time.
+     * @return The time in seconds.
+     */
+    public synchronized double getMaxRecoveryTime()
+    {
+        return maxRecoveryNanos/1e9;
+    }
+
+    public synchronized String toString()
+    {
+        return "pending " + numberPending
+             + " resumed " + numberResumed
+             + " recoveries " + numberRecoveries
+             + " lastRecoveryTime " + getLastRecoveryTime()
+             + " maxRecoveryTime " + getMaxRecoveryTime();
+    }
+
+    /**
+     * Stop the coordinator and hand all of its operations back to their channels.
+     * An operation whose channel is connected is resumed immediately.
+     * Any other operation connects again on its next get, put, or poll.
+     */
+    public void destroy()
+    {
+        synchronized(this) {
+            if(isDestroyed) return;
+            isDestroyed = true;
+            timer.shutdownNow();
+            // a resume that is in flight completes without the coordinator.
+            numberPending -= resuming.size();
+            resuming.clear();
+        }
+        release(null);
+    }
+}
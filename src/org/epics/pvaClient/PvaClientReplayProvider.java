@@ -0,0 +1,573 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.epics.pvaccess.client.AccessRights;
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.ChannelArray;
+import org.epics.pvaccess.client.ChannelArrayRequester;
+import org.epics.pvaccess.client.ChannelFind;
+import org.epics.pvaccess.client.ChannelFindRequester;
+import org.epics.pvaccess.client.ChannelGet;
+import org.epics.pvaccess.client.ChannelGetRequester;
+import org.epics.pvaccess.client.ChannelListRequester;
+import org.epics.pvaccess.client.ChannelProcess;
+import org.epics.pvaccess.client.ChannelProcessRequester;
+import org.epics.pvaccess.client.ChannelProvider;
+import org.epics.pvaccess.client.ChannelProviderFactory;
+import org.epics.pvaccess.client.ChannelProviderRegistryFactory;
+import org.epics.pvaccess.client.ChannelPut;
+import org.epics.pvaccess.client.ChannelPutGet;
+import org.epics.pvaccess.client.ChannelPutGetRequester;
+import org.epics.pvaccess.client.ChannelPutRequester;
+import org.epics.pvaccess.client.ChannelRPC;
+import org.epics.pvaccess.client.ChannelRPCRequester;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvaccess.client.GetFieldRequester;
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.factory.StatusFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.StatusCreate;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * A local ChannelProvider that replays a journal written by PvaClientMonitorJournal.
+ * <p>
+ * After register is called the provider can be used like any other provider, e.g.
+ * PvaClient.get("replay").channel(channelName,"replay").monitor(requester).
+ * Only getField and monitor are supported.
+ * The field selection of the pvRequest is ignored, i.e. the recorded structure is delivered.
+ * The record option queueSize sets the number of monitor elements, the default is 4.
+ * <p>
+ * Updates are delivered by a single replay thread, started by startReplay.
+ * The replay never waits for a client.
+ * When a started monitor has no free element the update is merged into the newest element
+ * the client has not taken yet, and the overrun BitSet shows the fields that were overwritten.
+ * If the client holds all elements the update is merged into the next element it gets.
+ * So a slow client sees overruns, as from a pvAccess server, without slowing the other clients.
+ * The timing of the replay is the receive time of the journal, which has nanosecond resolution.
+ */
+public class PvaClientReplayProvider implements ChannelProvider
+{
+    /**
+     * Create a replay provider.
+     * @param providerName The name used to register the provider.
+     * @param directory The directory that holds the journal.
+     * @param baseName The base name given to PvaClientMonitorJournal.
+     * @return The new instance.
+     */
+    public static PvaClientReplayProvider create(
+            String providerName,
+            String directory,
+            String baseName)
+    {
+        return new PvaClientReplayProvider(providerName,directory,baseName);
+    }
+
+    private PvaClientReplayProvider(
+            String providerName,
+            String directory,
+            String baseName)
+    {
+        this.providerName = providerName;
+        this.directory = directory;
+        this.baseName = baseName;
+        structures = PvaClientMonitorJournalReader.readStructures(directory,baseName);
+        channelNames = Collections.unmodifiableSet(structures.keySet());
+        for(String channelName : channelNames) {
+            monitors.put(channelName,new CopyOnWriteArrayList<ReplayMonitor>());
+        }
+    }
+
+    private static final StatusCreate statusCreate = StatusFactory.getStatusCreate();
+    private static final Status okStatus = statusCreate.getStatusOK();
+    private static final Status notSupportedStatus = statusCreate.createStatus(
+        Status.StatusType.ERROR,"not supported by replay provider",null);
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private static final Convert convert = ConvertFactory.getConvert();
+    private static final int DEFAULT_QUEUE_SIZE = 4;
+
+    private final String providerName;
+    private final String directory;
+    private final String baseName;
+    private final Set<String> channelNames;
+    private final ConcurrentHashMap<String,CopyOnWriteArrayList<ReplayMonitor>> monitors
+        = new ConcurrentHashMap<String,CopyOnWriteArrayList<ReplayMonitor>>();
+    // not modified after the provider is created.
+    private final Map<String,Structure> structures;
+    private ChannelProviderFactory factory = null;
+    private Thread replayThread = null;
+    private volatile boolean isReplayActive = false;
+    private volatile long numberReplayed = 0;
+
+    private class ReplayElement implements MonitorElement
+    {
+        private final PVStructure pvStructure;
+        private final BitSet changedBitSet;
+        private final BitSet overrunBitSet;
+
+        ReplayElement(Structure structure)
+        {
+            pvStructure = pvDataCreate.createPVStructure(structure);
+            changedBitSet = new BitSet(pvStructure.getNumberFields());
+            overrunBitSet = new BitSet(pvStructure.getNumberFields());
+        }
+
+        public PVStructure getPVStructure() { return pvStructure; }
+        public BitSet getChangedBitSet() { return changedBitSet; }
+        public BitSet getOverrunBitSet() { return overrunBitSet; }
+    }
+
+    private class ReplayMonitor implements Monitor
+    {
+        private final String channelName;
+        private final MonitorRequester monitorRequester;
+        private final int queueSize;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<ReplayElement> freeElements = new ArrayDeque<ReplayElement>();
+        private final ArrayDeque<ReplayElement> readyElements = new ArrayDeque<ReplayElement>();
+        private Structure structure = null;
+        // the changed fields of updates that could not be queued.
+        private BitSet missedBitSet = null;
+        private BitSet scratchBitSet = null;
+        private long numberOverrun = 0;
+        private volatile boolean isStarted = false;
+        private volatile boolean isDestroyed = false;
+
+        ReplayMonitor(String channelName,MonitorRequester monitorRequester,int queueSize)
+        {
+            this.channelName = channelName;
+            this.monitorRequester = monitorRequester;
+            this.queueSize = queueSize;
+        }
+
+        /*
+         * Called by the replay thread. It never waits for the client.
+         */
+        void replay(PVStructure pvStructure,BitSet changedBitSet,BitSet overrunBitSet)
+        {
+            if(!isStarted) return;
+            boolean isNew;
+            lock.lock();
+            try {
+                if(structure!=pvStructure.getStructure()) {
+                    // the recorded structure changed; the client keeps its original introspection data.
+                    structure = pvStructure.getStructure();
+                    freeElements.clear();
+                    readyElements.clear();
+                    for(int i=0; i<queueSize; ++i) freeElements.add(new ReplayElement(structure));
+                    int numberFields = pvStructure.getNumberFields();
+                    missedBitSet = new BitSet(numberFields);
+                    scratchBitSet = new BitSet(numberFields);
+                }
+                if(isDestroyed) return;
+                ReplayElement element = freeElements.pollFirst();
+                isNew = (element!=null);
+                if(isNew) {
+                    element.changedBitSet.clear();
+                    element.overrunBitSet.clear();
+                    readyElements.addLast(element);
+                } else {
+                    element = readyElements.peekLast();
+                    ++numberOverrun;
+                    if(element==null) {
+                        // the client holds every element.
+                        missedBitSet.or(changedBitSet);
+                        return;
+                    }
+                    // the fields that change again are overrun.
+                    scratchBitSet.clear();
+                    scratchBitSet.or(element.changedBitSet);
+                    scratchBitSet.and(changedBitSet);
+                    element.overrunBitSet.or(scratchBitSet);
+                }
+                // the reader keeps the complete data so the newest values are always copied.
+                convert.copyStructure(pvStructure,element.pvStructure);
+                element.changedBitSet.or(changedBitSet);
+                element.overrunBitSet.or(overrunBitSet);
+                if(!missedBitSet.isEmpty()) {
+                    element.changedBitSet.or(missedBitSet);
+                    element.overrunBitSet.or(missedBitSet);
+                    missedBitSet.clear();
+                }
+            } finally {
+                lock.unlock();
+            }
+            // the client already has an event for a merged element.
+            if(isNew) monitorRequester.monitorEvent(this);
+        }
+
+        long getNumberOverrun()
+        {
+            lock.lock();
+            try {
+                return numberOverrun;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Status start()
+        {
+            isStarted = true;
+            return okStatus;
+        }
+
+        public Status stop()
+        {
+            isStarted = false;
+            return okStatus;
+        }
+
+        public MonitorElement poll()
+        {
+            lock.lock();
+            try {
+                return readyElements.pollFirst();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void release(MonitorElement monitorElement)
+        {
+            lock.lock();
+            try {
+                // elements of an earlier structure are dropped.
+                ReplayElement element = (ReplayElement)monitorElement;
+                if(element.pvStructure.getStructure()==structure) freeElements.addLast(element);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void destroy()
+        {
+            isDestroyed = true;
+            isStarted = false;
+            monitors.get(channelName).remove(this);
+        }
+    }
+
+    private class ReplayChannel implements Channel
+    {
+        private final String channelName;
+        private final ChannelRequester channelRequester;
+        private volatile ConnectionState connectionState = ConnectionState.CONNECTED;
+
+        ReplayChannel(String channelName,ChannelRequester channelRequester)
+        {
+            this.channelName = channelName;
+            this.channelRequester = channelRequester;
+        }
+
+        public String getRequesterName() { return channelRequester.getRequesterName(); }
+        public void message(String message,MessageType messageType) { channelRequester.message(message,messageType); }
+        public ChannelProvider getProvider() { return PvaClientReplayProvider.this; }
+        public String getRemoteAddress() { return providerName + ":" + directory; }
+        public ConnectionState getConnectionState() { return connectionState; }
+        public String getChannelName() { return channelName; }
+        public ChannelRequester getChannelRequester() { return channelRequester; }
+        public boolean isConnected() { return connectionState==ConnectionState.CONNECTED; }
+
+        public void getField(GetFieldRequester requester,String subField)
+        {
+            Structure structure = structures.get(channelName);
+            if(subField==null || subField.isEmpty()) {
+                requester.getDone(okStatus,structure);
+                return;
+            }
+            PVField pvField = pvDataCreate.createPVStructure(structure).getSubField(subField);
+            if(pvField==null) {
+                requester.getDone(statusCreate.createStatus(
+                    Status.StatusType.ERROR,"subField " + subField + " does not exist",null),null);
+                return;
+            }
+            requester.getDone(okStatus,pvField.getField());
+        }
+
+        public AccessRights getAccessRights(PVField pvField) { return AccessRights.read; }
+
+        public ChannelProcess createChannelProcess(ChannelProcessRequester requester,PVStructure pvRequest)
+        {
+            requester.channelProcessConnect(notSupportedStatus,null);
+            return null;
+        }
+
+        public ChannelGet createChannelGet(ChannelGetRequester requester,PVStructure pvRequest)
+        {
+            requester.channelGetConnect(notSupportedStatus,null,null);
+            return null;
+        }
+
+        public ChannelPut createChannelPut(ChannelPutRequester requester,PVStructure pvRequest)
+        {
+            requester.channelPutConnect(notSupportedStatus,null,null);
+            return null;
+        }
+
+        public ChannelPutGet createChannelPutGet(ChannelPutGetRequester requester,PVStructure pvRequest)
+        {
+            requester.channelPutGetConnect(notSupportedStatus,null,null,null);
+            return null;
+        }
+
+        public ChannelRPC createChannelRPC(ChannelRPCRequester requester,PVStructure pvRequest)
+        {
+            requester.channelRPCConnect(notSupportedStatus,null);
+            return null;
+        }
+
+        public ChannelArray createChannelArray(ChannelArrayRequester requester,PVStructure pvRequest)
+        {
+            requester.channelArrayConnect(notSupportedStatus,null,null);
+            return null;
+        }
+
+        public Monitor createMonitor(MonitorRequester requester,PVStructure pvRequest)
+        {
+            ReplayMonitor monitor = new ReplayMonitor(channelName,requester,getQueueSize(pvRequest));
+            monitors.get(channelName).add(monitor);
+            requester.monitorConnect(okStatus,monitor,structures.get(channelName));
+            return monitor;
+        }
+
+        public void printInfo() { printInfo(System.out); }
+
+        public void printInfo(PrintStream out)
+        {
+            out.println("channel " + channelName + " provider " + providerName + " journal " + getRemoteAddress());
+        }
+
+        public void destroy()
+        {
+            connectionState = ConnectionState.DESTROYED;
+        }
+    }
+
+    private int getQueueSize(PVStructure pvRequest)
+    {
+        if(pvRequest==null) return DEFAULT_QUEUE_SIZE;
+        PVField pvField = pvRequest.getSubField("record._options.queueSize");
+        if(!(pvField instanceof PVString)) return DEFAULT_QUEUE_SIZE;
+        try {
+            return Math.max(1,Integer.parseInt(((PVString)pvField).get()));
+        } catch(NumberFormatException e) {
+            return DEFAULT_QUEUE_SIZE;
+        }
+    }
+
+    private void replay(double speed)
+    {
+        PvaClientMonitorJournalReader reader = PvaClientMonitorJournalReader.create(directory,baseName);
+        try {
+            long firstTime = 0;
+            long startTime = 0;
+            boolean isFirst = true;
+            while(isReplayActive && reader.next()) {
+                if(speed>0.0) {
+                    long time = reader.getTime();
+                    if(isFirst) {
+                        firstTime = time;
+                        startTime = System.nanoTime();
+                        isFirst = false;
+                    }
+                    long target = startTime + (long)((time - firstTime)/speed);
+                    while(isReplayActive) {
+                        long delay = target - System.nanoTime();
+                        if(delay<=0) break;
+                        LockSupport.parkNanos(this,delay);
+                    }
+                }
+                String channelName = reader.getChannelName();
+                PVStructure pvStructure = reader.getPVStructure();
+                for(ReplayMonitor monitor : monitors.get(channelName)) {
+                    monitor.replay(pvStructure,reader.getChangedBitSet(),reader.getOverrunBitSet());
+                }
+                ++numberReplayed;
+            }
+        } finally {
+            reader.close();
+            isReplayActive = false;
+        }
+    }
+
+    /**
+     * Start replaying the journal from the beginning.
+     * @param speed The replay speed. 1.0 is the original timing, 2.0 is twice as fast,
+     * and 0.0 is as fast as possible.
+     */
+    public synchronized void startReplay(final double speed)
+    {
+        if(isReplayActive) throw new RuntimeException("PvaClientReplayProvider replay is already active");
+        if(speed<0.0) throw new IllegalArgumentException("PvaClientReplayProvider speed can not be negative");
+        isReplayActive = true;
+        numberReplayed = 0;
+        replayThread = new Thread(() -> replay(speed),"pvaClientReplay " + providerName);
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    /**
+     * Stop the replay.
+     */
+    public synchronized void stopReplay()
+    {
+        isReplayActive = false;
+        if(replayThread!=null) LockSupport.unpark(replayThread);
+    }
+
+    /**
+     * Wait until the replay is done.
+     * @param timeout The time in seconds to wait. 0.0 means forever.
+     * @return (false,true) if the replay (is still active,is done).
+     */
+    public boolean waitReplay(double timeout)
+    {
+        Thread thread;
+        synchronized(this) {
+            thread = replayThread;
+        }
+        if(thread==null) return true;
+        try {
+            thread.join((long)(timeout*1000.0));
+        } catch(InterruptedException e) {
+            throw new RuntimeException("PvaClientReplayProvider::waitReplay InterruptedException");
+        }
+        return !thread.isAlive();
+    }
+
+    /**
+     * Is a replay active.
+     * @return (false,true) if replay (is not,is) active.
+     */
+    public boolean isReplayActive()
+    {
+        return isReplayActive;
+    }
+
+    /**
+     * Get the number of updates that were merged because a client had no free element.
+     * @param channelName The channel name.
+     * @return The sum for all monitors of the channel.
+     */
+    public long getNumberOverrun(String channelName)
+    {
+        CopyOnWriteArrayList<ReplayMonitor> list = monitors.get(channelName);
+        if(list==null) return 0;
+        long number = 0;
+        for(ReplayMonitor monitor : list) number += monitor.getNumberOverrun();
+        return number;
+    }
+
+    /**
+     * Get the number of updates replayed by the current or last replay.
+     * @return The number.
+     */
+    public long getNumberReplayed()
+    {
+        return numberReplayed;
+    }
+
+    /**
+     * Register the provider so that PvaClient can use it by name.
+     */
+    public synchronized void register()
+    {
+        if(factory!=null) return;
+        factory = new ChannelProviderFactory() {
+            public String getFactoryName() { return providerName; }
+            public ChannelProvider sharedInstance() { return PvaClientReplayProvider.this; }
+            public ChannelProvider newInstance() { return PvaClientReplayProvider.this; }
+        };
+        ChannelProviderRegistryFactory.registerChannelProviderFactory(factory);
+    }
+
+    /**
+     * Unregister the provider.
+     */
+    public synchronized void unregister()
+    {
+        if(factory==null) return;
+        ChannelProviderRegistryFactory.unregisterChannelProviderFactory(factory);
+        factory = null;
+    }
+
+    public String getProviderName()
+    {
+        return providerName;
+    }
+
+    public ChannelFind channelFind(String channelName,ChannelFindRequester requester)
+    {
+        ChannelFind channelFind = createChannelFind();
+        requester.channelFindResult(okStatus,channelFind,channelNames.contains(channelName));
+        return channelFind;
+    }
+
+    public ChannelFind channelList(ChannelListRequester requester)
+    {
+        ChannelFind channelFind = createChannelFind();
+        requester.channelListResult(okStatus,channelFind,channelNames,false);
+        return channelFind;
+    }
+
+    private ChannelFind createChannelFind()
+    {
+        return new ChannelFind() {
+            public ChannelProvider getChannelProvider() { return PvaClientReplayProvider.this; }
+            public void cancel() {}
+            public void destroy() {}
+        };
+    }
+
+    public Channel createChannel(String channelName,ChannelRequester channelRequester,short priority)
+    {
+        if(!channelNames.contains(channelName)) {
+            Status status = statusCreate.createStatus(
+                Status.StatusType.ERROR,"channel " + channelName + " is not in the journal",null);
+            channelRequester.channelCreated(status,null);
+            return null;
+        }
+        ReplayChannel channel = new ReplayChannel(channelName,channelRequester);
+        channelRequester.channelCreated(okStatus,channel);
+        channelRequester.channelStateChange(channel,Channel.ConnectionState.CONNECTED);
+        return channel;
+    }
+
+    public Channel createChannel(String channelName,ChannelRequester channelRequester,short priority,String address)
+    {
+        return createChannel(channelName,channelRequester,priority);
+    }
+
+    public void destroy()
+    {
+        stopReplay();
+        unregister();
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Records (timeStamp, value, severity, status) for monitored numeric scalar channels
+ * into a fixed size off-heap ring buffer for each channel.
+ * <p>
+ * Each ring is allocated when a channel is attached. Recording does not allocate memory.
+ * The timeStamp is stored as nanoseconds since the POSIX epoch.
+ * If the channel has no timeStamp field the time of arrival is used.
+ * If it has no alarm field severity and status are 0.
+ * <p>
+ * Each channel has a single writer, i.e. the thread that calls the monitor callback,
+ * which drains the monitor under a lock of the channel.
+ * Readers take windowed slices optimistically and retry if an entry was written while they copied.
+ * Only a reader that keeps failing takes the read lock, which briefly holds off the writer.
+ * A detached channel keeps its entries.
+ */
+public class PvaClientScalarRecorder
+{
+    /**
+     * Create a recorder.
+     * @param maxChannels The maximum number of channels that can be attached.
+     * @param entriesPerChannel The number of entries in the ring of each channel.
+     * For example 10 minutes at 10 Hz is 6000.
+     * @return The new instance.
+     */
+    public static PvaClientScalarRecorder create(int maxChannels,int entriesPerChannel)
+    {
+        return new PvaClientScalarRecorder(maxChannels,entriesPerChannel);
+    }
+
+    private PvaClientScalarRecorder(int maxChannels,int entriesPerChannel)
+    {
+        if(maxChannels<1 || entriesPerChannel<1) {
+            throw new IllegalArgumentException("PvaClientScalarRecorder illegal size");
+        }
+        if((long)entriesPerChannel*ENTRY_SIZE>Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("PvaClientScalarRecorder entriesPerChannel too large");
+        }
+        this.entriesPerChannel = entriesPerChannel;
+        channel = new Channel[maxChannels];
+    }
+
+    // time(long) value(double) severity(int) status(int)
+    private static final int ENTRY_SIZE = 24;
+    private static final int VALUE_OFFSET = 8;
+    private static final int SEVERITY_OFFSET = 16;
+    private static final int STATUS_OFFSET = 20;
+    private static final int MAX_OPTIMISTIC_READS = 4;
+    private static final Convert convert = ConvertFactory.getConvert();
+
+    private final int entriesPerChannel;
+    private final Channel[] channel;
+    private int numberChannels = 0;
+
+    /*
+     * The off-heap ring of one channel, written by a single thread.
+     * The StampedLock is used as a seqlock: the writer takes the write lock for each entry
+     * and a reader validates an optimistic stamp after copying.
+     */
+    static final class Ring
+    {
+        private final int capacity;
+        private final ByteBuffer buffer;
+        private final StampedLock seqLock = new StampedLock();
+        // number of entries ever written; changed while holding the write lock.
+        private volatile long count = 0;
+
+        Ring(int capacity)
+        {
+            this.capacity = capacity;
+            buffer = ByteBuffer.allocateDirect(capacity*ENTRY_SIZE).order(ByteOrder.nativeOrder());
+        }
+
+        void put(long time,double value,int severity,int status)
+        {
+            long stamp = seqLock.writeLock();
+            try {
+                long next = count;
+                int position = (int)(next % capacity)*ENTRY_SIZE;
+                buffer.putLong(position,time);
+                buffer.putDouble(position + VALUE_OFFSET,value);
+                buffer.putInt(position + SEVERITY_OFFSET,severity);
+                buffer.putInt(position + STATUS_OFFSET,status);
+                count = next + 1;
+            } finally {
+                seqLock.unlockWrite(stamp);
+            }
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+
+        int getSlice(long startTime,long endTime,long[] time,double[] value,int[] severity,int[] status)
+        {
+            for(int attempt=0; attempt<MAX_OPTIMISTIC_READS; ++attempt) {
+                long stamp = seqLock.tryOptimisticRead();
+                if(stamp==0) continue;
+                int number = copy(startTime,endTime,time,value,severity,status);
+                // validate orders the buffer reads before the check.
+                if(seqLock.validate(stamp)) return number;
+            }
+            long stamp = seqLock.readLock();
+            try {
+                return copy(startTime,endTime,time,value,severity,status);
+            } finally {
+                seqLock.unlockRead(stamp);
+            }
+        }
+
+        private int copy(long startTime,long endTime,long[] time,double[] value,int[] severity,int[] status)
+        {
+            int max = Integer.MAX_VALUE;
+            if(time!=null) max = Math.min(max,time.length);
+            if(value!=null) max = Math.min(max,value.length);
+            if(severity!=null) max = Math.min(max,severity.length);
+            if(status!=null) max = Math.min(max,status.length);
+            long end = count;
+            int number = 0;
+            for(long next=Math.max(0,end - capacity); next<end && number<max; ++next) {
+                int position = (int)(next % capacity)*ENTRY_SIZE;
+                long entryTime = buffer.getLong(position);
+                if(entryTime<startTime || entryTime>=endTime) continue;
+                if(time!=null) time[number] = entryTime;
+                if(value!=null) value[number] = buffer.getDouble(position + VALUE_OFFSET);
+                if(severity!=null) severity[number] = buffer.getInt(position + SEVERITY_OFFSET);
+                if(status!=null) status[number] = buffer.getInt(position + STATUS_OFFSET);
+                ++number;
+            }
+            return number;
+        }
+    }
+
+    private class Channel implements PvaClientMonitorRequester, Consumer<PvaClientMonitorData>
+    {
+        private final PvaClientMonitor pvaClientMonitor;
+        private final Ring ring = new Ring(entriesPerChannel);
+        // guarded by this
+        private boolean isDetached = false;
+        private Structure structure = null;
+        private int valueOffset;
+        private int secondsOffset;
+        private int nanosecondsOffset;
+        private int severityOffset;
+        private int statusOffset;
+
+        Channel(PvaClientMonitor pvaClientMonitor)
+        {
+            this.pvaClientMonitor = pvaClientMonitor;
+        }
+
+        private int offset(PVStructure pvStructure,String name)
+        {
+            PVField pvField = pvStructure.getSubField(name);
+            return (pvField==null) ? -1 : pvField.getFieldOffset();
+        }
+
+        private void setOffsets(PVStructure pvStructure)
+        {
+            structure = pvStructure.getStructure();
+            valueOffset = offset(pvStructure,"value");
+            if(valueOffset<0 || !(pvStructure.getSubField(valueOffset) instanceof PVScalar)) {
+                throw new RuntimeException("channel "
+                    + pvaClientMonitor.getPvaClientChannel().getChannelName()
+                    + " value is not a scalar");
+            }
+            secondsOffset = offset(pvStructure,"timeStamp.secondsPastEpoch");
+            nanosecondsOffset = offset(pvStructure,"timeStamp.nanoseconds");
+            severityOffset = offset(pvStructure,"alarm.severity");
+            statusOffset = offset(pvStructure,"alarm.status");
+        }
+
+        public void accept(PvaClientMonitorData data)
+        {
+            PVStructure pvStructure = data.getPVStructure();
+            if(pvStructure.getStructure()!=structure) setOffsets(pvStructure);
+            PVScalar pvValue = (PVScalar)pvStructure.getSubField(valueOffset);
+            double value = (pvValue instanceof PVDouble)
+                ? ((PVDouble)pvValue).get() : convert.toDouble(pvValue);
+            long time;
+            if(secondsOffset>=0 && nanosecondsOffset>=0) {
+                time = ((PVLong)pvStructure.getSubField(secondsOffset)).get()*1000000000L
+                     + ((PVInt)pvStructure.getSubField(nanosecondsOffset)).get();
+            } else {
+                time = System.currentTimeMillis()*1000000L;
+            }
+            int severity = (severityOffset>=0) ? ((PVInt)pvStructure.getSubField(severityOffset)).get() : 0;
+            int status = (statusOffset>=0) ? ((PVInt)pvStructure.getSubField(statusOffset)).get() : 0;
+            ring.put(time,value,severity,status);
+        }
+
+        /*
+         * The only path that writes the ring, so there is one writer at a time
+         * even though attach and the monitor callback run on different threads.
+         */
+        synchronized void drain()
+        {
+            if(isDetached) return;
+            pvaClientMonitor.drain(this,0);
+        }
+
+        synchronized void detach()
+        {
+            isDetached = true;
+        }
+
+        public void monitorConnect(Status status,PvaClientMonitor pvaClientMonitor,Structure structure) {}
+
+        public void event(PvaClientMonitor pvaClientMonitor)
+        {
+            drain();
+        }
+
+        public void unlisten(PvaClientMonitor pvaClientMonitor) {}
+    }
+
+    /**
+     * Attach a monitor. The recorder becomes the requester of the monitor
+     * and the monitor is started.
+     * @param pvaClientMonitor The monitor, which must have a numeric scalar value field.
+     * @return The index of the channel in the recorder.
+     */
+    public synchronized int attach(PvaClientMonitor pvaClientMonitor)
+    {
+        if(numberChannels>=channel.length) {
+            throw new RuntimeException("PvaClientScalarRecorder::attach maxChannels exceeded");
+        }
+        int index = numberChannels;
+        Channel recorderChannel = new Channel(pvaClientMonitor);
+        channel[index] = recorderChannel;
+        ++numberChannels;
+        pvaClientMonitor.setRequester(recorderChannel);
+        pvaClientMonitor.start();
+        // elements queued before the requester was set do not cause an event.
+        recorderChannel.drain();
+        return index;
+    }
+
+    /**
+     * Detach a channel. The monitor is stopped and is no longer the requester.
+     * The entries recorded so far can still be read and the index is not reused.
+     * @param index The index returned by attach.
+     */
+    public synchronized void detach(int index)
+    {
+        Channel recorderChannel = getChannel(index);
+        recorderChannel.detach();
+        PvaClientMonitor pvaClientMonitor = recorderChannel.pvaClientMonitor;
+        pvaClientMonitor.setRequester(null);
+        pvaClientMonitor.stop();
+    }
+
+    /**
+     * Get the number of attached channels.
+     * @return The number.
+     */
+    public synchronized int getNumberChannels()
+    {
+        return numberChannels;
+    }
+
+    /**
+     * Get the channel name for an index.
+     * @param index The index returned by attach.
+     * @return The channel name.
+     */
+    public String getChannelName(int index)
+    {
+        return getChannel(index).pvaClientMonitor.getPvaClientChannel().getChannelName();
+    }
+
+    /**
+     * Get the number of entries in the ring of each channel.
+     * @return The capacity.
+     */
+    public int getEntriesPerChannel()
+    {
+        return entriesPerChannel;
+    }
+
+    /**
+     * Get the number of entries ever recorded for a channel.
+     * @param index The index returned by attach.
+     * @return The count. At most getEntriesPerChannel of these are still available.
+     */
+    public long getCount(int index)
+    {
+        return getChannel(index).ring.getCount();
+    }
+
+    private Channel getChannel(int index)
+    {
+        Channel recorderChannel = channel[index];
+        if(recorderChannel==null) {
+            throw new IllegalArgumentException("PvaClientScalarRecorder no channel " + index);
+        }
+        return recorderChannel;
+    }
+
+    /**
+     * Copy the entries with startTime &lt;= time &lt; endTime, oldest first.
+     * Any of the arrays can be null. The number copied is limited by the shortest non null array.
+     * @param index The index returned by attach.
+     * @param startTime The start of the window in nanoseconds since the POSIX epoch.
+     * @param endTime The end of the window in nanoseconds since the POSIX epoch.
+     * @param time Receives the timeStamp of each entry.
+     * @param value Receives the value of each entry.
+     * @param severity Receives the alarm severity of each entry.
+     * @param status Receives the alarm status of each entry.
+     * @return The number of entries copied.
+     */
+    public int getSlice(
+            int index,
+            long startTime,
+            long endTime,
+            long[] time,
+            double[] value,
+            int[] severity,
+            int[] status)
+    {
+        return getChannel(index).ring.getSlice(startTime,endTime,time,value,severity,status);
+    }
+}
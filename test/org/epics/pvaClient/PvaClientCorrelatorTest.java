@@ -0,0 +1,113 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaClient.PvaClientCorrelator.CorrelateBy;
+import org.epics.pvaClient.PvaClientCorrelator.Matcher;
+import org.epics.pvaClient.PvaClientCorrelator.Record;
+
+/**
+ * Tests the matching and expiry of PvaClientCorrelator.
+ */
+public class PvaClientCorrelatorTest extends TestCase
+{
+    private static final long TIMEOUT = 1000;
+
+    // the same steps as PvaClientCorrelator.add
+    private static Record add(Matcher matcher,int index,long key,long now,int expected)
+    {
+        Record record = matcher.find(index,key);
+        if(record==null) {
+            if(matcher.isFull()) matcher.update(expected,now);
+            record = matcher.start(key,now);
+        }
+        matcher.setPresent(record,index);
+        return record;
+    }
+
+    public void testUserTag()
+    {
+        Matcher matcher = new Matcher(3,CorrelateBy.userTag,0,TIMEOUT,10);
+        add(matcher,0,7,0,3);
+        add(matcher,1,8,0,3);
+        add(matcher,1,7,0,3);
+        add(matcher,2,7,0,3);
+        matcher.update(3,1);
+        Record record = matcher.next();
+        assertNotNull(record);
+        assertEquals(7,record.getKey());
+        assertTrue(record.isComplete());
+        assertEquals(3,record.getNumberPresent());
+        matcher.release(record);
+        assertNull(matcher.next());
+        assertEquals(1,matcher.getNumberComplete());
+        assertEquals(0,matcher.getNumberPartial());
+    }
+
+    public void testTimeStamp()
+    {
+        Matcher matcher = new Matcher(2,CorrelateBy.timeStamp,10,TIMEOUT,10);
+        Record first = add(matcher,0,1000,0,2);
+        // within the tolerance of the first update.
+        assertSame(first,add(matcher,1,1010,0,2));
+        // outside the tolerance.
+        Record second = add(matcher,0,1011,0,2);
+        assertNotSame(first,second);
+        // a channel is only present once in a record.
+        assertNotSame(second,add(matcher,0,1012,0,2));
+    }
+
+    public void testTimeout()
+    {
+        Matcher matcher = new Matcher(2,CorrelateBy.userTag,0,TIMEOUT,10);
+        add(matcher,0,1,0,2);
+        assertEquals(TIMEOUT - 10,matcher.update(2,10));
+        assertFalse(matcher.hasReady());
+        assertEquals(Long.MAX_VALUE,matcher.update(2,TIMEOUT));
+        Record record = matcher.next();
+        assertFalse(record.isComplete());
+        assertEquals(1,record.getNumberPresent());
+        assertEquals(1,matcher.getNumberPartial());
+    }
+
+    public void testMaxPending()
+    {
+        Matcher matcher = new Matcher(2,CorrelateBy.userTag,0,TIMEOUT,2);
+        add(matcher,0,1,0,2);
+        add(matcher,0,2,0,2);
+        // record 1 is complete but not yet delivered.
+        add(matcher,1,1,0,2);
+        // pending is full, so record 1 is delivered complete and record 2 stays pending.
+        add(matcher,0,3,0,2);
+        assertEquals(1,matcher.getNumberComplete());
+        assertEquals(0,matcher.getNumberPartial());
+        // pending is full of incomplete records, so the oldest is delivered partial.
+        add(matcher,0,4,0,2);
+        assertEquals(1,matcher.getNumberPartial());
+        Record record = matcher.next();
+        assertEquals(1,record.getKey());
+        assertTrue(record.isComplete());
+        record = matcher.next();
+        assertEquals(2,record.getKey());
+        assertFalse(record.isComplete());
+        assertNull(matcher.next());
+    }
+
+    public void testReuse()
+    {
+        Matcher matcher = new Matcher(1,CorrelateBy.userTag,0,TIMEOUT,2);
+        add(matcher,0,1,0,1);
+        matcher.update(1,0);
+        Record record = matcher.next();
+        matcher.release(record);
+        assertSame(record,add(matcher,0,2,0,1));
+        assertEquals(1,record.getNumberPresent());
+        assertEquals(2,record.getKey());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import junit.framework.TestCase;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Tests that PvaClientFieldTable.Cache keeps the PVFields of every PVStructure of a monitor queue.
+ */
+public class PvaClientFieldTableTest extends TestCase
+{
+    // more PVStructures than the earlier fixed size cache held.
+    private static final int NUMBER_STRUCTURES = 40;
+    private static final Structure structure = FieldFactory.getFieldCreate().createFieldBuilder()
+        .add("value",ScalarType.pvDouble)
+        .add("severity",ScalarType.pvInt)
+        .createStructure();
+
+    private static class SumVisitor implements PvaClientChangedFieldVisitor
+    {
+        private double sum = 0.0;
+
+        public void visitBoolean(int offset,String fieldName,boolean value) {}
+        public void visitInt(int offset,String fieldName,int value) { sum += value; }
+        public void visitLong(int offset,String fieldName,long value) { sum += value; }
+        public void visitDouble(int offset,String fieldName,double value) { sum += value; }
+        public void visitString(int offset,String fieldName,String value) {}
+        public void visitScalarArray(int offset,String fieldName,PVScalarArray value) {}
+        public void visitOther(int offset,String fieldName,PVField value) {}
+    }
+
+    public void testManyStructures()
+    {
+        PVStructure[] pvStructures = new PVStructure[NUMBER_STRUCTURES];
+        for(int i=0; i<NUMBER_STRUCTURES; ++i) {
+            pvStructures[i] = PVDataFactory.getPVDataCreate().createPVStructure(structure);
+            pvStructures[i].getSubField(PVDouble.class,"value").put(i);
+        }
+        BitSet changed = new BitSet(pvStructures[0].getNumberFields());
+        changed.set(0);
+        PvaClientFieldTable.Cache cache = new PvaClientFieldTable.Cache();
+        for(int pass=0; pass<3; ++pass) {
+            for(int i=0; i<NUMBER_STRUCTURES; ++i) {
+                SumVisitor visitor = new SumVisitor();
+                assertEquals(2,cache.visitChanged(pvStructures[i],changed,visitor));
+                assertEquals((double)i,visitor.sum,0.0);
+            }
+            assertEquals(NUMBER_STRUCTURES,cache.size());
+        }
+    }
+
+    public void testNewStructure()
+    {
+        PvaClientFieldTable.Cache cache = new PvaClientFieldTable.Cache();
+        PVStructure pvStructure = PVDataFactory.getPVDataCreate().createPVStructure(structure);
+        BitSet changed = new BitSet(pvStructure.getNumberFields());
+        changed.set(0);
+        cache.visitChanged(pvStructure,changed,new SumVisitor());
+        Structure other = FieldFactory.getFieldCreate().createFieldBuilder()
+            .add("value",ScalarType.pvDouble)
+            .createStructure();
+        PVStructure pvOther = PVDataFactory.getPVDataCreate().createPVStructure(other);
+        SumVisitor visitor = new SumVisitor();
+        pvOther.getSubField(PVDouble.class,"value").put(5.0);
+        assertEquals(1,cache.visitChanged(pvOther,changed,visitor));
+        assertEquals(5.0,visitor.sum,0.0);
+        // the PVFields of the old structure are dropped.
+        assertEquals(1,cache.size());
+    }
+}
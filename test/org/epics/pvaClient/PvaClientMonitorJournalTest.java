@@ -0,0 +1,213 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.epics.pvaccess.client.Channel;
+import org.epics.pvaccess.client.ChannelRequester;
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.monitor.Monitor;
+import org.epics.pvdata.monitor.MonitorElement;
+import org.epics.pvdata.monitor.MonitorRequester;
+import org.epics.pvdata.pv.MessageType;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Status;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Round trip of PvaClientMonitorJournal, PvaClientMonitorJournalReader and PvaClientReplayProvider.
+ */
+public class PvaClientMonitorJournalTest extends TestCase
+{
+    private static final String BASE_NAME = "test";
+    private static final String CHANNEL_NAME = "journalTest";
+    // enough updates for several 64k segments.
+    private static final int NUMBER_UPDATES = 10000;
+    private File directory;
+
+    protected void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("pvaClientJournal").toFile();
+        Structure structure = FieldFactory.getFieldCreate().createFieldBuilder()
+            .add("value",ScalarType.pvDouble)
+            .add("count",ScalarType.pvInt)
+            .createStructure();
+        PVStructure pvStructure = PVDataFactory.getPVDataCreate().createPVStructure(structure);
+        PVDouble pvValue = pvStructure.getSubField(PVDouble.class,"value");
+        PVInt pvCount = pvStructure.getSubField(PVInt.class,"count");
+        BitSet changed = new BitSet(pvStructure.getNumberFields());
+        BitSet overrun = new BitSet(pvStructure.getNumberFields());
+        PvaClientMonitorJournal journal = PvaClientMonitorJournal.create(directory.getPath(),BASE_NAME,64*1024);
+        int index = journal.addChannel(CHANNEL_NAME);
+        for(int i=0; i<NUMBER_UPDATES; ++i) {
+            pvValue.put(i*0.5);
+            pvCount.put(i);
+            changed.clear();
+            changed.set(pvValue.getFieldOffset());
+            // count is only sent with every other update.
+            if(i%2==0) changed.set(pvCount.getFieldOffset());
+            journal.write(index,pvStructure,changed,overrun);
+        }
+        assertEquals(NUMBER_UPDATES,journal.getNumberUpdates());
+        assertTrue(journal.getSegmentNumber()>0);
+        journal.close();
+    }
+
+    protected void tearDown()
+    {
+        File[] files = directory.listFiles();
+        if(files!=null) for(File file : files) file.delete();
+        directory.delete();
+    }
+
+    public void testReader()
+    {
+        PvaClientMonitorJournalReader reader = PvaClientMonitorJournalReader.create(directory.getPath(),BASE_NAME);
+        try {
+            long firstTime = 0;
+            long lastTime = 0;
+            int number = 0;
+            while(reader.next()) {
+                assertEquals(CHANNEL_NAME,reader.getChannelName());
+                PVStructure pvStructure = reader.getPVStructure();
+                assertEquals(number*0.5,pvStructure.getSubField(PVDouble.class,"value").get(),0.0);
+                // an update that did not send count keeps the earlier value.
+                int count = number - number%2;
+                assertEquals(count,pvStructure.getSubField(PVInt.class,"count").get());
+                long time = reader.getTime();
+                if(number==0) firstTime = time;
+                assertTrue("receive time must not go backwards",time>=lastTime);
+                lastTime = time;
+                ++number;
+            }
+            assertEquals(NUMBER_UPDATES,number);
+            assertTrue(lastTime>firstTime);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testReadStructures()
+    {
+        Map<String,Structure> structures = PvaClientMonitorJournalReader.readStructures(directory.getPath(),BASE_NAME);
+        assertEquals(1,structures.size());
+        Structure structure = structures.get(CHANNEL_NAME);
+        assertNotNull(structure);
+        assertNotNull(structure.getField("value"));
+        assertNotNull(structure.getField("count"));
+    }
+
+    private static class TestChannelRequester implements ChannelRequester
+    {
+        private Status createdStatus = null;
+
+        public String getRequesterName() { return "PvaClientMonitorJournalTest"; }
+        public void message(String message,MessageType messageType) {}
+        public void channelCreated(Status status,Channel channel) { createdStatus = status; }
+        public void channelStateChange(Channel channel,Channel.ConnectionState connectionState) {}
+    }
+
+    private static class TestMonitorRequester implements MonitorRequester
+    {
+        private final boolean isPolling;
+        private final ArrayList<Double> values = new ArrayList<Double>();
+        private int numberOverrun = 0;
+
+        TestMonitorRequester(boolean isPolling)
+        {
+            this.isPolling = isPolling;
+        }
+
+        public String getRequesterName() { return "PvaClientMonitorJournalTest"; }
+        public void message(String message,MessageType messageType) {}
+        public void monitorConnect(Status status,Monitor monitor,Structure structure) {}
+        public void unlisten(Monitor monitor) {}
+
+        public synchronized void monitorEvent(Monitor monitor)
+        {
+            if(!isPolling) return;
+            MonitorElement element;
+            while((element=monitor.poll())!=null) {
+                values.add(element.getPVStructure().getSubField(PVDouble.class,"value").get());
+                if(!element.getOverrunBitSet().isEmpty()) ++numberOverrun;
+                monitor.release(element);
+            }
+        }
+    }
+
+    public void testReplay()
+    {
+        PvaClientReplayProvider provider = PvaClientReplayProvider.create("replayTest",directory.getPath(),BASE_NAME);
+        try {
+            TestChannelRequester channelRequester = new TestChannelRequester();
+            TestMonitorRequester fast = new TestMonitorRequester(true);
+            TestMonitorRequester stalled = new TestMonitorRequester(false);
+            Channel channel = provider.createChannel(CHANNEL_NAME,channelRequester,(short)0);
+            assertNotNull(channel);
+            channel.createMonitor(fast,null).start();
+            channel.createMonitor(stalled,null).start();
+            provider.startReplay(0.0);
+            // a client that never takes an element must not stop the replay.
+            assertTrue(provider.waitReplay(30.0));
+            assertEquals(NUMBER_UPDATES,provider.getNumberReplayed());
+            synchronized(fast) {
+                assertEquals(NUMBER_UPDATES,fast.values.size());
+                for(int i=0; i<NUMBER_UPDATES; ++i) assertEquals(i*0.5,fast.values.get(i),0.0);
+                assertEquals(0,fast.numberOverrun);
+            }
+            assertTrue(provider.getNumberOverrun(CHANNEL_NAME)>0);
+        } finally {
+            provider.destroy();
+        }
+    }
+
+    public void testUnknownChannel()
+    {
+        PvaClientReplayProvider provider = PvaClientReplayProvider.create("replayTest",directory.getPath(),BASE_NAME);
+        try {
+            TestChannelRequester channelRequester = new TestChannelRequester();
+            assertNull(provider.createChannel("unknown",channelRequester,(short)0));
+            assertNotNull(channelRequester.createdStatus);
+            assertFalse(channelRequester.createdStatus.isOK());
+            provider.createChannel(CHANNEL_NAME,channelRequester,(short)0);
+            assertTrue(channelRequester.createdStatus.isOK());
+        } finally {
+            provider.destroy();
+        }
+    }
+
+    public void testReplayTiming()
+    {
+        PvaClientReplayProvider provider = PvaClientReplayProvider.create("replayTest",directory.getPath(),BASE_NAME);
+        try {
+            TestMonitorRequester fast = new TestMonitorRequester(true);
+            Channel channel = provider.createChannel(CHANNEL_NAME,new TestChannelRequester(),(short)0);
+            channel.createMonitor(fast,null).start();
+            provider.startReplay(1.0);
+            assertTrue(provider.waitReplay(30.0));
+            synchronized(fast) {
+                // the original timing keeps the order of a burst.
+                assertEquals(NUMBER_UPDATES,fast.values.size());
+                for(int i=1; i<NUMBER_UPDATES; ++i) assertTrue(fast.values.get(i)>fast.values.get(i-1));
+            }
+        } finally {
+            provider.destroy();
+        }
+    }
+}
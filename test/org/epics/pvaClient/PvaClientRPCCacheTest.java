@@ -0,0 +1,123 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import junit.framework.TestCase;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Tests the keys, time to live, and LRU eviction of PvaClientRPCCache.
+ */
+public class PvaClientRPCCacheTest extends TestCase
+{
+    private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+    private static final PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+    private static final Structure stringStructure = fieldCreate.createFieldBuilder()
+        .add("value",ScalarType.pvString).createStructure();
+    private static final Structure intStructure = fieldCreate.createFieldBuilder()
+        .add("value",ScalarType.pvInt).createStructure();
+    private static final PvaClientRPCCache.Key noRequest = PvaClientRPCCache.Key.create(null);
+
+    private static PVStructure argument(String value)
+    {
+        PVStructure pvStructure = pvDataCreate.createPVStructure(stringStructure);
+        pvStructure.getSubField(PVString.class,"value").put(value);
+        return pvStructure;
+    }
+
+    private static PVStructure response(int value)
+    {
+        PVStructure pvStructure = pvDataCreate.createPVStructure(intStructure);
+        pvStructure.getSubField(PVInt.class,"value").put(value);
+        return pvStructure;
+    }
+
+    private static int value(PVStructure pvStructure)
+    {
+        return pvStructure.getSubField(PVInt.class,"value").get();
+    }
+
+    private static PvaClientRPCCache.EntryKey key(String argument)
+    {
+        return PvaClientRPCCache.key("channel",noRequest,argument(argument));
+    }
+
+    public void testKey()
+    {
+        assertEquals(PvaClientRPCCache.Key.create(argument("a")),PvaClientRPCCache.Key.create(argument("a")));
+        assertEquals(
+            PvaClientRPCCache.Key.create(argument("a")).hashCode(),
+            PvaClientRPCCache.Key.create(argument("a")).hashCode());
+        assertFalse(PvaClientRPCCache.Key.create(argument("a")).equals(PvaClientRPCCache.Key.create(argument("b"))));
+        assertFalse(PvaClientRPCCache.Key.create(argument("a")).equals(noRequest));
+        // the same bytes with a different introspection interface.
+        PVStructure pvValue = response(0);
+        PVStructure pvOther = pvDataCreate.createPVStructure(fieldCreate.createFieldBuilder()
+            .add("other",ScalarType.pvInt).createStructure());
+        assertFalse(PvaClientRPCCache.Key.create(pvValue).equals(PvaClientRPCCache.Key.create(pvOther)));
+        assertFalse(PvaClientRPCCache.key("one",noRequest,argument("a"))
+            .equals(PvaClientRPCCache.key("two",noRequest,argument("a"))));
+    }
+
+    public void testHit()
+    {
+        PvaClientRPCCache cache = PvaClientRPCCache.create(4,60.0);
+        assertNull(cache.get(key("a")));
+        cache.put(key("a"),response(1));
+        PVStructure pvResponse = cache.get(key("a"));
+        assertEquals(1,value(pvResponse));
+        // every hit is a new copy.
+        pvResponse.getSubField(PVInt.class,"value").put(2);
+        assertEquals(1,value(cache.get(key("a"))));
+        assertNull(cache.get(key("b")));
+        assertEquals(2,cache.getNumberHits());
+        assertEquals(2,cache.getNumberMisses());
+    }
+
+    public void testTimeToLive() throws InterruptedException
+    {
+        PvaClientRPCCache cache = PvaClientRPCCache.create(4,0.05);
+        cache.put(key("a"),response(1));
+        assertNotNull(cache.get(key("a")));
+        Thread.sleep(100);
+        assertNull(cache.get(key("a")));
+        assertEquals(0,cache.size());
+    }
+
+    public void testLeastRecentlyUsed()
+    {
+        PvaClientRPCCache cache = PvaClientRPCCache.create(2,60.0);
+        cache.put(key("a"),response(1));
+        cache.put(key("b"),response(2));
+        // a is now more recently used than b.
+        assertNotNull(cache.get(key("a")));
+        cache.put(key("c"),response(3));
+        assertEquals(2,cache.size());
+        assertNull(cache.get(key("b")));
+        assertEquals(1,value(cache.get(key("a"))));
+        assertEquals(3,value(cache.get(key("c"))));
+    }
+
+    public void testInvalidate()
+    {
+        PvaClientRPCCache cache = PvaClientRPCCache.create(4,60.0);
+        cache.put(key("a"),response(1));
+        cache.put(PvaClientRPCCache.key("other",noRequest,argument("a")),response(2));
+        cache.invalidate("channel");
+        assertEquals(1,cache.size());
+        assertNull(cache.get(key("a")));
+    }
+}
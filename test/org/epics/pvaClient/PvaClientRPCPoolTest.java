@@ -0,0 +1,91 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the concurrency limit of PvaClientRPCPool.
+ */
+public class PvaClientRPCPoolTest extends TestCase
+{
+    /*
+     * Run requests that each hold a permit for a while
+     * and return the largest number held at the same time.
+     */
+    private static int maxInFlight(PvaClientRPCPool.Limit limit,int nthread,int nrequest) throws Exception
+    {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(nthread);
+        for(int i=0; i<nthread; ++i) {
+            new Thread(() -> {
+                try {
+                    for(int j=0; j<nrequest; ++j) {
+                        limit.acquire();
+                        try {
+                            int number = inFlight.incrementAndGet();
+                            max.accumulateAndGet(number,Math::max);
+                            Thread.sleep(1);
+                            inFlight.decrementAndGet();
+                        } finally {
+                            limit.release();
+                        }
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(30,TimeUnit.SECONDS));
+        return max.get();
+    }
+
+    public void testLimit() throws Exception
+    {
+        PvaClientRPCPool.Limit limit = new PvaClientRPCPool.Limit(3);
+        int max = maxInFlight(limit,8,20);
+        assertTrue(max<=3);
+        assertEquals(3,limit.availablePermits());
+    }
+
+    public void testIncrease() throws Exception
+    {
+        PvaClientRPCPool.Limit limit = new PvaClientRPCPool.Limit(1);
+        limit.acquire();
+        limit.setMax(3);
+        assertEquals(3,limit.getMax());
+        assertEquals(2,limit.availablePermits());
+        limit.release();
+        assertEquals(3,limit.availablePermits());
+    }
+
+    public void testDecreaseWhileHeld() throws Exception
+    {
+        PvaClientRPCPool.Limit limit = new PvaClientRPCPool.Limit(3);
+        limit.acquire(3);
+        limit.setMax(1);
+        assertEquals(-2,limit.availablePermits());
+        // two of the requests in flight must complete before a new request can start.
+        limit.release();
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertEquals(1,limit.availablePermits());
+        assertTrue(maxInFlight(limit,4,20)<=1);
+    }
+}
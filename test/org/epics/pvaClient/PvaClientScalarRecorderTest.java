@@ -0,0 +1,105 @@
+/**
+ * Copyright - See the COPYRIGHT that is included with this distribution.
+ * EPICS pvData is distributed subject to a Software License Agreement found
+ * in file LICENSE that is included with this distribution.
+ */
+
+package org.epics.pvaClient;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the ring of PvaClientScalarRecorder.
+ */
+public class PvaClientScalarRecorderTest extends TestCase
+{
+    private static void put(PvaClientScalarRecorder.Ring ring,long time)
+    {
+        ring.put(time,time*0.5,(int)(time%4),(int)(time%7));
+    }
+
+    public void testEmpty()
+    {
+        PvaClientScalarRecorder.Ring ring = new PvaClientScalarRecorder.Ring(4);
+        long[] time = new long[4];
+        assertEquals(0,ring.getCount());
+        assertEquals(0,ring.getSlice(Long.MIN_VALUE,Long.MAX_VALUE,time,null,null,null));
+    }
+
+    public void testWrap()
+    {
+        PvaClientScalarRecorder.Ring ring = new PvaClientScalarRecorder.Ring(4);
+        for(long i=1; i<=10; ++i) put(ring,i);
+        assertEquals(10,ring.getCount());
+        long[] time = new long[8];
+        double[] value = new double[8];
+        int[] severity = new int[8];
+        int[] status = new int[8];
+        int number = ring.getSlice(Long.MIN_VALUE,Long.MAX_VALUE,time,value,severity,status);
+        // only the newest 4 survive, oldest first.
+        assertEquals(4,number);
+        for(int i=0; i<number; ++i) {
+            long expected = 7 + i;
+            assertEquals(expected,time[i]);
+            assertEquals(expected*0.5,value[i],0.0);
+            assertEquals((int)(expected%4),severity[i]);
+            assertEquals((int)(expected%7),status[i]);
+        }
+    }
+
+    public void testWindow()
+    {
+        PvaClientScalarRecorder.Ring ring = new PvaClientScalarRecorder.Ring(8);
+        for(long i=1; i<=8; ++i) put(ring,i*10);
+        long[] time = new long[8];
+        // startTime is inclusive and endTime is exclusive.
+        int number = ring.getSlice(30,60,time,null,null,null);
+        assertEquals(3,number);
+        assertEquals(30,time[0]);
+        assertEquals(50,time[2]);
+        // the copy is limited by the shortest array.
+        double[] value = new double[2];
+        number = ring.getSlice(Long.MIN_VALUE,Long.MAX_VALUE,time,value,null,null);
+        assertEquals(2,number);
+        assertEquals(10,time[0]);
+        assertEquals(20,time[1]);
+    }
+
+    public void testConcurrentWriterReader() throws InterruptedException
+    {
+        final int capacity = 64;
+        final long numberPuts = 2000000;
+        final PvaClientScalarRecorder.Ring ring = new PvaClientScalarRecorder.Ring(capacity);
+        final AtomicBoolean isDone = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            for(long i=1; i<=numberPuts; ++i) put(ring,i);
+            isDone.set(true);
+        });
+        writer.start();
+        long[] time = new long[capacity];
+        double[] value = new double[capacity];
+        int[] severity = new int[capacity];
+        int[] status = new int[capacity];
+        long numberSlices = 0;
+        while(!isDone.get()) {
+            int number = ring.getSlice(Long.MIN_VALUE,Long.MAX_VALUE,time,value,severity,status);
+            assertTrue(number<=capacity);
+            for(int i=0; i<number; ++i) {
+                // every entry is consistent and the slice is contiguous.
+                if(i>0) assertEquals(time[i-1] + 1,time[i]);
+                assertEquals(time[i]*0.5,value[i],0.0);
+                assertEquals((int)(time[i]%4),severity[i]);
+                assertEquals((int)(time[i]%7),status[i]);
+            }
+            ++numberSlices;
+        }
+        writer.join();
+        assertTrue(numberSlices>0);
+        assertEquals(numberPuts,ring.getCount());
+        int number = ring.getSlice(Long.MIN_VALUE,Long.MAX_VALUE,time,null,null,null);
+        assertEquals(capacity,number);
+        assertEquals(numberPuts,time[capacity-1]);
+    }
+}